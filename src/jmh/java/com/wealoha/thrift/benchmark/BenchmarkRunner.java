@@ -0,0 +1,57 @@
+package com.wealoha.thrift.benchmark;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * Run all benchmarks with each thread count in <code>-Dbench.threads</code>
+ * (default 1,4,16,64), report ops/sec, latency percentiles and allocation
+ * rate.<br/>
+ * 
+ * <code>mvn -P jmh test-compile exec:exec -Dbench.include=Sharded</code>
+ * 
+ * @author javamonk
+ * @createTime 2026年10月18日 上午11:05:42
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        String defaultInclude = BenchmarkRunner.class.getPackage().getName() + ".*Benchmark";
+        String include = System.getProperty("bench.include", defaultInclude);
+        String[] threadCounts = System.getProperty("bench.threads", "1,4,16,64").split(",");
+        File resultDir = new File(System.getProperty("bench.resultDir", "target/jmh"));
+        resultDir.mkdirs();
+        TimeValue iterationTime = TimeValue.seconds(Integer.getInteger("bench.time", 10));
+
+        for (String threadCount : threadCounts) {
+            int threads = Integer.parseInt(threadCount.trim());
+            ChainedOptionsBuilder options = new OptionsBuilder() //
+                    .include(include) //
+                    .mode(Mode.Throughput) //
+                    .mode(Mode.SampleTime) //
+                    .timeUnit(TimeUnit.MICROSECONDS) //
+                    .threads(threads) //
+                    .forks(Integer.getInteger("bench.forks", 1)) //
+                    .warmupIterations(Integer.getInteger("bench.warmupIterations", 3)) //
+                    .measurementIterations(Integer.getInteger("bench.iterations", 5)) //
+                    .warmupTime(iterationTime) //
+                    .measurementTime(iterationTime) //
+                    .addProfiler(GCProfiler.class) //
+                    .resultFormat(ResultFormatType.JSON) //
+                    .result(new File(resultDir, "result-" + threads + "threads.json").getPath());
+            if (include.equals(defaultInclude)) {
+                // fans out its own callers, must run alone
+                options.exclude(VirtualThreadBenchmark.class.getSimpleName());
+            }
+            new Runner(options.build()).run();
+        }
+    }
+}
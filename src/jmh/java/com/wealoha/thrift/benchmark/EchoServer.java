@@ -0,0 +1,57 @@
+package com.wealoha.thrift.benchmark;
+
+import java.net.ServerSocket;
+
+import org.apache.thrift.server.TServer;
+import org.apache.thrift.server.TThreadPoolServer;
+import org.apache.thrift.server.TThreadPoolServer.Args;
+import org.apache.thrift.transport.TFramedTransport;
+import org.apache.thrift.transport.TServerSocket;
+
+import com.wealoha.thrift.ServiceInfo;
+import com.wealoha.thrift.service.TestThriftService.Processor;
+import com.wealoha.thrift.service.TestThriftServiceHandler;
+
+/**
+ * In-process echo server for benchmarks, listen on a random local port
+ * 
+ * @author javamonk
+ * @createTime 2026年10月18日 上午10:20:31
+ */
+public class EchoServer {
+
+    private final TServerSocket serverTransport;
+
+    private final TServer server;
+
+    private final ServiceInfo serviceInfo;
+
+    public EchoServer() throws Exception {
+        serverTransport = new TServerSocket(new ServerSocket(0));
+        serviceInfo = new ServiceInfo("127.0.0.1", serverTransport.getServerSocket()
+                .getLocalPort());
+
+        Args args = new TThreadPoolServer.Args(serverTransport)
+                .inputTransportFactory(new TFramedTransport.Factory())
+                .outputTransportFactory(new TFramedTransport.Factory())
+                .processor(new Processor<>(new TestThriftServiceHandler()));
+        args.maxWorkerThreads = 1024;
+        server = new TThreadPoolServer(args);
+
+        Thread thread = new Thread(server::serve, "echo-server-" + serviceInfo.getPort());
+        thread.setDaemon(true);
+        thread.start();
+        while (!server.isServing()) {
+            Thread.sleep(10);
+        }
+    }
+
+    public ServiceInfo getServiceInfo() {
+        return serviceInfo;
+    }
+
+    public void stop() {
+        server.stop();
+        serverTransport.close();
+    }
+}
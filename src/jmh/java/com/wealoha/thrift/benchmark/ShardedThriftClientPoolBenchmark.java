@@ -0,0 +1,65 @@
+package com.wealoha.thrift.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.transport.TFramedTransport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.wealoha.thrift.PoolConfig;
+import com.wealoha.thrift.ServiceInfo;
+import com.wealoha.thrift.ShardedThriftClientPool;
+import com.wealoha.thrift.ThriftClientPool;
+import com.wealoha.thrift.service.TestThriftService.Client;
+
+/**
+ * Shard lookup of {@link ShardedThriftClientPool}, no connection is made
+ * 
+ * @author javamonk
+ * @createTime 2026年10月18日 上午10:47:55
+ */
+@State(Scope.Benchmark)
+public class ShardedThriftClientPoolBenchmark {
+
+    @Param("16")
+    public int partitions;
+
+    private ShardedThriftClientPool<Integer, Client> shardedPool;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        PoolConfig config = new PoolConfig();
+        config.setTimeout(1000);
+
+        List<ServiceInfo> serviceList = new ArrayList<>();
+        for (int i = 0; i < partitions; i++) {
+            serviceList.add(new ServiceInfo("127.0.0.1", 10000 + i));
+        }
+        shardedPool = new ShardedThriftClientPool<>(serviceList, //
+                key -> key, //
+                servers -> new ThriftClientPool<>(servers, transport -> new Client(
+                        new TBinaryProtocol(new TFramedTransport(transport))), config));
+        // initialize all pools, only lookup cost is measured
+        for (int i = 0; i < partitions; i++) {
+            shardedPool.getShardedPool(i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        shardedPool.close();
+    }
+
+    @Benchmark
+    public ThriftClientPool<Client> getShardedPool() {
+        return shardedPool.getShardedPool(ThreadLocalRandom.current().nextInt(0, Integer.MAX_VALUE));
+    }
+}
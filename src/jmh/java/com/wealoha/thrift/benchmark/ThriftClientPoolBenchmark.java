@@ -0,0 +1,118 @@
+package com.wealoha.thrift.benchmark;
+
+import java.util.Collections;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.transport.TFramedTransport;
+import org.apache.thrift.transport.TSocket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.wealoha.thrift.PoolConfig;
+import com.wealoha.thrift.PoolEngine;
+import com.wealoha.thrift.ThriftClient;
+import com.wealoha.thrift.ThriftClientPool;
+import com.wealoha.thrift.ThriftUtil;
+import com.wealoha.thrift.service.TestThriftService.Client;
+import com.wealoha.thrift.service.TestThriftService.Iface;
+
+/**
+ * Borrow/return and call paths of {@link ThriftClientPool}
+ * 
+ * @author javamonk
+ * @createTime 2026年10月18日 上午10:32:08
+ */
+public class ThriftClientPoolBenchmark {
+
+    private static final String MESSAGE = "Hello!";
+
+    @State(Scope.Benchmark)
+    public static class PoolState {
+
+        @Param("64")
+        public int maxTotal;
+
+        @Param({ "COMMONS_POOL2", "CONCURRENT_BAG" })
+        public PoolEngine engine;
+
+        EchoServer server;
+
+        ThriftClientPool<Client> pool;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            server = new EchoServer();
+
+            PoolConfig config = new PoolConfig();
+            config.setTimeout(1000);
+            config.setMaxTotal(maxTotal);
+            config.setMaxIdle(maxTotal);
+            config.setPoolEngine(engine);
+            pool = new ThriftClientPool<>(Collections.singletonList(server.getServiceInfo()),
+                    transport -> new Client(new TBinaryProtocol(new TFramedTransport(transport))),
+                    config);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            pool.close();
+            server.stop();
+        }
+    }
+
+    /**
+     * a dedicated connection per thread, the cost without any pool
+     */
+    @State(Scope.Thread)
+    public static class RawClientState {
+
+        Client client;
+
+        @Setup(Level.Trial)
+        public void setUp(PoolState poolState) throws Exception {
+            TSocket socket = new TSocket(poolState.server.getServiceInfo().getHost(), poolState.server
+                    .getServiceInfo().getPort(), 1000);
+            socket.open();
+            client = new Client(new TBinaryProtocol(new TFramedTransport(socket)));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            ThriftUtil.closeClient(client);
+        }
+    }
+
+    @Benchmark
+    public ThriftClient<Client> borrowReturn(PoolState state) {
+        try (ThriftClient<Client> client = state.pool.getClient()) {
+            client.finish();
+            return client;
+        }
+    }
+
+    @Benchmark
+    public String borrowEchoReturn(PoolState state) throws TException {
+        try (ThriftClient<Client> client = state.pool.getClient()) {
+            String response = client.iFace().echo(MESSAGE);
+            client.finish();
+            return response;
+        }
+    }
+
+    @Benchmark
+    public String ifaceEcho(PoolState state) throws TException {
+        Iface iface = state.pool.iface();
+        return iface.echo(MESSAGE);
+    }
+
+    @Benchmark
+    public String rawClientEcho(RawClientState state) throws TException {
+        return state.client.echo(MESSAGE);
+    }
+}
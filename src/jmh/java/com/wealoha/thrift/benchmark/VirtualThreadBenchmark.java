@@ -0,0 +1,137 @@
+package com.wealoha.thrift.benchmark;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.transport.TFramedTransport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import com.wealoha.thrift.PoolConfig;
+import com.wealoha.thrift.ThriftClientPool;
+import com.wealoha.thrift.service.TestThriftService.Client;
+import com.wealoha.thrift.service.TestThriftService.Iface;
+
+/**
+ * 10k+ concurrent virtual thread callers against a bounded pool in
+ * {@link PoolConfig#setVirtualThreadMode(boolean)}, per call latency
+ * percentiles are printed after each iteration.<br/>
+ * 
+ * Not in the default run of {@link BenchmarkRunner}, run it alone:
+ * <code>mvn -P jmh test-compile exec:exec -Dbench.include=VirtualThreadBenchmark -Dbench.threads=1</code>
+ * <br/>
+ * Requires jdk 21+, add <code>-Djdk.tracePinnedThreads=full</code> to see
+ * any pinning.
+ * 
+ * @author javamonk
+ * @createTime 2026年10月18日 下午5:40:13
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(1)
+public class VirtualThreadBenchmark {
+
+    @Param("10000")
+    public int callers;
+
+    @Param("64")
+    public int maxTotal;
+
+    private EchoServer server;
+
+    private ThriftClientPool<Client> pool;
+
+    private ExecutorService executorService;
+
+    private long[] latencies;
+
+    private final AtomicInteger errors = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        server = new EchoServer();
+
+        PoolConfig config = new PoolConfig();
+        config.setTimeout(5000);
+        config.setMaxTotal(maxTotal);
+        config.setMaxWaitMillis(-1);
+        config.setVirtualThreadMode(true);
+        pool = new ThriftClientPool<>(Collections.singletonList(server.getServiceInfo()),
+                transport -> new Client(new TBinaryProtocol(new TFramedTransport(transport))),
+                config);
+
+        try {
+            executorService = (ExecutorService) Executors.class.getMethod(
+                    "newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("virtual threads require jdk 21+", e);
+        }
+        latencies = new long[callers];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executorService.shutdownNow();
+        pool.close();
+        server.stop();
+    }
+
+    @TearDown(Level.Iteration)
+    public void printLatency() {
+        long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        System.out.printf("%n%d callers, latency(us) p50=%d p90=%d p99=%d p999=%d max=%d,"
+                + " errors=%d%n", callers, percentile(sorted, 0.5), percentile(sorted, 0.9),
+                percentile(sorted, 0.99), percentile(sorted, 0.999),
+                sorted[sorted.length - 1] / 1000, errors.getAndSet(0));
+    }
+
+    private long percentile(long[] sorted, double percentile) {
+        return sorted[(int) Math.min(sorted.length - 1, sorted.length * percentile)] / 1000;
+    }
+
+    /**
+     * start all callers at once and wait for all of them
+     * 
+     * @throws InterruptedException
+     */
+    @Benchmark
+    public void concurrentCallers() throws InterruptedException {
+        Iface iface = pool.iface();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(callers);
+        for (int i = 0; i < callers; i++) {
+            int index = i;
+            executorService.execute(() -> {
+                try {
+                    start.await();
+                    long begin = System.nanoTime();
+                    iface.echo("Hello!");
+                    latencies[index] = System.nanoTime() - begin;
+                } catch (Throwable e) {
+                    errors.incrementAndGet();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        start.countDown();
+        done.await();
+    }
+}
@@ -0,0 +1,533 @@
+package com.wealoha.thrift;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.RandomUtils;
+import org.apache.thrift.TException;
+import org.apache.thrift.async.AsyncMethodCallback;
+import org.apache.thrift.async.TAsyncClient;
+import org.apache.thrift.async.TAsyncClientManager;
+import org.apache.thrift.transport.TNonblockingSocket;
+import org.apache.thrift.transport.TNonblockingTransport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.wealoha.thrift.exception.ConnectionFailException;
+import com.wealoha.thrift.exception.NoBackendServiceException;
+import com.wealoha.thrift.exception.ThriftException;
+
+/**
+ * Non-blocking pool for {@link TAsyncClient} over
+ * {@link TNonblockingSocket}, no thread is blocked while a call is in
+ * flight.<br/>
+ * 
+ * <code>
+ * AsyncThriftClientPool pool = new AsyncThriftClientPool(services,
+ *     (manager, transport) -> new AsyncClient(new TBinaryProtocol.Factory(), manager, transport), config);<br/>
+ * CompletableFuture&lt;String&gt; f = pool.call((client, callback) -> client.echo("Hello!", callback),
+ *     AsyncClient.echo_call::getResult);
+ * </code>
+ * <p/>
+ * 
+ * <ul>
+ * <li>At most {@link PoolConfig#getMaxTotal()} connections, a connection
+ * carries one call at a time, calls are queued while all connections are
+ * busy (failed after {@link PoolConfig#getMaxWaitMillis()} if positive, or
+ * at once if {@link PoolConfig#getBlockWhenExhausted()} is false).</li>
+ * <li>Connections are driven by {@link PoolConfig#getSelectorThreads()}
+ * {@link TAsyncClientManager}s, {@link PoolConfig#getTimeout()} is the
+ * timeout of a whole call.</li>
+ * <li>If {@link PoolConfig#isFailover()} is set, a call whose connection
+ * fails to establish is sent to the next service.</li>
+ * <li>Futures are completed on selector threads, use thenXxxAsync for
+ * blocking work.</li>
+ * </ul>
+ * Backend servers must use framed transport.
+ * 
+ * @author javamonk
+ * @createTime 2026年10月18日 下午4:05:22
+ */
+public class AsyncThriftClientPool<T extends TAsyncClient> {
+
+    /**
+     * start an async method on client, e.g.
+     * <code>(client, callback) -> client.echo(message, callback)</code>
+     */
+    @FunctionalInterface
+    public interface AsyncCall<T, C> {
+
+        void call(T client, AsyncMethodCallback<C> callback) throws TException;
+    }
+
+    /**
+     * read result from a finished method call, e.g.
+     * <code>echo_call::getResult</code>
+     */
+    @FunctionalInterface
+    public interface AsyncResult<C, R> {
+
+        R get(C methodCall) throws Exception;
+    }
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final BiFunction<TAsyncClientManager, TNonblockingTransport, T> clientFactory;
+
+    private final PoolConfig poolConfig;
+
+    private final int maxTotal;
+
+    private final TAsyncClientManager[] managers;
+
+    private final AtomicInteger nextManager = new AtomicInteger();
+
+    private volatile List<ServiceInfo> services;
+
+    private volatile Set<ServiceInfo> serviceSet;
+
+    private final ConcurrentLinkedDeque<Connection> idleConnections = new ConcurrentLinkedDeque<>();
+
+    private final ConcurrentLinkedQueue<PendingCall<?, ?>> pendingCalls = //
+    new ConcurrentLinkedQueue<>();
+
+    /** connections created and connecting */
+    private final AtomicInteger total = new AtomicInteger();
+
+    private volatile ScheduledExecutorService timer;
+
+    private volatile boolean closed;
+
+    /**
+     * @param services
+     * @param factory create async client, e.g.
+     *        <code>(manager, transport) -> new AsyncClient(new TBinaryProtocol.Factory(), manager, transport)</code>
+     * @param config
+     */
+    public AsyncThriftClientPool(List<ServiceInfo> services,
+            BiFunction<TAsyncClientManager, TNonblockingTransport, T> factory, PoolConfig config) {
+        if (services == null || services.size() == 0) {
+            throw new IllegalArgumentException("services is empty!");
+        }
+        if (factory == null) {
+            throw new IllegalArgumentException("factory is empty!");
+        }
+        if (config == null) {
+            throw new IllegalArgumentException("config is empty!");
+        }
+
+        this.clientFactory = factory;
+        this.poolConfig = config;
+        this.maxTotal = config.getMaxTotal() < 0 ? Integer.MAX_VALUE : config.getMaxTotal();
+        setServices(services);
+
+        managers = new TAsyncClientManager[Math.max(1, config.getSelectorThreads())];
+        try {
+            for (int i = 0; i < managers.length; i++) {
+                managers[i] = new TAsyncClientManager();
+            }
+        } catch (IOException e) {
+            close();
+            throw new ThriftException("Start async client manager failed.", e);
+        }
+    }
+
+    public AsyncThriftClientPool(List<ServiceInfo> services,
+            BiFunction<TAsyncClientManager, TNonblockingTransport, T> factory) {
+        this(services, factory, new PoolConfig());
+    }
+
+    public List<ServiceInfo> getServices() {
+        return services;
+    }
+
+    /**
+     * set new services for this pool, connections to removed services are
+     * closed after their current call
+     *
+     * @param services
+     */
+    public void setServices(List<ServiceInfo> services) {
+        if (services == null || services.size() == 0) {
+            throw new IllegalArgumentException("services is empty!");
+        }
+        this.serviceSet = Collections.unmodifiableSet(new HashSet<>(services));
+        this.services = services;
+        idleConnections.removeIf(connection -> {
+            if (!serviceSet.contains(connection.serviceInfo)) {
+                logger.info("close connection to removed service {}", connection.serviceInfo);
+                closeConnection(connection);
+                return true;
+            }
+            return false;
+        });
+        drain();
+    }
+
+    /**
+     * call an async method using a pooled client
+     * 
+     * @param call start the method, e.g.
+     *        <code>(client, callback) -> client.echo(message, callback)</code>
+     * @param result read result, e.g. <code>echo_call::getResult</code>
+     * @return future of result, completed exceptionally with
+     *         {@link NoBackendServiceException} or
+     *         {@link ConnectionFailException} if connection can not
+     *         establish, or exception thrown by the call
+     */
+    public <C, R> CompletableFuture<R> call(AsyncCall<T, C> call, AsyncResult<C, R> result) {
+        PendingCall<C, R> pendingCall = new PendingCall<>(call, result);
+        if (closed) {
+            pendingCall.fail(new IllegalStateException("Pool closed"));
+            return pendingCall.future;
+        }
+        if (!poolConfig.getBlockWhenExhausted() && idleConnections.isEmpty()
+                && total.get() >= maxTotal) {
+            pendingCall.fail(new ThriftException("Pool exhausted"));
+            return pendingCall.future;
+        }
+
+        pendingCalls.offer(pendingCall);
+        long maxWaitMillis = poolConfig.getMaxWaitMillis();
+        if (maxWaitMillis > 0) {
+            timer().schedule(() -> {
+                if (pendingCall.fail(new ThriftException("Timeout waiting for idle connection"))) {
+                    pendingCalls.remove(pendingCall);
+                }
+            }, maxWaitMillis, TimeUnit.MILLISECONDS);
+        }
+        drain();
+        return pendingCall.future;
+    }
+
+    /**
+     * run pending calls while there is idle connection or room to create
+     * one. Called after a call queued or a connection released, so no call
+     * is left while a connection is available.
+     */
+    private void drain() {
+        while (!pendingCalls.isEmpty() && !closed) {
+            Connection connection = idleConnections.pollFirst();
+            if (connection == null) {
+                if (!reserve()) {
+                    return;
+                }
+            }
+            PendingCall<?, ?> pendingCall = pendingCalls.poll();
+            while (pendingCall != null && !pendingCall.start()) {
+                // timeout already
+                pendingCall = pendingCalls.poll();
+            }
+            if (pendingCall == null) {
+                if (connection != null) {
+                    idleConnections.offerFirst(connection);
+                } else {
+                    total.decrementAndGet();
+                }
+                continue;
+            }
+
+            if (connection == null) {
+                connection = connect(pendingCall, services);
+                if (connection == null) {
+                    continue;
+                }
+            }
+            execute(connection, pendingCall);
+        }
+    }
+
+    private boolean reserve() {
+        while (true) {
+            int current = total.get();
+            if (current >= maxTotal) {
+                return false;
+            }
+            if (total.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * create a connection in a reserved slot, slot is released and call
+     * failed if no service available
+     * 
+     * @param pendingCall
+     * @param serviceList
+     * @return
+     */
+    private Connection connect(PendingCall<?, ?> pendingCall, List<ServiceInfo> serviceList) {
+        while (true) {
+            ServiceInfo serviceInfo = getRandomService(serviceList);
+            if (serviceInfo == null) {
+                total.decrementAndGet();
+                pendingCall.future.completeExceptionally(new NoBackendServiceException());
+                return null;
+            }
+            try {
+                ConnectAwareSocket transport = new ConnectAwareSocket(serviceInfo.getHost(),
+                        serviceInfo.getPort());
+                int index = (nextManager.getAndIncrement() & Integer.MAX_VALUE) % managers.length;
+                TAsyncClientManager manager = managers[index];
+                T client = clientFactory.apply(manager, transport);
+                if (poolConfig.getTimeout() > 0) {
+                    client.setTimeout(poolConfig.getTimeout());
+                }
+                logger.debug("create new connection to {}", serviceInfo);
+                return new Connection(client, transport, serviceInfo);
+            } catch (IOException e) {
+                logger.info("connection create fail service: host={}, port={}",
+                        serviceInfo.getHost(), serviceInfo.getPort());
+                if (!poolConfig.isFailover()) {
+                    total.decrementAndGet();
+                    pendingCall.future.completeExceptionally(new ConnectionFailException("host="
+                            + serviceInfo.getHost() + ", ip=" + serviceInfo.getPort(), e));
+                    return null;
+                }
+                serviceList = removeFailService(serviceList, serviceInfo);
+                pendingCall.remainingServices = serviceList;
+            }
+        }
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private void execute(Connection connection, PendingCall pendingCall) {
+        AsyncMethodCallback callback = new AsyncMethodCallback() {
+
+            @Override
+            public void onComplete(Object methodCall) {
+                Object result;
+                try {
+                    result = pendingCall.result.get(methodCall);
+                } catch (Exception e) {
+                    // application exception, connection is still good
+                    release(connection, true);
+                    pendingCall.future.completeExceptionally(e);
+                    return;
+                }
+                release(connection, true);
+                pendingCall.future.complete(result);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                // the transport is closed before this callback, whether the
+                // request was sent can't be told from it
+                if (!connection.transport.connected && poolConfig.isFailover() && !closed) {
+                    // connection never established, try next service in the same slot
+                    logger.info("failover from service: host={}, port={}",
+                            connection.serviceInfo.getHost(), connection.serviceInfo.getPort());
+                    closeConnection(connection);
+                    List<ServiceInfo> serviceList = pendingCall.remainingServices;
+                    if (serviceList == null) {
+                        serviceList = services;
+                    }
+                    serviceList = removeFailService(serviceList, connection.serviceInfo);
+                    pendingCall.remainingServices = serviceList;
+                    Connection next = connect(pendingCall, serviceList);
+                    if (next != null) {
+                        execute(next, pendingCall);
+                    } else {
+                        drain();
+                    }
+                    return;
+                }
+                logger.warn("invoke fail", e);
+                release(connection, false);
+                pendingCall.future.completeExceptionally(e);
+            }
+        };
+
+        try {
+            pendingCall.call.call(connection.client, callback);
+        } catch (Throwable e) {
+            logger.warn("invoke fail", e);
+            release(connection, false);
+            pendingCall.future.completeExceptionally(e);
+        }
+    }
+
+    private void release(Connection connection, boolean reusable) {
+        if (reusable && !closed && !connection.client.hasError()
+                && serviceSet.contains(connection.serviceInfo)) {
+            idleConnections.offerFirst(connection);
+        } else {
+            closeConnection(connection);
+            total.decrementAndGet();
+        }
+        drain();
+    }
+
+    private void closeConnection(Connection connection) {
+        logger.debug("close connection {}", connection.serviceInfo);
+        try {
+            connection.transport.close();
+        } catch (Throwable e) {
+            logger.warn("close transport fail", e);
+        }
+    }
+
+    private ServiceInfo getRandomService(List<ServiceInfo> serviceList) {
+        if (serviceList == null || serviceList.size() == 0) {
+            return null;
+        }
+        return serviceList.get(RandomUtils.nextInt(0, serviceList.size()));
+    }
+
+    private List<ServiceInfo> removeFailService(List<ServiceInfo> list, ServiceInfo serviceInfo) {
+        logger.info("remove service from current service list: host={}, port={}",
+                serviceInfo.getHost(), serviceInfo.getPort());
+        return list.stream() //
+                .filter(si -> !serviceInfo.equals(si)) //
+                .collect(Collectors.toList());
+    }
+
+    private ScheduledExecutorService timer() {
+        ScheduledExecutorService current = timer;
+        if (current == null) {
+            synchronized (this) {
+                current = timer;
+                if (current == null) {
+                    ThreadFactory threadFactory = runnable -> {
+                        Thread thread = new Thread(runnable, "async-thrift-pool-timer");
+                        thread.setDaemon(true);
+                        return thread;
+                    };
+                    current = Executors.newSingleThreadScheduledExecutor(threadFactory);
+                    timer = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * number of connections(idle, in use and connecting)
+     * 
+     * @return
+     */
+    public int getNumConnections() {
+        return total.get();
+    }
+
+    /**
+     * close all connections and selector threads, fail pending calls
+     */
+    public void close() {
+        closed = true;
+        PendingCall<?, ?> pendingCall;
+        while ((pendingCall = pendingCalls.poll()) != null) {
+            pendingCall.fail(new IllegalStateException("Pool closed"));
+        }
+        Connection connection;
+        while ((connection = idleConnections.poll()) != null) {
+            closeConnection(connection);
+            total.decrementAndGet();
+        }
+        if (managers != null) {
+            for (TAsyncClientManager manager : managers) {
+                if (manager != null) {
+                    manager.stop();
+                }
+            }
+        }
+        if (timer != null) {
+            timer.shutdownNow();
+        }
+    }
+
+    /**
+     * socket remembering if it ever connected, a call failed before that
+     * never reached the server and can go to another one
+     */
+    private static class ConnectAwareSocket extends TNonblockingSocket {
+
+        volatile boolean connected;
+
+        ConnectAwareSocket(String host, int port) throws IOException {
+            super(host, port);
+        }
+
+        @Override
+        public boolean startConnect() throws IOException {
+            boolean done = super.startConnect();
+            if (done) {
+                connected = true;
+            }
+            return done;
+        }
+
+        @Override
+        public boolean finishConnect() throws IOException {
+            boolean done = super.finishConnect();
+            if (done) {
+                connected = true;
+            }
+            return done;
+        }
+    }
+
+    private class Connection {
+
+        final T client;
+
+        final ConnectAwareSocket transport;
+
+        final ServiceInfo serviceInfo;
+
+        Connection(T client, ConnectAwareSocket transport, ServiceInfo serviceInfo) {
+            this.client = client;
+            this.transport = transport;
+            this.serviceInfo = serviceInfo;
+        }
+    }
+
+    private class PendingCall<C, R> {
+
+        final AsyncCall<T, C> call;
+
+        final AsyncResult<C, R> result;
+
+        final CompletableFuture<R> future = new CompletableFuture<>();
+
+        /** services left after failover */
+        volatile List<ServiceInfo> remainingServices;
+
+        private final AtomicBoolean started = new AtomicBoolean();
+
+        PendingCall(AsyncCall<T, C> call, AsyncResult<C, R> result) {
+            this.call = call;
+            this.result = result;
+        }
+
+        /**
+         * @return false if failed(timeout) before start
+         */
+        boolean start() {
+            return started.compareAndSet(false, true);
+        }
+
+        boolean fail(Throwable e) {
+            if (started.compareAndSet(false, true)) {
+                future.completeExceptionally(e);
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,502 @@
+package com.wealoha.thrift;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.pool2.ObjectPool;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.PooledObjectFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A lock-free {@link ObjectPool} in the style of HikariCP's ConcurrentBag<br/>
+ * 
+ * <ul>
+ * <li>Each thread first tries objects it returned recently (thread-local
+ * affinity), then scans a shared copy-on-write array, states are changed by
+ * CAS so borrow and return take no lock and allocate nothing.</li>
+ * <li>New objects are created while total &lt; maxTotal, otherwise the
+ * borrower waits (up to maxWaitMillis) for an object handed off directly by
+ * a returning thread.</li>
+ * </ul>
+ * 
+ * Honors maxTotal, maxWaitMillis, blockWhenExhausted, testOnCreate,
+ * testOnBorrow and testOnReturn of {@link PoolConfig}. Idle objects are
+ * kept until invalidated or failed validation of {@link #evict()}, maxIdle
+ * and the evictor settings are not used.<br/>
+ * 
+ * In {@link PoolConfig#isVirtualThreadMode()} no thread-local is used(a
+ * virtual thread rarely borrows twice), the pool takes no monitor lock and
+ * waiting borrowers park, so virtual threads never pin their carrier.<br/>
+ * 
+ * Pooled objects are tracked by identity, they must not override
+ * equals/hashCode ({@link ThriftClient} does not).
+ * 
+ * @author javamonk
+ * @createTime 2026年10月18日 下午1:20:05
+ */
+class ConcurrentBagObjectPool<T> implements ObjectPool<T> {
+
+    private static final int STATE_IDLE = 0;
+
+    private static final int STATE_IN_USE = 1;
+
+    /** idle object under validation of {@link #evict()} */
+    private static final int STATE_EVICTION = 2;
+
+    private static final int STATE_REMOVED = -1;
+
+    /** objects remembered per thread */
+    private static final int THREAD_LOCAL_SIZE = 16;
+
+    /** a waiter rechecks the bag at least this often */
+    private static final long MAX_WAIT_SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final PooledObjectFactory<T> factory;
+
+    private volatile int maxTotal;
+
+    private final long maxWaitMillis;
+
+    private final boolean blockWhenExhausted;
+
+    private final boolean testOnCreate;
+
+    private final boolean testOnBorrow;
+
+    private final boolean testOnReturn;
+
+    /** null in virtual thread mode */
+    private final ThreadLocal<List<BagEntry<T>>> threadLocalEntries;
+
+    /** copy-on-write, modified under {@link #sharedLock} */
+    private volatile BagEntry<T>[] sharedEntries;
+
+    private final ReentrantLock sharedLock = new ReentrantLock();
+
+    private final ConcurrentHashMap<T, BagEntry<T>> allEntries = new ConcurrentHashMap<>();
+
+    private final AtomicInteger total = new AtomicInteger();
+
+    private final AtomicInteger waiters = new AtomicInteger();
+
+    private final SynchronousQueue<BagEntry<T>> handoffQueue = new SynchronousQueue<>(true);
+
+    /** handed to a waiter when an object is destroyed, so it may create one */
+    private final BagEntry<T> createPermit = new BagEntry<>(null);
+
+    private volatile boolean closed;
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    ConcurrentBagObjectPool(PooledObjectFactory<T> factory, PoolConfig config) {
+        this.factory = factory;
+        this.maxTotal = config.getMaxTotal() < 0 ? Integer.MAX_VALUE : config.getMaxTotal();
+        this.maxWaitMillis = config.getMaxWaitMillis();
+        this.blockWhenExhausted = config.getBlockWhenExhausted();
+        this.testOnCreate = config.getTestOnCreate();
+        this.testOnBorrow = config.getTestOnBorrow();
+        this.testOnReturn = config.getTestOnReturn();
+        this.threadLocalEntries = config.isVirtualThreadMode() ? null : ThreadLocal
+                .withInitial(() -> new ArrayList<>(THREAD_LOCAL_SIZE));
+        this.sharedEntries = new BagEntry[0];
+    }
+
+    /**
+     * change maxTotal, objects over it are kept until invalidated
+     * 
+     * @param maxTotal negative for no limit
+     */
+    void setMaxTotal(int maxTotal) {
+        this.maxTotal = maxTotal < 0 ? Integer.MAX_VALUE : maxTotal;
+    }
+
+    @Override
+    public T borrowObject() throws Exception {
+        return borrowObject(maxWaitMillis);
+    }
+
+    /**
+     * borrow an object, waiting at most borrowMaxWaitMillis (negative for no
+     * limit) if the pool is exhausted
+     * 
+     * @param borrowMaxWaitMillis
+     * @return
+     * @throws NoSuchElementException if pool exhausted
+     * @throws Exception exception thrown by the factory creating object
+     */
+    T borrowObject(long borrowMaxWaitMillis) throws Exception {
+        assertOpen();
+        long deadline = borrowMaxWaitMillis < 0 ? Long.MAX_VALUE : System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(borrowMaxWaitMillis);
+
+        while (true) {
+            BagEntry<T> entry = acquire(deadline);
+            PooledObject<T> p = entry.pooledObject;
+            try {
+                factory.activateObject(p);
+            } catch (Exception e) {
+                destroy(entry);
+                throw e;
+            }
+            if (testOnBorrow && !entry.created && !factory.validateObject(p)) {
+                logger.debug("object failed validation on borrow {}", p.getObject());
+                destroy(entry);
+                continue;
+            }
+            entry.created = false;
+            return p.getObject();
+        }
+    }
+
+    private BagEntry<T> acquire(long deadline) throws Exception {
+        BagEntry<T> entry = acquireIdle();
+        if (entry != null) {
+            return entry;
+        }
+        entry = tryCreate();
+        if (entry != null) {
+            return entry;
+        }
+        if (!blockWhenExhausted) {
+            throw new NoSuchElementException("Pool exhausted");
+        }
+
+        waiters.incrementAndGet();
+        try {
+            while (true) {
+                // something may be returned before we were counted as waiter
+                entry = acquireIdle();
+                if (entry != null) {
+                    return entry;
+                }
+                entry = tryCreate();
+                if (entry != null) {
+                    return entry;
+                }
+
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new NoSuchElementException("Timeout waiting for idle object");
+                }
+                entry = handoffQueue.poll(Math.min(remaining, MAX_WAIT_SLICE_NANOS),
+                        TimeUnit.NANOSECONDS);
+                if (entry != null && entry != createPermit && entry.compareAndSet(STATE_IDLE,
+                        STATE_IN_USE)) {
+                    return entry;
+                }
+                assertOpen();
+            }
+        } finally {
+            waiters.decrementAndGet();
+        }
+    }
+
+    private BagEntry<T> acquireIdle() {
+        if (threadLocalEntries != null) {
+            List<BagEntry<T>> local = threadLocalEntries.get();
+            for (int i = local.size() - 1; i >= 0; i--) {
+                BagEntry<T> entry = local.remove(i);
+                if (entry.compareAndSet(STATE_IDLE, STATE_IN_USE)) {
+                    return entry;
+                }
+            }
+        }
+
+        BagEntry<T>[] shared = sharedEntries;
+        int length = shared.length;
+        if (length == 0) {
+            return null;
+        }
+        // start from a random position, borrowers don't fight for the first ones
+        int start = ThreadLocalRandom.current().nextInt(length);
+        for (int i = 0; i < length; i++) {
+            BagEntry<T> entry = shared[(start + i) % length];
+            if (entry.state == STATE_IDLE && entry.compareAndSet(STATE_IDLE, STATE_IN_USE)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * create a new in use entry if not reach maxTotal
+     * 
+     * @return null if pool is full
+     * @throws Exception
+     */
+    private BagEntry<T> tryCreate() throws Exception {
+        while (true) {
+            int current = total.get();
+            if (current >= maxTotal) {
+                return null;
+            }
+            if (total.compareAndSet(current, current + 1)) {
+                break;
+            }
+        }
+
+        PooledObject<T> p;
+        try {
+            p = factory.makeObject();
+        } catch (Exception e) {
+            total.decrementAndGet();
+            signalWaiter();
+            throw e;
+        }
+        if (testOnCreate && !factory.validateObject(p)) {
+            total.decrementAndGet();
+            factory.destroyObject(p);
+            signalWaiter();
+            throw new NoSuchElementException("Unable to validate object");
+        }
+
+        BagEntry<T> entry = new BagEntry<>(p);
+        entry.state = STATE_IN_USE;
+        entry.created = true;
+        allEntries.put(p.getObject(), entry);
+        sharedLock.lock();
+        try {
+            BagEntry<T>[] shared = Arrays.copyOf(sharedEntries, sharedEntries.length + 1);
+            shared[shared.length - 1] = entry;
+            sharedEntries = shared;
+        } finally {
+            sharedLock.unlock();
+        }
+        return entry;
+    }
+
+    @Override
+    public void returnObject(T obj) throws Exception {
+        BagEntry<T> entry = allEntries.get(obj);
+        if (entry == null) {
+            throw new IllegalStateException("Returned object not currently part of this pool");
+        }
+        if (entry.state != STATE_IN_USE) {
+            throw new IllegalStateException(
+                    "Object has already been returned to this pool or is invalid");
+        }
+
+        PooledObject<T> p = entry.pooledObject;
+        if (testOnReturn && !factory.validateObject(p)) {
+            logger.debug("object failed validation on return {}", obj);
+            destroy(entry);
+            return;
+        }
+        try {
+            factory.passivateObject(p);
+        } catch (Exception e) {
+            destroy(entry);
+            throw e;
+        }
+        if (closed) {
+            destroy(entry);
+            return;
+        }
+
+        requeue(entry);
+        // closed meanwhile, clear() may have skipped it while in use
+        if (closed && entry.compareAndSet(STATE_IDLE, STATE_IN_USE)) {
+            destroy(entry);
+        }
+    }
+
+    /**
+     * make an in use entry idle, hand over to a waiting borrower if any
+     * 
+     * @param entry
+     */
+    private void requeue(BagEntry<T> entry) {
+        entry.state = STATE_IDLE;
+        // hand over to a waiting borrower directly
+        for (int i = 0; waiters.get() > 0; i++) {
+            if (entry.state != STATE_IDLE || handoffQueue.offer(entry)) {
+                return;
+            }
+            if ((i & 0xff) == 0xff) {
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(10));
+            } else {
+                Thread.yield();
+            }
+        }
+
+        if (threadLocalEntries != null) {
+            List<BagEntry<T>> local = threadLocalEntries.get();
+            if (local.size() < THREAD_LOCAL_SIZE) {
+                local.add(entry);
+            }
+        }
+    }
+
+    @Override
+    public void invalidateObject(T obj) throws Exception {
+        BagEntry<T> entry = allEntries.get(obj);
+        if (entry == null) {
+            throw new IllegalStateException("Invalidated object not currently part of this pool");
+        }
+        destroy(entry);
+    }
+
+    private void destroy(BagEntry<T> entry) throws Exception {
+        int state = entry.state;
+        if (state == STATE_REMOVED || !entry.compareAndSet(state, STATE_REMOVED)) {
+            return;
+        }
+        allEntries.remove(entry.pooledObject.getObject());
+        sharedLock.lock();
+        try {
+            BagEntry<T>[] shared = sharedEntries;
+            for (int i = 0; i < shared.length; i++) {
+                if (shared[i] == entry) {
+                    BagEntry<T>[] copy = Arrays.copyOf(shared, shared.length - 1);
+                    System.arraycopy(shared, i + 1, copy, i, shared.length - i - 1);
+                    sharedEntries = copy;
+                    break;
+                }
+            }
+        } finally {
+            sharedLock.unlock();
+        }
+        total.decrementAndGet();
+        try {
+            factory.destroyObject(entry.pooledObject);
+        } finally {
+            signalWaiter();
+        }
+    }
+
+    /**
+     * validate all idle objects, each is taken out while under test and
+     * destroyed if failed
+     * 
+     * @throws Exception
+     */
+    void evict() throws Exception {
+        for (BagEntry<T> entry : sharedEntries) {
+            if (closed) {
+                return;
+            }
+            if (!entry.compareAndSet(STATE_IDLE, STATE_EVICTION)) {
+                continue;
+            }
+            PooledObject<T> p = entry.pooledObject;
+            if (!factory.validateObject(p)) {
+                logger.debug("object failed validation while idle {}", p.getObject());
+                destroy(entry);
+            } else if (closed) {
+                destroy(entry);
+            } else {
+                requeue(entry);
+                // closed meanwhile, clear() skipped it while under test
+                if (closed && entry.compareAndSet(STATE_IDLE, STATE_IN_USE)) {
+                    destroy(entry);
+                }
+            }
+        }
+    }
+
+    /**
+     * tell one waiting borrower there is room to create a new object
+     */
+    private void signalWaiter() {
+        if (waiters.get() > 0) {
+            handoffQueue.offer(createPermit);
+        }
+    }
+
+    @Override
+    public void addObject() throws Exception {
+        assertOpen();
+        BagEntry<T> entry = tryCreate();
+        if (entry != null) {
+            entry.created = false;
+            returnObject(entry.pooledObject.getObject());
+        }
+    }
+
+    @Override
+    public int getNumIdle() {
+        return count(STATE_IDLE);
+    }
+
+    @Override
+    public int getNumActive() {
+        return count(STATE_IN_USE);
+    }
+
+    private int count(int state) {
+        int count = 0;
+        for (BagEntry<T> entry : sharedEntries) {
+            if (entry.state == state) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * destroy all idle objects
+     */
+    @Override
+    public void clear() throws Exception {
+        for (BagEntry<T> entry : sharedEntries) {
+            if (entry.compareAndSet(STATE_IDLE, STATE_IN_USE)) {
+                destroy(entry);
+            }
+        }
+    }
+
+    /**
+     * destroy all idle objects, in use objects will be destroyed when
+     * returned
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            clear();
+        } catch (Exception e) {
+            logger.warn("destroy idle object fail", e);
+        }
+    }
+
+    private void assertOpen() {
+        if (closed) {
+            throw new IllegalStateException("Pool not open");
+        }
+    }
+
+    private static final class BagEntry<T> {
+
+        @SuppressWarnings("rawtypes")
+        private static final AtomicIntegerFieldUpdater<BagEntry> STATE_UPDATER = //
+        AtomicIntegerFieldUpdater.newUpdater(BagEntry.class, "state");
+
+        final PooledObject<T> pooledObject;
+
+        volatile int state;
+
+        /** created by current borrower, no need to validate */
+        boolean created;
+
+        BagEntry(PooledObject<T> pooledObject) {
+            this.pooledObject = pooledObject;
+        }
+
+        boolean compareAndSet(int expect, int update) {
+            return STATE_UPDATER.compareAndSet(this, expect, update);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.wealoha.thrift;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deadline of calls made by current thread, bounds both waiting in borrow
+ * queue and socket read of each call through {@link ThriftClientPool}:
+ * 
+ * <pre>
+ * try (Deadline deadline = Deadline.after(Duration.ofMillis(200))) {
+ *     iface.get(key);
+ *     iface.touch(key); // gets what's left of 200ms
+ * }
+ * </pre>
+ * 
+ * A nested deadline can't be later than the outer one. Not thread-safe,
+ * must be closed by the thread created it.
+ * 
+ * @author javamonk
+ * @createTime 2026年10月19日 上午2:43:50
+ */
+public class Deadline implements Closeable {
+
+    private static final ThreadLocal<Deadline> current = new ThreadLocal<>();
+
+    /** nano time */
+    private final long deadline;
+
+    private final Deadline previous;
+
+    private Deadline(long deadline, Deadline previous) {
+        this.deadline = deadline;
+        this.previous = previous;
+    }
+
+    /**
+     * set deadline of current thread to timeout later, until closed
+     * 
+     * @param timeout
+     * @return
+     */
+    public static Deadline after(Duration timeout) {
+        if (timeout == null) {
+            throw new IllegalArgumentException("timeout is empty!");
+        }
+        long deadline = System.nanoTime() + timeout.toNanos();
+        Deadline previous = current.get();
+        if (previous != null && previous.deadline - deadline < 0) {
+            deadline = previous.deadline;
+        }
+        return attach(deadline, previous);
+    }
+
+    /**
+     * set deadline of current thread the same as given one(from another
+     * thread), until closed
+     * 
+     * @param deadline null for no deadline
+     * @return
+     */
+    static Deadline attach(Deadline deadline) {
+        Deadline previous = current.get();
+        return attach(deadline != null ? deadline.deadline : Long.MAX_VALUE, previous);
+    }
+
+    private static Deadline attach(long deadline, Deadline previous) {
+        Deadline result = new Deadline(deadline, previous);
+        current.set(result);
+        return result;
+    }
+
+    /**
+     * get deadline of current thread
+     * 
+     * @return null if none
+     */
+    public static Deadline current() {
+        Deadline deadline = current.get();
+        return deadline != null && deadline.deadline != Long.MAX_VALUE ? deadline : null;
+    }
+
+    /**
+     * get millis left, rounded up, 0 if passed
+     * 
+     * @return
+     */
+    public long remainingMillis() {
+        long nanos = deadline - System.nanoTime();
+        return nanos <= 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(nanos + 999999);
+    }
+
+    public boolean isExpired() {
+        return deadline - System.nanoTime() <= 0;
+    }
+
+    @Override
+    public void close() {
+        if (previous != null) {
+            current.set(previous);
+        } else {
+            current.remove();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Deadline [remainingMillis=" + remainingMillis() + "]";
+    }
+}
@@ -0,0 +1,116 @@
+package com.wealoha.thrift;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Opt-in hedging of {@link ThriftClientPool#iface()} calls: if an
+ * idempotent method(annotated {@link Idempotent} or in method names) takes
+ * longer than delay, the same call is sent on another connection to a
+ * different backend, whichever finishes first wins and the other one's
+ * connection is closed. Hedges are limited to budgetPercent of calls.
+ * 
+ * @author javamonk
+ * @createTime 2026年10月19日 上午1:12:47
+ */
+public class HedgePolicy {
+
+    private Set<String> methodNames = Collections.emptySet();
+
+    private long delayMillis = 10;
+
+    private double percentile = 0;
+
+    private double budgetPercent = 10;
+
+    /**
+     * get if method can be hedged
+     * 
+     * @param method
+     * @return
+     */
+    public boolean isHedged(Method method) {
+        return method.isAnnotationPresent(Idempotent.class)
+                || methodNames.contains(method.getName());
+    }
+
+    /**
+     * get names of idempotent methods, besides methods annotated
+     * {@link Idempotent}
+     * 
+     * @return
+     */
+    public Set<String> getMethodNames() {
+        return methodNames;
+    }
+
+    /**
+     * set names of idempotent methods, besides methods annotated
+     * {@link Idempotent}
+     * 
+     * @param methodNames
+     */
+    public void setMethodNames(Collection<String> methodNames) {
+        this.methodNames = Collections.unmodifiableSet(new HashSet<>(methodNames));
+    }
+
+    /**
+     * get fixed hedge delay(default 10)
+     * 
+     * @return
+     */
+    public long getDelayMillis() {
+        return delayMillis;
+    }
+
+    /**
+     * set fixed hedge delay, or fallback of {@link #setPercentile(double)}
+     * before enough samples
+     * 
+     * @param delayMillis
+     */
+    public void setDelayMillis(long delayMillis) {
+        this.delayMillis = delayMillis;
+    }
+
+    /**
+     * get percentile(0-100) of recent latency of the method as hedge delay
+     * (default 0, means fixed delay)
+     * 
+     * @return
+     */
+    public double getPercentile() {
+        return percentile;
+    }
+
+    /**
+     * set percentile(0-100) of recent latency of the method as hedge delay,
+     * e.g. 95
+     * 
+     * @param percentile
+     */
+    public void setPercentile(double percentile) {
+        this.percentile = percentile;
+    }
+
+    /**
+     * get max hedges in percent of calls(default 10)
+     * 
+     * @return
+     */
+    public double getBudgetPercent() {
+        return budgetPercent;
+    }
+
+    /**
+     * set max hedges in percent of calls
+     * 
+     * @param budgetPercent
+     */
+    public void setBudgetPercent(double budgetPercent) {
+        this.budgetPercent = budgetPercent;
+    }
+}
@@ -0,0 +1,231 @@
+package com.wealoha.thrift;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.thrift.TServiceClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * One hedged Iface call of {@link PooledIfaceHandler}: the primary attempt
+ * runs on caller thread, after delay a hedge attempt is started on another
+ * backend in background. The first finished attempt wins, the other one's
+ * connection is closed so its call is abandoned.
+ * 
+ * @author javamonk
+ * @createTime 2026年10月19日 上午1:26:51
+ */
+class HedgedInvocation<T extends TServiceClient> {
+
+    private static Logger logger = LoggerFactory.getLogger(HedgedInvocation.class);
+
+    private static final ScheduledExecutorService timer = Executors
+            .newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "thrift-pool-hedge-timer");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    /** hedges running at most, a hedge is skipped if all are busy */
+    private static final int MAX_HEDGES = 64;
+
+    private static final ExecutorService executor = new ThreadPoolExecutor(0, MAX_HEDGES, 60,
+            TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "thrift-pool-hedge");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private static final int HEDGE_NONE = 0;
+
+    private static final int HEDGE_STARTED = 1;
+
+    private static final int HEDGE_FORBIDDEN = 2;
+
+    private final ThriftClientPool<T> pool;
+
+    private final Method method;
+
+    private final MethodHandle handle;
+
+    private final Object[] args;
+
+    private final RequestBudget budget;
+
+    private final AtomicInteger hedgeState = new AtomicInteger(HEDGE_NONE);
+
+    private final AtomicBoolean finished = new AtomicBoolean();
+
+    private final CompletableFuture<Object> hedgeResult = new CompletableFuture<>();
+
+    private volatile Attempt primary;
+
+    private volatile Attempt hedge;
+
+    /** deadline of caller thread, applies to hedge too */
+    private final Deadline deadline = Deadline.current();
+
+    HedgedInvocation(ThriftClientPool<T> pool, Method method, MethodHandle handle,
+            Object[] args, RequestBudget budget) {
+        this.pool = pool;
+        this.method = method;
+        this.handle = handle;
+        this.args = args;
+        this.budget = budget;
+    }
+
+    Object invoke(long delayNanos) throws Throwable {
+        primary = new Attempt(pool.getClient());
+        ScheduledFuture<?> hedgeTimer = timer.schedule(this::startHedge, delayNanos,
+                TimeUnit.NANOSECONDS);
+        Throwable failure;
+        try {
+            Object result = primary.run();
+            hedgeTimer.cancel(false);
+            finish();
+            return result;
+        } catch (Throwable e) {
+            hedgeTimer.cancel(false);
+            failure = e;
+        }
+
+        // primary failed, or abandoned because hedge won
+        if (hedgeState.compareAndSet(HEDGE_NONE, HEDGE_FORBIDDEN)) {
+            throw failure;
+        }
+        try {
+            long timeoutMillis = deadline != null ? deadline.remainingMillis() : pool
+                    .getReadTimeout();
+            return timeoutMillis > 0 ? hedgeResult.get(timeoutMillis, TimeUnit.MILLISECONDS)
+                    : hedgeResult.get();
+        } catch (ExecutionException e) {
+            throw failure;
+        } catch (TimeoutException e) {
+            abandonHedge();
+            throw failure;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abandonHedge();
+            throw failure;
+        }
+    }
+
+    private void abandonHedge() {
+        finished.set(true);
+        Attempt attempt = hedge;
+        if (attempt != null) {
+            attempt.cancel();
+        }
+    }
+
+    private void startHedge() {
+        if (finished.get() || !budget.tryAcquire()) {
+            return;
+        }
+        if (!hedgeState.compareAndSet(HEDGE_NONE, HEDGE_STARTED)) {
+            return;
+        }
+        try {
+            executor.execute(this::runHedge);
+        } catch (RejectedExecutionException e) {
+            logger.debug("skip hedge, {} hedges running", MAX_HEDGES);
+            hedgeResult.completeExceptionally(e);
+        }
+    }
+
+    private void runHedge() {
+        Deadline callDeadline = Deadline.attach(deadline);
+        try {
+            Attempt attempt = new Attempt(pool.getClient(primary.client.getServiceInfo()));
+            hedge = attempt;
+            if (finished.get()) {
+                attempt.cancel();
+            }
+            logger.debug("hedge to {}", attempt.client.getServiceInfo());
+            Object result = attempt.run();
+            hedgeResult.complete(result);
+            finish();
+        } catch (Throwable e) {
+            hedgeResult.completeExceptionally(e);
+        } finally {
+            callDeadline.close();
+        }
+    }
+
+    /**
+     * one attempt won, abandon others
+     */
+    private void finish() {
+        if (finished.compareAndSet(false, true)) {
+            Attempt attempt = primary;
+            if (attempt != null) {
+                attempt.cancel();
+            }
+            attempt = hedge;
+            if (attempt != null) {
+                attempt.cancel();
+            }
+        }
+    }
+
+    private final class Attempt {
+
+        private static final int RUNNING = 0;
+
+        private static final int DONE = 1;
+
+        private static final int CANCELLED = 2;
+
+        private final ThriftClient<T> client;
+
+        private final AtomicInteger state = new AtomicInteger(RUNNING);
+
+        Attempt(ThriftClient<T> client) {
+            this.client = client;
+        }
+
+        Object run() throws Throwable {
+            Throwable error = null;
+            long start = System.nanoTime();
+            try {
+                return (Object) handle.invokeExact((Object) client.iFace(), args);
+            } catch (Throwable e) {
+                error = e;
+                throw e;
+            } finally {
+                // a cancelled client is closed, it's not returned even succeeded
+                boolean done = state.compareAndSet(RUNNING, DONE);
+                if (done) {
+                    pool.getPoolConfig().getMetricsRecorder().onCall(client.getServiceInfo(),
+                            method.getName(), System.nanoTime() - start, error);
+                }
+                if (done) {
+                    client.setResult(error);
+                } else {
+                    client.setFinish(false);
+                }
+                client.close();
+            }
+        }
+
+        void cancel() {
+            if (state.compareAndSet(RUNNING, CANCELLED)) {
+                client.abort();
+            }
+        }
+    }
+}
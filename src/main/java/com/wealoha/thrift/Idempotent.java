@@ -0,0 +1,21 @@
+package com.wealoha.thrift;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Mark an Iface method safe to call more than once, e.g. on an interface
+ * extending the generated Iface and implemented by a subclass of Client.
+ * See {@link HedgePolicy}.
+ * 
+ * @author javamonk
+ * @createTime 2026年10月19日 上午1:05:33
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Idempotent {
+}
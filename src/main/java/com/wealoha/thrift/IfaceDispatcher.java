@@ -0,0 +1,110 @@
+package com.wealoha.thrift;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.wealoha.thrift.exception.ThriftException;
+
+/**
+ * Interfaces and {@link MethodHandle}s of all Iface methods of a client
+ * class, created once per client class, so proxies of pools dispatch
+ * without reflection.
+ * 
+ * @author javamonk
+ * @createTime 2026年10月18日 下午7:02:36
+ */
+class IfaceDispatcher {
+
+    private static final ClassValue<IfaceDispatcher> DISPATCHERS = new ClassValue<IfaceDispatcher>() {
+
+        @Override
+        protected IfaceDispatcher computeValue(Class<?> clientClass) {
+            return new IfaceDispatcher(clientClass);
+        }
+    };
+
+    private final ClassLoader classLoader;
+
+    private final Class<?>[] interfaces;
+
+    /** (Object target, Object[] args)Object */
+    private final Map<Method, MethodHandle> handles = new HashMap<>();
+
+    private IfaceDispatcher(Class<?> clientClass) {
+        classLoader = clientClass.getClassLoader();
+        interfaces = clientClass.getInterfaces();
+        try {
+            for (Class<?> iface : interfaces) {
+                for (Method method : iface.getMethods()) {
+                    handles.put(method, spreadHandle(method));
+                }
+            }
+        } catch (ReflectiveOperationException e) {
+            throw new ThriftException("Create iface proxy for " + clientClass + " failed.", e);
+        }
+    }
+
+    static IfaceDispatcher of(Class<?> clientClass) {
+        return DISPATCHERS.get(clientClass);
+    }
+
+    /**
+     * create a proxy implements all interfaces of client class, once per
+     * pool as it's cached there
+     * 
+     * @param handler
+     * @return
+     */
+    Object newProxy(InvocationHandler handler) {
+        try {
+            return Proxy.newProxyInstance(classLoader, interfaces, handler);
+        } catch (IllegalArgumentException e) {
+            throw new ThriftException("Create iface proxy failed.", e);
+        }
+    }
+
+    /**
+     * handle of type (Object target, Object[] args)Object
+     * 
+     * @param method
+     * @return null if method is not an Iface method(methods of Object)
+     */
+    MethodHandle handle(Method method) {
+        return handles.get(method);
+    }
+
+    /**
+     * equals, hashCode and toString of proxy
+     * 
+     * @param proxy
+     * @param method
+     * @param args
+     * @param description
+     * @return
+     */
+    static Object invokeObjectMethod(Object proxy, Method method, Object[] args,
+            String description) {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return description;
+            default:
+                throw new UnsupportedOperationException(method.toString());
+        }
+    }
+
+    private static MethodHandle spreadHandle(Method method) throws IllegalAccessException {
+        method.setAccessible(true);
+        MethodHandle handle = MethodHandles.lookup().unreflect(method);
+        return handle.asType(handle.type().generic()).asSpreader(Object[].class,
+                method.getParameterCount());
+    }
+}
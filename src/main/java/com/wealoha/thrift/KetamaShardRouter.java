@@ -0,0 +1,75 @@
+package com.wealoha.thrift;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Ketama consistent hash ring, each partition has 160 points named by its
+ * servers, so a partition owns the same arcs whatever other partitions
+ * are. Points are kept in sorted arrays and looked up by binary search.
+ * 
+ * @author javamonk
+ * @createTime 2026年10月18日 下午11:12:46
+ */
+class KetamaShardRouter implements ShardRouter {
+
+    /** md5 digests per partition, 4 points each */
+    private static final int DIGESTS = 40;
+
+    private final int[] points;
+
+    private final int[] shards;
+
+    KetamaShardRouter(List<List<ServiceInfo>> partitions) {
+        long[] ring = new long[partitions.size() * DIGESTS * 4];
+        int n = 0;
+        MessageDigest md5 = md5();
+        for (int shard = 0; shard < partitions.size(); shard++) {
+            String name = partitions.get(shard).stream() //
+                    .map(si -> si.getHost() + ":" + si.getPort()) //
+                    .collect(Collectors.joining(","));
+            for (int i = 0; i < DIGESTS; i++) {
+                byte[] digest = md5.digest((name + "-" + i).getBytes(StandardCharsets.UTF_8));
+                for (int h = 0; h < 4; h++) {
+                    int point = (digest[3 + h * 4] & 0xFF) << 24 | (digest[2 + h * 4] & 0xFF) << 16
+                            | (digest[1 + h * 4] & 0xFF) << 8 | (digest[h * 4] & 0xFF);
+                    // point in high bits, shard in low bits, sorted by point then shard
+                    ring[n++] = (long) point << 32 | shard;
+                }
+            }
+        }
+        Arrays.sort(ring);
+        points = new int[n];
+        shards = new int[n];
+        for (int i = 0; i < n; i++) {
+            points[i] = (int) (ring[i] >> 32);
+            shards[i] = (int) ring[i];
+        }
+    }
+
+    private static MessageDigest md5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 not supported", e);
+        }
+    }
+
+    @Override
+    public int shard(int hash) {
+        int key = (int) ShardStrategy.mix(hash);
+        // first point >= key, wrap around
+        int index = Arrays.binarySearch(points, key);
+        if (index < 0) {
+            index = -index - 1;
+            if (index == points.length) {
+                index = 0;
+            }
+        }
+        return shards[index];
+    }
+}
@@ -0,0 +1,94 @@
+package com.wealoha.thrift;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of recent latencies for percentiles, in log-linear
+ * buckets(8 per power of two of microseconds, error &lt; 13%). Samples of
+ * current and previous window are counted, windows rotate every 10s.
+ * 
+ * @author javamonk
+ * @createTime 2026年10月19日 上午12:21:36
+ */
+class LatencyHistogram {
+
+    private static final int SUB_BUCKETS = 8;
+
+    private static final int BUCKETS = 32 * SUB_BUCKETS;
+
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    /** too few samples make no sense */
+    private static final long MIN_SAMPLES = 20;
+
+    private volatile AtomicLongArray current = new AtomicLongArray(BUCKETS);
+
+    private volatile AtomicLongArray previous = new AtomicLongArray(BUCKETS);
+
+    private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+
+    void record(long nanos) {
+        rotate();
+        current.incrementAndGet(bucket(TimeUnit.NANOSECONDS.toMicros(nanos)));
+    }
+
+    /**
+     * @param percentile 0-100
+     * @return upper bound of latency at percentile in nanos, -1 if not
+     *         enough samples
+     */
+    long percentileNanos(double percentile) {
+        rotate();
+        AtomicLongArray a = current;
+        AtomicLongArray b = previous;
+        long total = 0;
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = a.get(i) + b.get(i);
+            total += counts[i];
+        }
+        if (total < MIN_SAMPLES) {
+            return -1;
+        }
+        long rank = (long) Math.ceil(total * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return TimeUnit.MICROSECONDS.toNanos(upperBound(i));
+            }
+        }
+        return TimeUnit.MICROSECONDS.toNanos(upperBound(BUCKETS - 1));
+    }
+
+    private void rotate() {
+        long start = windowStart.get();
+        long now = System.nanoTime();
+        if (now - start >= WINDOW_NANOS && windowStart.compareAndSet(start, now)) {
+            // samples recorded into the old array meanwhile may be lost, it's fine
+            previous = now - start >= 2 * WINDOW_NANOS ? new AtomicLongArray(BUCKETS) : current;
+            current = new AtomicLongArray(BUCKETS);
+        }
+    }
+
+    static int bucket(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) Math.max(micros, 0);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros); // >= 3
+        int sub = (int) (micros >>> (exponent - 3)) & (SUB_BUCKETS - 1);
+        int index = (exponent - 2) * SUB_BUCKETS + sub;
+        return Math.min(index, BUCKETS - 1);
+    }
+
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket + 1;
+        }
+        int exponent = bucket / SUB_BUCKETS + 2;
+        int sub = bucket % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + sub + 1) << (exponent - 3);
+    }
+}
@@ -0,0 +1,91 @@
+package com.wealoha.thrift;
+
+/**
+ * Events of {@link ThriftClientPool} for metrics, see
+ * {@link PoolConfig#setMetricsRecorder(MetricsRecorder)}. Called on hot
+ * path by many threads, implementations must be thread-safe and cheap.<br/>
+ * 
+ * {@link PoolMetrics} keeps counters and histograms in memory(and JMX),
+ * {@link MicrometerMetricsRecorder} records to a Micrometer registry.
+ * 
+ * @author javamonk
+ * @createTime 2026年10月19日 上午3:02:18
+ */
+public interface MetricsRecorder {
+
+    /** records nothing(default) */
+    MetricsRecorder NOOP = new MetricsRecorder() {
+    };
+
+    /**
+     * a connection is opened
+     * 
+     * @param serviceInfo
+     */
+    default void onCreate(ServiceInfo serviceInfo) {
+    }
+
+    /**
+     * a connection can't be opened
+     * 
+     * @param serviceInfo
+     * @param e
+     */
+    default void onCreateFailure(ServiceInfo serviceInfo, Throwable e) {
+    }
+
+    /**
+     * a connection is closed by pool
+     * 
+     * @param serviceInfo
+     */
+    default void onDestroy(ServiceInfo serviceInfo) {
+    }
+
+    /**
+     * a pooled connection is dropped by validation
+     * 
+     * @param serviceInfo
+     */
+    default void onValidationFailure(ServiceInfo serviceInfo) {
+    }
+
+    /**
+     * a client is borrowed
+     * 
+     * @param serviceInfo
+     * @param waitNanos time spent in {@link ThriftClientPool#getClient()}
+     */
+    default void onBorrow(ServiceInfo serviceInfo, long waitNanos) {
+    }
+
+    /**
+     * a borrowed client is returned or invalidated
+     * 
+     * @param serviceInfo
+     */
+    default void onRelease(ServiceInfo serviceInfo) {
+    }
+
+    /**
+     * a backend is skipped for failure when borrowing
+     * 
+     * @param serviceInfo
+     * @param e
+     */
+    default void onFailover(ServiceInfo serviceInfo, Throwable e) {
+    }
+
+    /**
+     * a call through {@link ThriftClientPool#iface()} ends, each attempt of
+     * retries and hedges is a call
+     * 
+     * @param serviceInfo
+     * @param method name of Iface method
+     * @param latencyNanos
+     * @param error null if succeeded
+     */
+    default void onCall(ServiceInfo serviceInfo, String method, long latencyNanos,
+            Throwable error) {
+    }
+}
@@ -0,0 +1,167 @@
+package com.wealoha.thrift;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * {@link MetricsRecorder} records to a Micrometer {@link MeterRegistry},
+ * all meters are tagged with pool name and backend(host:port):
+ * 
+ * <ul>
+ * <li>thrift.pool.connections.active / idle gauges</li>
+ * <li>thrift.pool.connections.created / destroyed / validation.failures
+ * counters</li>
+ * <li>thrift.pool.connections.create.failures counter, tagged exception</li>
+ * <li>thrift.pool.failovers counter</li>
+ * <li>thrift.pool.borrow.wait timer</li>
+ * <li>thrift.client.calls timer, tagged method and exception("none" if
+ * succeeded)</li>
+ * </ul>
+ * 
+ * Percentiles and histograms of timers are configured on the registry,
+ * e.g. by MeterFilter. Needs micrometer-core, an optional dependency.
+ * 
+ * @author javamonk
+ * @createTime 2026年10月19日 上午3:28:05
+ */
+public class MicrometerMetricsRecorder implements MetricsRecorder {
+
+    private final MeterRegistry registry;
+
+    private final Tags tags;
+
+    private final ConcurrentMap<ServiceInfo, BackendMeters> backends = new ConcurrentHashMap<>();
+
+    /** call timers by method and exception */
+    private final ConcurrentMap<String, Timer> callTimers = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Counter> createFailures = new ConcurrentHashMap<>();
+
+    /** meters of one backend */
+    private class BackendMeters {
+
+        private final Tags tags;
+
+        private final LongAdder connections = new LongAdder();
+
+        private final LongAdder active = new LongAdder();
+
+        private final Counter created;
+
+        private final Counter destroyed;
+
+        private final Counter validationFailures;
+
+        private final Counter failovers;
+
+        private final Timer borrowWait;
+
+        BackendMeters(ServiceInfo serviceInfo) {
+            this.tags = MicrometerMetricsRecorder.this.tags.and("backend", serviceInfo.getHost()
+                    + ":" + serviceInfo.getPort());
+            Gauge.builder("thrift.pool.connections.active", active, LongAdder::sum) //
+                    .tags(tags).register(registry);
+            Gauge.builder("thrift.pool.connections.idle", this,
+                    b -> Math.max(0, b.connections.sum() - b.active.sum())) //
+                    .tags(tags).register(registry);
+            this.created = registry.counter("thrift.pool.connections.created", tags);
+            this.destroyed = registry.counter("thrift.pool.connections.destroyed", tags);
+            this.validationFailures = registry.counter(
+                    "thrift.pool.connections.validation.failures", tags);
+            this.failovers = registry.counter("thrift.pool.failovers", tags);
+            this.borrowWait = registry.timer("thrift.pool.borrow.wait", tags);
+        }
+    }
+
+    /**
+     * @param registry
+     * @param poolName value of tag "pool"
+     */
+    public MicrometerMetricsRecorder(MeterRegistry registry, String poolName) {
+        if (registry == null) {
+            throw new IllegalArgumentException("registry is empty!");
+        }
+        if (poolName == null || poolName.isEmpty()) {
+            throw new IllegalArgumentException("poolName is empty!");
+        }
+        this.registry = registry;
+        this.tags = Tags.of("pool", poolName);
+    }
+
+    private BackendMeters backend(ServiceInfo serviceInfo) {
+        BackendMeters backend = backends.get(serviceInfo);
+        return backend != null ? backend : backends.computeIfAbsent(serviceInfo,
+                BackendMeters::new);
+    }
+
+    private static String exception(Throwable e) {
+        return e == null ? "none" : e.getClass().getSimpleName();
+    }
+
+    @Override
+    public void onCreate(ServiceInfo serviceInfo) {
+        BackendMeters backend = backend(serviceInfo);
+        backend.connections.increment();
+        backend.created.increment();
+    }
+
+    @Override
+    public void onCreateFailure(ServiceInfo serviceInfo, Throwable e) {
+        BackendMeters backend = backend(serviceInfo);
+        String exception = exception(e);
+        createFailures.computeIfAbsent(serviceInfo + "|" + exception,
+                k -> registry.counter("thrift.pool.connections.create.failures", backend.tags
+                        .and("exception", exception))).increment();
+    }
+
+    @Override
+    public void onDestroy(ServiceInfo serviceInfo) {
+        BackendMeters backend = backend(serviceInfo);
+        backend.connections.decrement();
+        backend.destroyed.increment();
+    }
+
+    @Override
+    public void onValidationFailure(ServiceInfo serviceInfo) {
+        backend(serviceInfo).validationFailures.increment();
+    }
+
+    @Override
+    public void onBorrow(ServiceInfo serviceInfo, long waitNanos) {
+        BackendMeters backend = backend(serviceInfo);
+        backend.active.increment();
+        backend.borrowWait.record(waitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void onRelease(ServiceInfo serviceInfo) {
+        backend(serviceInfo).active.decrement();
+    }
+
+    @Override
+    public void onFailover(ServiceInfo serviceInfo, Throwable e) {
+        backend(serviceInfo).failovers.increment();
+    }
+
+    @Override
+    public void onCall(ServiceInfo serviceInfo, String method, long latencyNanos,
+            Throwable error) {
+        String exception = exception(error);
+        String key = serviceInfo + "|" + method + "|" + exception;
+        Timer timer = callTimers.get(key);
+        if (timer == null) {
+            BackendMeters backend = backend(serviceInfo);
+            timer = callTimers.computeIfAbsent(key, k -> registry.timer("thrift.client.calls",
+                    backend.tags.and("method", method, "exception", exception)));
+        }
+        timer.record(latencyNanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,311 @@
+package com.wealoha.thrift;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.thrift.TByteArrayOutputStream;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TMessage;
+import org.apache.thrift.protocol.TMessageType;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.protocol.TProtocolDecorator;
+import org.apache.thrift.transport.TMemoryInputTransport;
+import org.apache.thrift.transport.TTransport;
+import org.apache.thrift.transport.TTransportException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A socket shared by many concurrent calls of
+ * {@link PipelinedThriftClientPool}.<br/>
+ * 
+ * Each call gets its own client over a {@link CallTransport}, seqid of the
+ * request message is replaced by a connection wide unique one(and restored
+ * in the response), the framed request is written to socket under a lock.
+ * A reader thread reads response frames, and hands each one to the call
+ * waiting for its seqid.
+ * 
+ * @author javamonk
+ * @createTime 2026年10月18日 下午7:25:10
+ */
+class PipelinedConnection {
+
+    private static Logger logger = LoggerFactory.getLogger(PipelinedConnection.class);
+
+    private final ServiceInfo serviceInfo;
+
+    private final ThriftProtocolFactory protocolFactory;
+
+    private final int timeout;
+
+    private final Socket socket;
+
+    private final OutputStream output;
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private final ConcurrentHashMap<Integer, CompletableFuture<byte[]>> pendingResponses = //
+    new ConcurrentHashMap<>();
+
+    private final AtomicInteger nextSeqid = new AtomicInteger();
+
+    private volatile boolean closed;
+
+    /**
+     * connect to service and start reader thread
+     * 
+     * @param serviceInfo
+     * @param protocolFactory must use framed transport
+     * @param timeout connect timeout and max wait of a response in millis, 0
+     *        means no timeout
+     * @throws TTransportException if connect fail
+     */
+    PipelinedConnection(ServiceInfo serviceInfo, ThriftProtocolFactory protocolFactory,
+            int timeout) throws TTransportException {
+        this.serviceInfo = serviceInfo;
+        this.protocolFactory = protocolFactory;
+        this.timeout = timeout;
+        this.socket = new Socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.connect(new InetSocketAddress(serviceInfo.getHost(), serviceInfo.getPort()),
+                    timeout);
+            output = new BufferedOutputStream(socket.getOutputStream());
+            DataInputStream input = new DataInputStream(new BufferedInputStream(
+                    socket.getInputStream()));
+            Thread reader = new Thread(() -> read(input), "thrift-pipeline-reader-"
+                    + serviceInfo.getHost() + ":" + serviceInfo.getPort());
+            reader.setDaemon(true);
+            reader.start();
+        } catch (IOException e) {
+            closeSocket();
+            throw new TTransportException(TTransportException.NOT_OPEN, e);
+        }
+    }
+
+    ServiceInfo getServiceInfo() {
+        return serviceInfo;
+    }
+
+    boolean isOpen() {
+        return !closed;
+    }
+
+    int getPendingCount() {
+        return pendingResponses.size();
+    }
+
+    /**
+     * protocol for one call over this connection, create client on it
+     * 
+     * @return
+     */
+    TProtocol newCallProtocol() {
+        CallTransport transport = new CallTransport();
+        return new SeqIdProtocol(protocolFactory.makeProtocol(transport), transport);
+    }
+
+    private void read(DataInputStream input) {
+        try {
+            while (!closed) {
+                int size = input.readInt();
+                if (size < 0) {
+                    throw new IOException("Read a negative frame size (" + size + ")!");
+                }
+                byte[] frame = new byte[size + 4];
+                frame[0] = (byte) (size >>> 24);
+                frame[1] = (byte) (size >>> 16);
+                frame[2] = (byte) (size >>> 8);
+                frame[3] = (byte) size;
+                input.readFully(frame, 4, size);
+
+                int seqid = protocolFactory.makeProtocol(new TMemoryInputTransport(frame))
+                        .readMessageBegin().seqid;
+                CompletableFuture<byte[]> response = pendingResponses.remove(seqid);
+                if (response != null) {
+                    response.complete(frame);
+                } else {
+                    logger.debug("discard response of unknown seqid {}, maybe timeout", seqid);
+                }
+            }
+        } catch (Exception e) {
+            if (!closed) {
+                logger.warn("pipelined connection broken {}", serviceInfo, e);
+            }
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * write a framed request
+     * 
+     * @return future of response, null if oneway
+     * @throws TTransportException
+     */
+    private CompletableFuture<byte[]> send(byte[] request, int length, int seqid, boolean oneway)
+            throws TTransportException {
+        if (length < 4 || ((request[0] & 0xff) << 24 | (request[1] & 0xff) << 16
+                | (request[2] & 0xff) << 8 | (request[3] & 0xff)) != length - 4) {
+            throw new IllegalStateException("pipelined connection requires framed transport");
+        }
+        CompletableFuture<byte[]> response = null;
+        if (!oneway) {
+            // registered before written, response may come at once
+            response = new CompletableFuture<>();
+            pendingResponses.put(seqid, response);
+        }
+        writeLock.lock();
+        try {
+            if (closed) {
+                throw new TTransportException(TTransportException.NOT_OPEN, "connection closed");
+            }
+            output.write(request, 0, length);
+            output.flush();
+            return response;
+        } catch (IOException e) {
+            pendingResponses.remove(seqid);
+            close();
+            throw new TTransportException(TTransportException.UNKNOWN, e);
+        } catch (TTransportException e) {
+            pendingResponses.remove(seqid);
+            throw e;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private byte[] receive(int seqid, CompletableFuture<byte[]> response)
+            throws TTransportException {
+        if (response == null) {
+            throw new TTransportException(TTransportException.UNKNOWN, "no request sent");
+        }
+        try {
+            return timeout > 0 ? response.get(timeout, TimeUnit.MILLISECONDS) : response.get();
+        } catch (TimeoutException e) {
+            pendingResponses.remove(seqid);
+            throw new TTransportException(TTransportException.TIMED_OUT, e);
+        } catch (ExecutionException e) {
+            throw new TTransportException(TTransportException.NOT_OPEN, e.getCause());
+        } catch (InterruptedException e) {
+            pendingResponses.remove(seqid);
+            Thread.currentThread().interrupt();
+            throw new TTransportException(TTransportException.UNKNOWN, e);
+        }
+    }
+
+    /**
+     * close socket, fail all waiting calls
+     */
+    void close() {
+        closed = true;
+        closeSocket();
+        TTransportException e = new TTransportException(TTransportException.NOT_OPEN,
+                "connection closed");
+        pendingResponses.values().forEach(response -> response.completeExceptionally(e));
+        pendingResponses.clear();
+    }
+
+    private void closeSocket() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            logger.warn("close socket fail", e);
+        }
+    }
+
+    /**
+     * buffers request of a call, then reads its response frame
+     */
+    private class CallTransport extends TTransport {
+
+        private final TByteArrayOutputStream request = new TByteArrayOutputStream(64);
+
+        private int seqid;
+
+        private boolean oneway;
+
+        private CompletableFuture<byte[]> pendingResponse;
+
+        private TMemoryInputTransport response;
+
+        @Override
+        public boolean isOpen() {
+            return !closed;
+        }
+
+        @Override
+        public void open() throws TTransportException {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void write(byte[] buf, int off, int len) throws TTransportException {
+            request.write(buf, off, len);
+        }
+
+        @Override
+        public void flush() throws TTransportException {
+            try {
+                pendingResponse = send(request.get(), request.len(), seqid, oneway);
+            } finally {
+                request.reset();
+            }
+        }
+
+        @Override
+        public int read(byte[] buf, int off, int len) throws TTransportException {
+            if (response == null) {
+                response = new TMemoryInputTransport(receive(seqid, pendingResponse));
+            }
+            return response.read(buf, off, len);
+        }
+    }
+
+    /**
+     * replace seqid of request with a connection wide unique one, restore
+     * it on response
+     */
+    private class SeqIdProtocol extends TProtocolDecorator {
+
+        private final CallTransport transport;
+
+        private int clientSeqid;
+
+        SeqIdProtocol(TProtocol protocol, CallTransport transport) {
+            super(protocol);
+            this.transport = transport;
+        }
+
+        @Override
+        public void writeMessageBegin(TMessage message) throws TException {
+            clientSeqid = message.seqid;
+            transport.seqid = nextSeqid.incrementAndGet();
+            transport.oneway = message.type == TMessageType.ONEWAY;
+            transport.pendingResponse = null;
+            transport.response = null;
+            super.writeMessageBegin(new TMessage(message.name, message.type, transport.seqid));
+        }
+
+        @Override
+        public TMessage readMessageBegin() throws TException {
+            TMessage message = super.readMessageBegin();
+            return new TMessage(message.name, message.type, clientSeqid);
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.wealoha.thrift;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.RandomUtils;
+import org.apache.thrift.TServiceClient;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.transport.TMemoryBuffer;
+import org.apache.thrift.transport.TTransportException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.wealoha.thrift.exception.ConnectionFailException;
+import com.wealoha.thrift.exception.NoBackendServiceException;
+import com.wealoha.thrift.exception.ThriftException;
+
+/**
+ * Pipelined pool, a handful of sockets per backend carries any number of
+ * concurrent calls: requests are written concurrently onto a shared socket
+ * and responses are matched back to their callers by seqid.<br/>
+ * 
+ * <code>
+ * PipelinedThriftClientPool pool = new PipelinedThriftClientPool(services, Client::new,
+ *     new ThriftMultiplexedBinaryProtocolFactory("echo"), config);<br/>
+ * Iface iface = pool.iface();
+ * </code>
+ * <p/>
+ * <ul>
+ * <li>Protocol factory must use framed transport, like
+ * {@link ThriftMultiplexedBinaryProtocolFactory} or
+ * <code>transport -> new TBinaryProtocol(new TFramedTransport(transport))</code>
+ * </li>
+ * <li>Backend server must be able to process requests of one connection
+ * concurrently or in order(e.g. TThreadedSelectorServer, or any server for
+ * a connection is processed one request after another).</li>
+ * <li>{@link PoolConfig#getPipelineConnections()} sockets per backend,
+ * {@link PoolConfig#getTimeout()} is the connect timeout and max wait of a
+ * response.</li>
+ * </ul>
+ * 
+ * @author javamonk
+ * @createTime 2026年10月18日 下午8:10:47
+ */
+public class PipelinedThriftClientPool<T extends TServiceClient> {
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final Function<TProtocol, T> clientFactory;
+
+    private final ThriftProtocolFactory protocolFactory;
+
+    private final PoolConfig poolConfig;
+
+    private volatile List<ServiceInfo> services;
+
+    private final ConcurrentHashMap<ServiceInfo, Backend> backends = new ConcurrentHashMap<>();
+
+    private volatile boolean closed;
+
+    private final Object ifaceProxy;
+
+    /**
+     * @param services
+     * @param factory create client on a protocol, e.g. <code>Client::new</code>
+     * @param protocolFactory must use framed transport
+     * @param config
+     */
+    public PipelinedThriftClientPool(List<ServiceInfo> services, Function<TProtocol, T> factory,
+            ThriftProtocolFactory protocolFactory, PoolConfig config) {
+        if (services == null || services.size() == 0) {
+            throw new IllegalArgumentException("services is empty!");
+        }
+        if (factory == null) {
+            throw new IllegalArgumentException("factory is empty!");
+        }
+        if (protocolFactory == null) {
+            throw new IllegalArgumentException("protocolFactory is empty!");
+        }
+        if (config == null) {
+            throw new IllegalArgumentException("config is empty!");
+        }
+        this.services = services;
+        this.clientFactory = factory;
+        this.protocolFactory = protocolFactory;
+        this.poolConfig = config;
+
+        // client on a dummy transport, just for its Iface types
+        Class<?> clientClass = factory.apply(protocolFactory.makeProtocol(new TMemoryBuffer(0)))
+                .getClass();
+        IfaceDispatcher dispatcher = IfaceDispatcher.of(clientClass);
+        this.ifaceProxy = dispatcher.newProxy((proxy, method, args) -> invoke(dispatcher, proxy,
+                method, args));
+    }
+
+    public List<ServiceInfo> getServices() {
+        return services;
+    }
+
+    /**
+     * set new services for this pool, connections to removed services are
+     * closed(calls on them fail)
+     *
+     * @param services
+     */
+    public void setServices(List<ServiceInfo> services) {
+        if (services == null || services.size() == 0) {
+            throw new IllegalArgumentException("services is empty!");
+        }
+        if (closed) {
+            throw new IllegalStateException("pool is closed");
+        }
+        this.services = services;
+        backends.keySet().removeIf(serviceInfo -> {
+            if (!services.contains(serviceInfo)) {
+                logger.info("close connections to removed service {}", serviceInfo);
+                backends.get(serviceInfo).close();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    /**
+     * get an IFace, each method call goes through a shared connection
+     * <p/>
+     * <span style="color:red">Important: Iface is totally generated by
+     * thrift, a ClassCastException will be thrown if assign not
+     * match!</span><br/>
+     * The return object is thread-safe and can be kept and used any times.
+     * 
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public <X> X iface() {
+        return (X) ifaceProxy;
+    }
+
+    /**
+     * get a client whose calls go through a shared connection, the client
+     * must be used by one thread, and can be dropped after use(nothing to
+     * return).
+     * 
+     * @return
+     * @throws NoBackendServiceException if
+     *         {@link PoolConfig#setFailover(boolean)} is set and no
+     *         service can connect to
+     * @throws ConnectionFailException if
+     *         {@link PoolConfig#setFailover(boolean)} not set and
+     *         connection fail
+     * @throws ThriftException if pool is closed
+     */
+    public T getClient() throws ThriftException {
+        return clientFactory.apply(getConnection().newCallProtocol());
+    }
+
+    private Object invoke(IfaceDispatcher dispatcher, Object proxy, Method method, Object[] args)
+            throws Throwable {
+        MethodHandle handle = dispatcher.handle(method);
+        if (handle == null) {
+            return IfaceDispatcher.invokeObjectMethod(proxy, method, args, "iface proxy of "
+                    + this);
+        }
+        try {
+            return (Object) handle.invokeExact((Object) getClient(), args);
+        } catch (Throwable e) {
+            logger.warn("invoke fail", e);
+            throw e;
+        }
+    }
+
+    private PipelinedConnection getConnection() {
+        List<ServiceInfo> serviceList = services;
+        ServiceInfo serviceInfo = getRandomService(serviceList);
+        while (true) {
+            if (serviceInfo == null) {
+                throw new NoBackendServiceException();
+            }
+            if (closed) {
+                throw new ThriftException("pool is closed");
+            }
+            try {
+                // a service removed meanwhile gets no backend, nobody would close it
+                Backend backend = backends.computeIfAbsent(serviceInfo, si -> services
+                        .contains(si) ? new Backend(si) : null);
+                PipelinedConnection connection = backend != null ? backend.next() : null;
+                if (connection != null) {
+                    return connection;
+                }
+                logger.debug("service removed, choose again: {}", serviceInfo);
+                serviceList = services;
+                serviceInfo = getRandomService(serviceList);
+            } catch (TTransportException e) {
+                logger.info("transport open fail service: host={}, port={}",
+                        serviceInfo.getHost(), serviceInfo.getPort());
+                if (!poolConfig.isFailover()) {
+                    throw new ConnectionFailException("host=" + serviceInfo.getHost() + ", ip="
+                            + serviceInfo.getPort(), e);
+                }
+                serviceList = removeFailService(serviceList, serviceInfo);
+                serviceInfo = getRandomService(serviceList);
+                if (serviceInfo != null) {
+                    logger.info("failover to next service host={}, port={}",
+                            serviceInfo.getHost(), serviceInfo.getPort());
+                }
+            }
+        }
+    }
+
+    private ServiceInfo getRandomService(List<ServiceInfo> serviceList) {
+        if (serviceList == null || serviceList.size() == 0) {
+            return null;
+        }
+        return serviceList.get(RandomUtils.nextInt(0, serviceList.size()));
+    }
+
+    private List<ServiceInfo> removeFailService(List<ServiceInfo> list, ServiceInfo serviceInfo) {
+        logger.info("remove service from current service list: host={}, port={}",
+                serviceInfo.getHost(), serviceInfo.getPort());
+        return list.stream() //
+                .filter(si -> !serviceInfo.equals(si)) //
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * close all connections, no client can be got after closed
+     */
+    public void close() {
+        closed = true;
+        backends.values().forEach(Backend::close);
+        backends.clear();
+    }
+
+    /**
+     * connections to one service, used round-robin, (re)connected lazily
+     */
+    private class Backend {
+
+        private final ServiceInfo serviceInfo;
+
+        private final PipelinedConnection[] connections;
+
+        private final ReentrantLock connectLock = new ReentrantLock();
+
+        private final AtomicInteger next = new AtomicInteger();
+
+        /** guarded by connectLock */
+        private boolean closed;
+
+        Backend(ServiceInfo serviceInfo) {
+            this.serviceInfo = serviceInfo;
+            this.connections = new PipelinedConnection[Math.max(1,
+                    poolConfig.getPipelineConnections())];
+        }
+
+        /**
+         * @return null if service is removed or pool is closed
+         * @throws TTransportException
+         */
+        PipelinedConnection next() throws TTransportException {
+            int index = (next.getAndIncrement() & Integer.MAX_VALUE) % connections.length;
+            PipelinedConnection connection = connections[index];
+            if (connection != null && connection.isOpen()) {
+                return connection;
+            }
+            connectLock.lock();
+            try {
+                if (closed || PipelinedThriftClientPool.this.closed
+                        || !services.contains(serviceInfo)) {
+                    // a connection opened now would never be closed
+                    return null;
+                }
+                connection = connections[index];
+                if (connection == null || !connection.isOpen()) {
+                    logger.debug("create pipelined connection to {}", serviceInfo);
+                    connection = new PipelinedConnection(serviceInfo, protocolFactory,
+                            poolConfig.getTimeout());
+                    connections[index] = connection;
+                }
+                return connection;
+            } finally {
+                connectLock.unlock();
+            }
+        }
+
+        void close() {
+            connectLock.lock();
+            try {
+                closed = true;
+                for (PipelinedConnection connection : connections) {
+                    if (connection != null) {
+                        connection.close();
+                    }
+                }
+            } finally {
+                connectLock.unlock();
+            }
+        }
+    }
+}
@@ -1,7 +1,15 @@
 package com.wealoha.thrift;
 
+import java.util.function.Supplier;
+
 import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
 
+import com.wealoha.thrift.balance.Backend;
+import com.wealoha.thrift.balance.CircuitBreakerPolicy;
+import com.wealoha.thrift.balance.ConcurrencyLimit;
+import com.wealoha.thrift.balance.LoadBalancer;
+import com.wealoha.thrift.balance.RandomLoadBalancer;
+
 /**
  * Pool configurations all by passing to commons-pool2, see
  * {@link GenericObjectPoolConfig} for details.
@@ -15,6 +23,54 @@ public class PoolConfig extends GenericObjectPoolConfig {
 
     private boolean failover = false;
 
+    private PoolEngine poolEngine = PoolEngine.COMMONS_POOL2;
+
+    private int selectorThreads = 1;
+
+    private boolean virtualThreadMode = false;
+
+    private int pipelineConnections = 2;
+
+    private ThriftTransportFactory transportFactory;
+
+    private boolean warmUp = false;
+
+    private LoadBalancer loadBalancer = new RandomLoadBalancer();
+
+    private int ejectionFailures = 3;
+
+    private long ejectionMillis = 10000;
+
+    private int maxTotalPerBackend = -1;
+
+    private int minIdlePerBackend = -1;
+
+    private HedgePolicy hedgePolicy;
+
+    private RetryPolicy retryPolicy;
+
+    private CircuitBreakerPolicy circuitBreakerPolicy;
+
+    private int connectTimeout = -1;
+
+    private int readTimeout = -1;
+
+    private MetricsRecorder metricsRecorder = MetricsRecorder.NOOP;
+
+    private long keepAliveMillis = 0;
+
+    private long maxLifetimeMillis = 0;
+
+    private ThriftPing ping;
+
+    private long drainMillis = 5000;
+
+    private String zone;
+
+    private double localMinHealthyPercent = 70;
+
+    private Supplier<ConcurrencyLimit> concurrencyLimit;
+
     /**
      * get default connection socket timeout (default 0, means not timeout)
      * 
@@ -25,7 +81,8 @@ public class PoolConfig extends GenericObjectPoolConfig {
     }
 
     /**
-     * set default connection socket timeout
+     * set default connection socket timeout, both connect and read unless
+     * {@link #setConnectTimeout(int)} or {@link #setReadTimeout(int)} is set
      * 
      * @param timeout timeout millis
      */
@@ -33,6 +90,44 @@ public class PoolConfig extends GenericObjectPoolConfig {
         this.timeout = timeout;
     }
 
+    /**
+     * get connect timeout(default -1, means {@link #getTimeout()})
+     * 
+     * @return
+     */
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * set connect timeout, 0 means not timeout
+     * 
+     * @param connectTimeout timeout millis
+     */
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * get socket read timeout of calls(default -1, means
+     * {@link #getTimeout()})
+     * 
+     * @return
+     */
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    /**
+     * set socket read timeout of calls, 0 means not timeout, a call within
+     * {@link Deadline} times out at the deadline if earlier
+     * 
+     * @param readTimeout timeout millis
+     */
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
     /**
      * get connect to next service if one service fail(default false)
      * 
@@ -50,4 +145,468 @@ public class PoolConfig extends GenericObjectPoolConfig {
     public void setFailover(boolean failover) {
         this.failover = failover;
     }
+
+    /**
+     * get the pool implementation(default {@link PoolEngine#COMMONS_POOL2})
+     * 
+     * @return
+     */
+    public PoolEngine getPoolEngine() {
+        return poolEngine;
+    }
+
+    /**
+     * set the pool implementation, {@link PoolEngine#CONCURRENT_BAG} for
+     * high concurrency
+     * 
+     * @param poolEngine
+     */
+    public void setPoolEngine(PoolEngine poolEngine) {
+        if (poolEngine == null) {
+            throw new IllegalArgumentException("poolEngine is empty!");
+        }
+        this.poolEngine = poolEngine;
+    }
+
+    /**
+     * get selector threads of {@link AsyncThriftClientPool}(default 1)
+     * 
+     * @return
+     */
+    public int getSelectorThreads() {
+        return selectorThreads;
+    }
+
+    /**
+     * set selector threads of {@link AsyncThriftClientPool}, each one is a
+     * TAsyncClientManager
+     * 
+     * @param selectorThreads
+     */
+    public void setSelectorThreads(int selectorThreads) {
+        this.selectorThreads = selectorThreads;
+    }
+
+    /**
+     * get virtual thread friendly mode(default false)
+     * 
+     * @return
+     */
+    public boolean isVirtualThreadMode() {
+        return virtualThreadMode;
+    }
+
+    /**
+     * set virtual thread friendly mode, for callers running on virtual
+     * threads(jdk 21+). Borrow, return and invoke take no monitor lock so
+     * carrier threads are never pinned: {@link PoolEngine#CONCURRENT_BAG} is
+     * used whatever {@link #setPoolEngine(PoolEngine)} is, without
+     * thread-local caching, and waiting borrowers park instead of blocking
+     * in monitors.
+     * 
+     * @param virtualThreadMode
+     */
+    public void setVirtualThreadMode(boolean virtualThreadMode) {
+        this.virtualThreadMode = virtualThreadMode;
+    }
+
+    /**
+     * get sockets per backend of {@link PipelinedThriftClientPool}(default
+     * 2)
+     * 
+     * @return
+     */
+    public int getPipelineConnections() {
+        return pipelineConnections;
+    }
+
+    /**
+     * set sockets per backend of {@link PipelinedThriftClientPool}, calls
+     * are spread over them
+     * 
+     * @param pipelineConnections
+     */
+    public void setPipelineConnections(int pipelineConnections) {
+        this.pipelineConnections = pipelineConnections;
+    }
+
+    /**
+     * get transport wrapping the socket of {@link ThriftClientPool}(default
+     * null, means the raw socket)
+     * 
+     * @return
+     */
+    public ThriftTransportFactory getTransportFactory() {
+        return transportFactory;
+    }
+
+    /**
+     * set transport wrapping the socket of {@link ThriftClientPool}, e.g.
+     * {@link ThriftFramedTransportFactory} or
+     * {@link ThriftBufferedTransportFactory}, applied after socket opened
+     * 
+     * @param transportFactory
+     */
+    public void setTransportFactory(ThriftTransportFactory transportFactory) {
+        this.transportFactory = transportFactory;
+    }
+
+    /**
+     * get open connections in background at construction and after
+     * services changed(default false)
+     * 
+     * @return
+     */
+    public boolean isWarmUp() {
+        return warmUp;
+    }
+
+    /**
+     * set open min idle connections of each backend(see
+     * {@link #getMinIdlePerBackend()}) in background when {@link ThriftClientPool} is constructed and to each new
+     * backend after {@link ThriftClientPool#setServices(java.util.List)}, see
+     * {@link ThriftClientPool#getReadyFuture()}
+     * 
+     * @param warmUp
+     */
+    public void setWarmUp(boolean warmUp) {
+        this.warmUp = warmUp;
+    }
+
+    /**
+     * get how {@link ThriftClientPool} choose backend for new connection
+     * (default {@link RandomLoadBalancer})
+     * 
+     * @return
+     */
+    public LoadBalancer getLoadBalancer() {
+        return loadBalancer;
+    }
+
+    /**
+     * set how {@link ThriftClientPool} choose backend for new connection,
+     * see implementations in package com.wealoha.thrift.balance
+     * 
+     * @param loadBalancer
+     */
+    public void setLoadBalancer(LoadBalancer loadBalancer) {
+        if (loadBalancer == null) {
+            throw new IllegalArgumentException("loadBalancer is empty!");
+        }
+        this.loadBalancer = loadBalancer;
+    }
+
+    /**
+     * get consecutive failures to eject a backend(default 3)
+     * 
+     * @return
+     */
+    public int getEjectionFailures() {
+        return ejectionFailures;
+    }
+
+    /**
+     * set consecutive failures(connect or call) to eject a backend, 0 means
+     * never eject, see {@link Backend}
+     * 
+     * @param ejectionFailures
+     */
+    public void setEjectionFailures(int ejectionFailures) {
+        this.ejectionFailures = ejectionFailures;
+    }
+
+    /**
+     * get how long an ejected backend gets no connection(default 10000)
+     * 
+     * @return
+     */
+    public long getEjectionMillis() {
+        return ejectionMillis;
+    }
+
+    /**
+     * set how long an ejected backend gets no connection, after that it's
+     * probed by next new connection
+     * 
+     * @param ejectionMillis
+     */
+    public void setEjectionMillis(long ejectionMillis) {
+        this.ejectionMillis = ejectionMillis;
+    }
+
+    /**
+     * get max connections to each backend of {@link ThriftClientPool}
+     * (default -1, means maxTotal divided by number of backends)
+     * 
+     * @return
+     */
+    public int getMaxTotalPerBackend() {
+        return maxTotalPerBackend;
+    }
+
+    /**
+     * set max connections to each backend of {@link ThriftClientPool}, each
+     * backend has its own sub-pool so a slow one can't take all
+     * connections
+     * 
+     * @param maxTotalPerBackend
+     */
+    public void setMaxTotalPerBackend(int maxTotalPerBackend) {
+        this.maxTotalPerBackend = maxTotalPerBackend;
+    }
+
+    /**
+     * get min idle connections to each backend of {@link ThriftClientPool}
+     * (default -1, means minIdle divided by number of backends)
+     * 
+     * @return
+     */
+    public int getMinIdlePerBackend() {
+        return minIdlePerBackend;
+    }
+
+    /**
+     * set min idle connections to each backend of {@link ThriftClientPool}
+     * 
+     * @param minIdlePerBackend
+     */
+    public void setMinIdlePerBackend(int minIdlePerBackend) {
+        this.minIdlePerBackend = minIdlePerBackend;
+    }
+
+    /**
+     * get hedging of {@link ThriftClientPool#iface()} calls(default null,
+     * means off)
+     * 
+     * @return
+     */
+    public HedgePolicy getHedgePolicy() {
+        return hedgePolicy;
+    }
+
+    /**
+     * set hedging of {@link ThriftClientPool#iface()} calls, only for
+     * idempotent methods
+     * 
+     * @param hedgePolicy
+     */
+    public void setHedgePolicy(HedgePolicy hedgePolicy) {
+        this.hedgePolicy = hedgePolicy;
+    }
+
+    /**
+     * get retries of failed {@link ThriftClientPool#iface()} calls(default
+     * null, means off)
+     * 
+     * @return
+     */
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * set retries of failed {@link ThriftClientPool#iface()} calls, only for
+     * idempotent methods
+     * 
+     * @param retryPolicy
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * get circuit breaker of each backend(default null, means only
+     * ejection by consecutive failures)
+     * 
+     * @return
+     */
+    public CircuitBreakerPolicy getCircuitBreakerPolicy() {
+        return circuitBreakerPolicy;
+    }
+
+    /**
+     * set circuit breaker of each backend, see
+     * {@link com.wealoha.thrift.balance.CircuitBreaker}
+     * 
+     * @param circuitBreakerPolicy
+     */
+    public void setCircuitBreakerPolicy(CircuitBreakerPolicy circuitBreakerPolicy) {
+        this.circuitBreakerPolicy = circuitBreakerPolicy;
+    }
+
+    /**
+     * get metrics recorder(default {@link MetricsRecorder#NOOP})
+     * 
+     * @return
+     */
+    public MetricsRecorder getMetricsRecorder() {
+        return metricsRecorder;
+    }
+
+    /**
+     * set metrics recorder, e.g. {@link PoolMetrics} or
+     * {@link MicrometerMetricsRecorder}
+     * 
+     * @param metricsRecorder
+     */
+    public void setMetricsRecorder(MetricsRecorder metricsRecorder) {
+        if (metricsRecorder == null) {
+            throw new IllegalArgumentException("metricsRecorder is empty!");
+        }
+        this.metricsRecorder = metricsRecorder;
+    }
+
+    /**
+     * get interval of checking idle connections in background(default 0,
+     * means never)
+     * 
+     * @return
+     */
+    public long getKeepAliveMillis() {
+        return keepAliveMillis;
+    }
+
+    /**
+     * set interval of checking idle connections in background, dead ones(
+     * closed by peer, or failed {@link #setPing(ThriftPing)}) and ones
+     * over {@link #setMaxLifetimeMillis(long)} are closed and reopened up to
+     * minIdle, e.g. shorter than NAT or load balancer idle timeout
+     * 
+     * @param keepAliveMillis
+     */
+    public void setKeepAliveMillis(long keepAliveMillis) {
+        this.keepAliveMillis = keepAliveMillis;
+    }
+
+    /**
+     * get max lifetime of a connection(default 0, means no limit)
+     * 
+     * @return
+     */
+    public long getMaxLifetimeMillis() {
+        return maxLifetimeMillis;
+    }
+
+    /**
+     * set max lifetime of a connection, each connection gets up to 10% less
+     * at random so they don't expire together. Expired ones are closed
+     * while idle by a background check every tenth of it(or
+     * {@link #setKeepAliveMillis(long)} if shorter), not on borrow or return
+     * 
+     * @param maxLifetimeMillis
+     */
+    public void setMaxLifetimeMillis(long maxLifetimeMillis) {
+        this.maxLifetimeMillis = maxLifetimeMillis;
+    }
+
+    /**
+     * get how long connections of a service removed by
+     * {@link ThriftClientPool#setServices(java.util.List)} can still be used
+     * (default 5000)
+     * 
+     * @return
+     */
+    public long getDrainMillis() {
+        return drainMillis;
+    }
+
+    /**
+     * set how long connections of a removed service can still be used, those
+     * not returned after it are aborted, negative means wait for them forever
+     * 
+     * @param drainMillis
+     */
+    public void setDrainMillis(long drainMillis) {
+        this.drainMillis = drainMillis;
+    }
+
+    /**
+     * get availability zone of this caller(default null, means no zone
+     * preference)
+     * 
+     * @return
+     */
+    public String getZone() {
+        return zone;
+    }
+
+    /**
+     * set availability zone of this caller, backends of the same
+     * {@link ServiceInfo#getZone()} are preferred, see
+     * {@link #setLocalMinHealthyPercent(double)}
+     * 
+     * @param zone
+     */
+    public void setZone(String zone) {
+        this.zone = zone;
+    }
+
+    /**
+     * get percent of local zone backends usable to keep all traffic local
+     * (default 70)
+     * 
+     * @return
+     */
+    public double getLocalMinHealthyPercent() {
+        return localMinHealthyPercent;
+    }
+
+    /**
+     * set percent of local zone backends usable(available and not
+     * exhausted) to keep all traffic local, below it borrows drawing an
+     * unusable local backend spill over to other zones in proportion, e.g.
+     * at 70 with 35% usable half of them spill
+     * 
+     * @param localMinHealthyPercent
+     */
+    public void setLocalMinHealthyPercent(double localMinHealthyPercent) {
+        if (localMinHealthyPercent <= 0 || localMinHealthyPercent > 100) {
+            throw new IllegalArgumentException("localMinHealthyPercent must be in (0, 100]!");
+        }
+        this.localMinHealthyPercent = localMinHealthyPercent;
+    }
+
+    /**
+     * get factory of concurrency limit of each backend(default null, means
+     * no limit but maxTotal)
+     * 
+     * @return
+     */
+    public Supplier<ConcurrencyLimit> getConcurrencyLimit() {
+        return concurrencyLimit;
+    }
+
+    /**
+     * set factory of concurrency limit of each backend, e.g.
+     * <code>VegasLimit::new</code>. Connections borrowed from a backend are
+     * limited by it, adjusted from how long they are borrowed. Backends at
+     * limit are skipped, if all are at limit borrowing fails at once with
+     * {@link com.wealoha.thrift.exception.ConcurrencyLimitExceededException}
+     * instead of waiting
+     * 
+     * @param concurrencyLimit
+     */
+    public void setConcurrencyLimit(Supplier<ConcurrencyLimit> concurrencyLimit) {
+        this.concurrencyLimit = concurrencyLimit;
+    }
+
+    /**
+     * get call to check idle connections(default null, means only check
+     * the socket is not closed by peer)
+     * 
+     * @return
+     */
+    public ThriftPing getPing() {
+        return ping;
+    }
+
+    /**
+     * set call to check idle connections besides the socket check, a
+     * lightweight method of the service
+     * 
+     * @param ping
+     */
+    public void setPing(ThriftPing ping) {
+        this.ping = ping;
+    }
 }
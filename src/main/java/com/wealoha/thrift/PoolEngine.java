@@ -0,0 +1,123 @@
+package com.wealoha.thrift;
+
+import java.util.NoSuchElementException;
+
+import org.apache.commons.pool2.ObjectPool;
+import org.apache.commons.pool2.PooledObjectFactory;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+
+/**
+ * Implementation of the object pool behind {@link ThriftClientPool}, see
+ * {@link PoolConfig#setPoolEngine(PoolEngine)}
+ * 
+ * @author javamonk
+ * @createTime 2026年10月18日 下午1:12:40
+ */
+public enum PoolEngine {
+
+    /**
+     * commons-pool2 {@link GenericObjectPool} (default), supports all
+     * configurations of {@link PoolConfig}
+     */
+    COMMONS_POOL2 {
+
+        @Override
+        <T> ObjectPool<T> createPool(PooledObjectFactory<T> factory, PoolConfig config) {
+            return new GenericObjectPool<>(factory, config);
+        }
+
+        @Override
+        void setMaxTotal(ObjectPool<?> pool, int maxTotal) {
+            ((GenericObjectPool<?>) pool).setMaxTotal(maxTotal);
+        }
+
+        @Override
+        void setMinIdle(ObjectPool<?> pool, int minIdle) {
+            ((GenericObjectPool<?>) pool).setMinIdle(minIdle);
+        }
+
+        @Override
+        <T> T borrowObject(ObjectPool<T> pool, long maxWaitMillis) throws Exception {
+            return ((GenericObjectPool<T>) pool).borrowObject(maxWaitMillis);
+        }
+
+        @Override
+        void evict(ObjectPool<?> pool) throws Exception {
+            ((GenericObjectPool<?>) pool).evict();
+        }
+    },
+
+    /**
+     * {@link ConcurrentBagObjectPool}, a lock-free pool for high
+     * concurrency, borrow and return are allocation free and mostly
+     * uncontended
+     */
+    CONCURRENT_BAG {
+
+        @Override
+        <T> ObjectPool<T> createPool(PooledObjectFactory<T> factory, PoolConfig config) {
+            return new ConcurrentBagObjectPool<>(factory, config);
+        }
+
+        @Override
+        void setMaxTotal(ObjectPool<?> pool, int maxTotal) {
+            ((ConcurrentBagObjectPool<?>) pool).setMaxTotal(maxTotal);
+        }
+
+        @Override
+        void setMinIdle(ObjectPool<?> pool, int minIdle) {
+            // minIdle is not kept by this pool, but by warm-up and housekeeper
+            // of ThriftClientPool
+        }
+
+        @Override
+        <T> T borrowObject(ObjectPool<T> pool, long maxWaitMillis) throws Exception {
+            return ((ConcurrentBagObjectPool<T>) pool).borrowObject(maxWaitMillis);
+        }
+
+        @Override
+        void evict(ObjectPool<?> pool) throws Exception {
+            ((ConcurrentBagObjectPool<?>) pool).evict();
+        }
+    };
+
+    abstract <T> ObjectPool<T> createPool(PooledObjectFactory<T> factory, PoolConfig config);
+
+    /**
+     * change maxTotal of a pool created by this engine, negative for no
+     * limit
+     * 
+     * @param pool
+     * @param maxTotal
+     */
+    abstract void setMaxTotal(ObjectPool<?> pool, int maxTotal);
+
+    /**
+     * change minIdle of a pool created by this engine
+     * 
+     * @param pool
+     * @param minIdle
+     */
+    abstract void setMinIdle(ObjectPool<?> pool, int minIdle);
+
+    /**
+     * borrow from a pool created by this engine, waiting at most
+     * maxWaitMillis if exhausted and blockWhenExhausted
+     * 
+     * @param pool
+     * @param maxWaitMillis
+     * @return
+     * @throws NoSuchElementException if exhausted
+     * @throws Exception
+     */
+    abstract <T> T borrowObject(ObjectPool<T> pool, long maxWaitMillis) throws Exception;
+
+    /**
+     * validate idle objects of a pool created by this engine, destroy those
+     * failed, borrowers never get an object under test
+     * 
+     * @param pool
+     * @throws Exception
+     */
+    abstract void evict(ObjectPool<?> pool) throws Exception;
+}
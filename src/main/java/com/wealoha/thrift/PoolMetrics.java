@@ -0,0 +1,331 @@
+package com.wealoha.thrift;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.wealoha.thrift.exception.ThriftException;
+
+/**
+ * {@link MetricsRecorder} keeps metrics in memory: counters in
+ * {@link LongAdder}s, borrow wait and call latency of each method in
+ * histograms of recent 10-20 seconds. One instance can be shared by pools
+ * (e.g. all pools of a {@link ShardedThriftClientPool}) to sum them up.
+ * <br/>
+ * 
+ * Can be exposed to JMX by {@link #registerMBean(String)}.
+ * 
+ * @author javamonk
+ * @createTime 2026年10月19日 上午3:14:27
+ */
+public class PoolMetrics implements MetricsRecorder, PoolMetricsMXBean {
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final LongAdder borrows = new LongAdder();
+
+    private final LatencyHistogram borrowWait = new LatencyHistogram();
+
+    private final LongAdder creates = new LongAdder();
+
+    private final LongAdder createFailures = new LongAdder();
+
+    private final LongAdder destroys = new LongAdder();
+
+    private final LongAdder validationFailures = new LongAdder();
+
+    private final LongAdder failovers = new LongAdder();
+
+    private final ConcurrentMap<ServiceInfo, BackendMetrics> backends = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, MethodMetrics> methods = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, LongAdder> errorTypes = new ConcurrentHashMap<>();
+
+    private volatile ObjectName objectName;
+
+    private static class BackendMetrics {
+
+        /** opened and not closed */
+        private final LongAdder connections = new LongAdder();
+
+        private final LongAdder active = new LongAdder();
+
+        private final LongAdder calls = new LongAdder();
+
+        private final LongAdder errors = new LongAdder();
+    }
+
+    private static class MethodMetrics {
+
+        private final LongAdder calls = new LongAdder();
+
+        private final LongAdder errors = new LongAdder();
+
+        private final LatencyHistogram latency = new LatencyHistogram();
+    }
+
+    private BackendMetrics backend(ServiceInfo serviceInfo) {
+        BackendMetrics metrics = backends.get(serviceInfo);
+        return metrics != null ? metrics : backends.computeIfAbsent(serviceInfo,
+                si -> new BackendMetrics());
+    }
+
+    private MethodMetrics method(String method) {
+        MethodMetrics metrics = methods.get(method);
+        return metrics != null ? metrics : methods.computeIfAbsent(method,
+                m -> new MethodMetrics());
+    }
+
+    private void countError(Throwable e) {
+        String type = e.getClass().getName();
+        LongAdder counter = errorTypes.get(type);
+        if (counter == null) {
+            counter = errorTypes.computeIfAbsent(type, t -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    @Override
+    public void onCreate(ServiceInfo serviceInfo) {
+        creates.increment();
+        backend(serviceInfo).connections.increment();
+    }
+
+    @Override
+    public void onCreateFailure(ServiceInfo serviceInfo, Throwable e) {
+        createFailures.increment();
+        countError(e);
+    }
+
+    @Override
+    public void onDestroy(ServiceInfo serviceInfo) {
+        destroys.increment();
+        backend(serviceInfo).connections.decrement();
+    }
+
+    @Override
+    public void onValidationFailure(ServiceInfo serviceInfo) {
+        validationFailures.increment();
+    }
+
+    @Override
+    public void onBorrow(ServiceInfo serviceInfo, long waitNanos) {
+        borrows.increment();
+        borrowWait.record(waitNanos);
+        backend(serviceInfo).active.increment();
+    }
+
+    @Override
+    public void onRelease(ServiceInfo serviceInfo) {
+        backend(serviceInfo).active.decrement();
+    }
+
+    @Override
+    public void onFailover(ServiceInfo serviceInfo, Throwable e) {
+        failovers.increment();
+    }
+
+    @Override
+    public void onCall(ServiceInfo serviceInfo, String method, long latencyNanos,
+            Throwable error) {
+        BackendMetrics backendMetrics = backend(serviceInfo);
+        MethodMetrics methodMetrics = method(method);
+        backendMetrics.calls.increment();
+        methodMetrics.calls.increment();
+        if (error != null) {
+            backendMetrics.errors.increment();
+            methodMetrics.errors.increment();
+            countError(error);
+        } else {
+            methodMetrics.latency.record(latencyNanos);
+        }
+    }
+
+    /**
+     * get percentile of borrow wait
+     * 
+     * @param percentile 0-100
+     * @return millis, -1 if not enough samples
+     */
+    public double getBorrowWaitMillis(double percentile) {
+        return toMillis(borrowWait.percentileNanos(percentile));
+    }
+
+    /**
+     * get percentile of latency of succeeded calls of a method
+     * 
+     * @param method
+     * @param percentile 0-100
+     * @return millis, -1 if not enough samples
+     */
+    public double getCallMillis(String method, double percentile) {
+        MethodMetrics metrics = methods.get(method);
+        return metrics != null ? toMillis(metrics.latency.percentileNanos(percentile)) : -1;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos < 0 ? -1 : nanos / 1e6;
+    }
+
+    @Override
+    public long getBorrows() {
+        return borrows.sum();
+    }
+
+    @Override
+    public double getBorrowWaitP50Millis() {
+        return getBorrowWaitMillis(50);
+    }
+
+    @Override
+    public double getBorrowWaitP99Millis() {
+        return getBorrowWaitMillis(99);
+    }
+
+    @Override
+    public long getCreates() {
+        return creates.sum();
+    }
+
+    @Override
+    public long getCreateFailures() {
+        return createFailures.sum();
+    }
+
+    @Override
+    public long getDestroys() {
+        return destroys.sum();
+    }
+
+    @Override
+    public long getValidationFailures() {
+        return validationFailures.sum();
+    }
+
+    @Override
+    public long getFailovers() {
+        return failovers.sum();
+    }
+
+    @Override
+    public long getActive() {
+        return getActivePerBackend().values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    @Override
+    public long getIdle() {
+        return getIdlePerBackend().values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    @Override
+    public Map<String, Long> getActivePerBackend() {
+        return perBackend(m -> m.active.sum());
+    }
+
+    @Override
+    public Map<String, Long> getIdlePerBackend() {
+        return perBackend(m -> Math.max(0, m.connections.sum() - m.active.sum()));
+    }
+
+    @Override
+    public Map<String, Long> getCallsPerBackend() {
+        return perBackend(m -> m.calls.sum());
+    }
+
+    @Override
+    public Map<String, Long> getErrorsPerBackend() {
+        return perBackend(m -> m.errors.sum());
+    }
+
+    @Override
+    public Map<String, Long> getCallsPerMethod() {
+        return perMethod(m -> m.calls.sum());
+    }
+
+    @Override
+    public Map<String, Long> getErrorsPerMethod() {
+        return perMethod(m -> m.errors.sum());
+    }
+
+    @Override
+    public Map<String, Double> getCallP50MillisPerMethod() {
+        return perMethod(m -> toMillis(m.latency.percentileNanos(50)));
+    }
+
+    @Override
+    public Map<String, Double> getCallP99MillisPerMethod() {
+        return perMethod(m -> toMillis(m.latency.percentileNanos(99)));
+    }
+
+    @Override
+    public Map<String, Long> getErrorsPerType() {
+        Map<String, Long> result = new TreeMap<>();
+        errorTypes.forEach((type, counter) -> result.put(type, counter.sum()));
+        return result;
+    }
+
+    private Map<String, Long> perBackend(ToLongFunction<BackendMetrics> value) {
+        Map<String, Long> result = new TreeMap<>();
+        backends.forEach((si, metrics) -> result.put(si.getHost() + ":" + si.getPort(), value
+                .applyAsLong(metrics)));
+        return result;
+    }
+
+    private <V> Map<String, V> perMethod(Function<MethodMetrics, V> value) {
+        Map<String, V> result = new TreeMap<>();
+        methods.forEach((method, metrics) -> result.put(method, value.apply(metrics)));
+        return result;
+    }
+
+    /**
+     * register to platform MBeanServer as
+     * com.wealoha.thrift:type=PoolMetrics,name={name}
+     * 
+     * @param name
+     * @throws ThriftException if fail
+     */
+    public synchronized void registerMBean(String name) {
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("name is empty!");
+        }
+        unregisterMBean();
+        try {
+            ObjectName objectName = new ObjectName("com.wealoha.thrift:type=PoolMetrics,name="
+                    + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            this.objectName = objectName;
+        } catch (JMException e) {
+            throw new ThriftException("register mbean fail: " + name, e);
+        }
+    }
+
+    /**
+     * unregister from platform MBeanServer if registered
+     */
+    public synchronized void unregisterMBean() {
+        ObjectName objectName = this.objectName;
+        if (objectName == null) {
+            return;
+        }
+        this.objectName = null;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.unregisterMBean(objectName);
+        } catch (JMException e) {
+            logger.warn("unregister mbean fail: {}", objectName, e);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.wealoha.thrift;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link PoolMetrics}, latencies in millis are -1 until there
+ * are enough recent samples. Backends are keyed by host:port.
+ * 
+ * @author javamonk
+ * @createTime 2026年10月19日 上午3:10:44
+ */
+public interface PoolMetricsMXBean {
+
+    long getBorrows();
+
+    double getBorrowWaitP50Millis();
+
+    double getBorrowWaitP99Millis();
+
+    long getCreates();
+
+    long getCreateFailures();
+
+    long getDestroys();
+
+    long getValidationFailures();
+
+    long getFailovers();
+
+    long getActive();
+
+    long getIdle();
+
+    Map<String, Long> getActivePerBackend();
+
+    Map<String, Long> getIdlePerBackend();
+
+    Map<String, Long> getCallsPerBackend();
+
+    Map<String, Long> getErrorsPerBackend();
+
+    Map<String, Long> getCallsPerMethod();
+
+    Map<String, Long> getErrorsPerMethod();
+
+    Map<String, Double> getCallP50MillisPerMethod();
+
+    Map<String, Double> getCallP99MillisPerMethod();
+
+    Map<String, Long> getErrorsPerType();
+}
@@ -0,0 +1,192 @@
+package com.wealoha.thrift;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.thrift.TServiceClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Long-lived Iface proxy behind {@link ThriftClientPool#iface()}, every
+ * method invocation borrows a client from the pool, calls it and returns
+ * it(or invalidates it if the call failed). Thread-safe.<br/>
+ * 
+ * Dispatches through {@link IfaceDispatcher} without reflection. Calls of
+ * idempotent methods may be hedged by {@link HedgePolicy} and retried by
+ * {@link RetryPolicy}.
+ * 
+ * @author javamonk
+ * @createTime 2026年10月18日 下午3:16:48
+ */
+class PooledIfaceHandler<T extends TServiceClient> implements InvocationHandler {
+
+    private static Logger logger = LoggerFactory.getLogger(PooledIfaceHandler.class);
+
+    private final ThriftClientPool<T> pool;
+
+    private final IfaceDispatcher dispatcher;
+
+    private final HedgePolicy hedgePolicy;
+
+    private final RequestBudget hedgeBudget;
+
+    /** latency of hedged methods, empty for methods not hedged */
+    private final ConcurrentMap<Method, Optional<LatencyHistogram>> hedgedMethods;
+
+    private final RetryPolicy retryPolicy;
+
+    private final RequestBudget retryBudget;
+
+    private PooledIfaceHandler(ThriftClientPool<T> pool, IfaceDispatcher dispatcher) {
+        this.pool = pool;
+        this.dispatcher = dispatcher;
+        this.hedgePolicy = pool.getPoolConfig().getHedgePolicy();
+        if (hedgePolicy != null) {
+            this.hedgeBudget = new RequestBudget(hedgePolicy.getBudgetPercent(), 10);
+            this.hedgedMethods = new ConcurrentHashMap<>();
+        } else {
+            this.hedgeBudget = null;
+            this.hedgedMethods = null;
+        }
+        this.retryPolicy = pool.getPoolConfig().getRetryPolicy();
+        this.retryBudget = retryPolicy != null ? new RequestBudget(
+                retryPolicy.getBudgetPercent(), 10) : null;
+    }
+
+    /**
+     * create a proxy implements all interfaces of clientClass
+     * 
+     * @param pool
+     * @param clientClass
+     * @return
+     */
+    static <T extends TServiceClient> Object newProxy(ThriftClientPool<T> pool,
+            Class<?> clientClass) {
+        IfaceDispatcher dispatcher = IfaceDispatcher.of(clientClass);
+        return dispatcher.newProxy(new PooledIfaceHandler<>(pool, dispatcher));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        MethodHandle handle = dispatcher.handle(method);
+        if (handle == null) {
+            return IfaceDispatcher.invokeObjectMethod(proxy, method, args, "iface proxy of "
+                    + pool);
+        }
+
+        LatencyHistogram latency = null;
+        if (hedgePolicy != null) {
+            latency = hedgedMethods.computeIfAbsent(method,
+                    m -> hedgePolicy.isHedged(m) ? Optional.of(new LatencyHistogram())
+                            : Optional.empty()).orElse(null);
+        }
+        if (retryPolicy != null) {
+            retryBudget.onRequest();
+        }
+
+        // retry on another backend if there are
+        ServiceInfo exclude = null;
+        for (int attempt = 1;; attempt++) {
+            Throwable failure;
+            if (latency != null) {
+                try {
+                    return invokeHedged(method, handle, args, latency);
+                } catch (Throwable e) {
+                    failure = e;
+                }
+            } else {
+                ThriftClient<T> client = pool.getClient(exclude);
+                if (pool.getServices().size() > 1) {
+                    exclude = client.getServiceInfo();
+                }
+                try {
+                    return invoke(method, client, handle, args);
+                } catch (Throwable e) {
+                    failure = e;
+                }
+            }
+            if (!retry(method, attempt, failure)) {
+                throw failure;
+            }
+        }
+    }
+
+    private Object invoke(Method method, ThriftClient<T> client, MethodHandle handle,
+            Object[] args) throws Throwable {
+        MetricsRecorder metricsRecorder = pool.getPoolConfig().getMetricsRecorder();
+        Throwable error = null;
+        long start = System.nanoTime();
+        try {
+            Object result = (Object) handle.invokeExact((Object) client.iFace(), args);
+            metricsRecorder.onCall(client.getServiceInfo(), method.getName(), System.nanoTime()
+                    - start, null);
+            return result;
+        } catch (Throwable e) {
+            error = e;
+            logger.warn("invoke fail", e);
+            metricsRecorder.onCall(client.getServiceInfo(), method.getName(), System.nanoTime()
+                    - start, e);
+            throw e;
+        } finally {
+            client.setResult(error);
+            client.close();
+        }
+    }
+
+    /**
+     * wait backoff if the failed call should be retried
+     * 
+     * @param method
+     * @param attempt
+     * @param failure
+     * @return
+     */
+    private boolean retry(Method method, int attempt, Throwable failure) {
+        if (retryPolicy == null || attempt >= retryPolicy.getMaxAttempts()
+                || !retryPolicy.isRetryable(method, failure) || !retryBudget.tryAcquire()) {
+            return false;
+        }
+        long backoffMillis = retryPolicy.backoffMillis(attempt);
+        Deadline deadline = Deadline.current();
+        if (deadline != null && deadline.remainingMillis() <= backoffMillis) {
+            return false;
+        }
+        logger.debug("retry {} after {}ms", method.getName(), backoffMillis);
+        try {
+            Thread.sleep(backoffMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return true;
+    }
+
+    private Object invokeHedged(Method method, MethodHandle handle, Object[] args,
+            LatencyHistogram latency) throws Throwable {
+        hedgeBudget.onRequest();
+        long delayNanos = -1;
+        if (hedgePolicy.getPercentile() > 0) {
+            delayNanos = latency.percentileNanos(hedgePolicy.getPercentile());
+        }
+        if (delayNanos < 0) {
+            delayNanos = TimeUnit.MILLISECONDS.toNanos(hedgePolicy.getDelayMillis());
+        }
+
+        long start = System.nanoTime();
+        try {
+            Object result = new HedgedInvocation<>(pool, method, handle, args, hedgeBudget)
+                    .invoke(delayNanos);
+            latency.record(System.nanoTime() - start);
+            return result;
+        } catch (Throwable e) {
+            logger.warn("invoke fail", e);
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.wealoha.thrift;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket limiting extra requests(hedges, retries) to a percentage of
+ * requests: each request deposits percent/100 token, each extra request
+ * takes one, at most maxTokens are kept for bursts.
+ * 
+ * @author javamonk
+ * @createTime 2026年10月19日 上午1:08:20
+ */
+class RequestBudget {
+
+    /** tokens are kept in thousandths */
+    private static final long SCALE = 1000;
+
+    private final long deposit;
+
+    private final long max;
+
+    private final AtomicLong tokens;
+
+    /**
+     * @param percent
+     * @param maxTokens
+     */
+    RequestBudget(double percent, int maxTokens) {
+        this.deposit = (long) (percent * SCALE / 100);
+        this.max = maxTokens * SCALE;
+        this.tokens = new AtomicLong(max);
+    }
+
+    void onRequest() {
+        long current;
+        do {
+            current = tokens.get();
+            if (current >= max) {
+                return;
+            }
+        } while (!tokens.compareAndSet(current, Math.min(max, current + deposit)));
+    }
+
+    /**
+     * @return false if no token left
+     */
+    boolean tryAcquire() {
+        long current;
+        do {
+            current = tokens.get();
+            if (current < SCALE) {
+                return false;
+            }
+        } while (!tokens.compareAndSet(current, current - SCALE));
+        return true;
+    }
+}
@@ -0,0 +1,159 @@
+package com.wealoha.thrift;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.thrift.transport.TTransportException;
+
+/**
+ * Retries of failed {@link ThriftClientPool#iface()} calls: a call of an
+ * idempotent method(annotated {@link Idempotent} or in method names) failed
+ * by transport error(connection reset, read timeout...) is retried on a new
+ * connection to another backend after an exponential backoff with full
+ * jitter. Application errors(TApplicationException, exceptions declared in
+ * IDL) are never retried. Retries are limited to budgetPercent of calls so
+ * they can't multiply load of an overloaded service.<br/>
+ * 
+ * Override {@link #isRetryable(Method, Throwable)} for other rules.
+ * 
+ * @author javamonk
+ * @createTime 2026年10月19日 上午1:41:05
+ */
+public class RetryPolicy {
+
+    private Set<String> methodNames = Collections.emptySet();
+
+    private int maxAttempts = 3;
+
+    private long backoffMillis = 10;
+
+    private long maxBackoffMillis = 1000;
+
+    private double budgetPercent = 10;
+
+    /**
+     * get if the failed call can be retried
+     * 
+     * @param method
+     * @param e thrown by the call
+     * @return
+     */
+    public boolean isRetryable(Method method, Throwable e) {
+        if (!(e instanceof TTransportException)) {
+            return false;
+        }
+        return method.isAnnotationPresent(Idempotent.class)
+                || methodNames.contains(method.getName());
+    }
+
+    /**
+     * get backoff before the retry, random between 0 and
+     * backoffMillis*2^(retry-1), at most maxBackoffMillis
+     * 
+     * @param retry 1 for first retry
+     * @return
+     */
+    public long backoffMillis(int retry) {
+        long ceiling = backoffMillis << Math.min(retry - 1, 30);
+        if (ceiling <= 0 || ceiling > maxBackoffMillis) {
+            ceiling = maxBackoffMillis;
+        }
+        return ceiling <= 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    /**
+     * get names of idempotent methods, besides methods annotated
+     * {@link Idempotent}
+     * 
+     * @return
+     */
+    public Set<String> getMethodNames() {
+        return methodNames;
+    }
+
+    /**
+     * set names of idempotent methods, besides methods annotated
+     * {@link Idempotent}
+     * 
+     * @param methodNames
+     */
+    public void setMethodNames(Collection<String> methodNames) {
+        this.methodNames = Collections.unmodifiableSet(new HashSet<>(methodNames));
+    }
+
+    /**
+     * get max attempts of a call including the first one(default 3)
+     * 
+     * @return
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * set max attempts of a call including the first one
+     * 
+     * @param maxAttempts
+     */
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * get base backoff, doubled on each retry(default 10)
+     * 
+     * @return
+     */
+    public long getBackoffMillis() {
+        return backoffMillis;
+    }
+
+    /**
+     * set base backoff, doubled on each retry
+     * 
+     * @param backoffMillis
+     */
+    public void setBackoffMillis(long backoffMillis) {
+        this.backoffMillis = backoffMillis;
+    }
+
+    /**
+     * get max backoff(default 1000)
+     * 
+     * @return
+     */
+    public long getMaxBackoffMillis() {
+        return maxBackoffMillis;
+    }
+
+    /**
+     * set max backoff
+     * 
+     * @param maxBackoffMillis
+     */
+    public void setMaxBackoffMillis(long maxBackoffMillis) {
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    /**
+     * get max retries in percent of calls(default 10)
+     * 
+     * @return
+     */
+    public double getBudgetPercent() {
+        return budgetPercent;
+    }
+
+    /**
+     * set max retries in percent of calls
+     * 
+     * @param budgetPercent
+     */
+    public void setBudgetPercent(double budgetPercent) {
+        this.budgetPercent = budgetPercent;
+    }
+}
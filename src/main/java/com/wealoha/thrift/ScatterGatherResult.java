@@ -0,0 +1,59 @@
+package com.wealoha.thrift;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of {@link ShardedThriftClientPool#scatterGather}: results of
+ * succeeded shards, and keys of failed or timed out shards with their
+ * errors
+ * 
+ * @author javamonk
+ * @createTime 2026年10月18日 下午11:58:17
+ */
+public class ScatterGatherResult<K, R> {
+
+    private final List<R> results;
+
+    private final Map<K, Throwable> failures;
+
+    ScatterGatherResult(List<R> results, Map<K, Throwable> failures) {
+        this.results = Collections.unmodifiableList(results);
+        this.failures = Collections.unmodifiableMap(failures);
+    }
+
+    /**
+     * get results of succeeded shards, one per shard
+     * 
+     * @return
+     */
+    public List<R> getResults() {
+        return results;
+    }
+
+    /**
+     * get failed keys, each maps to the error of its shard(TimeoutException
+     * if timed out)
+     * 
+     * @return
+     */
+    public Map<K, Throwable> getFailures() {
+        return failures;
+    }
+
+    /**
+     * get if all shards succeeded
+     * 
+     * @return
+     */
+    public boolean isComplete() {
+        return failures.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "ScatterGatherResult [results=" + results.size() + ", failures=" + failures.size()
+                + "]";
+    }
+}
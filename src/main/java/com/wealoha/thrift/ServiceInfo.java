@@ -1,6 +1,14 @@
 package com.wealoha.thrift;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
 /**
+ * Address of a backend with its weight and metadata, equality is by host
+ * and port only so a backend keeps its connections when weight or metadata
+ * changes
  * 
  * @author javamonk
  * @createTime 2014年11月22日 下午2:30:39
@@ -11,10 +19,43 @@ public class ServiceInfo {
 
     private final int port;
 
+    private final int weight;
+
+    private final String zone;
+
+    private final Map<String, String> tags;
+
     public ServiceInfo(String host, int port) {
+        this(host, port, 1);
+    }
+
+    /**
+     * @param host
+     * @param port
+     * @param weight relative capacity, positive
+     */
+    public ServiceInfo(String host, int port, int weight) {
+        this(host, port, weight, null, Collections.emptyMap());
+    }
+
+    /**
+     * @param host
+     * @param port
+     * @param weight relative capacity, positive
+     * @param zone availability zone, null if unknown
+     * @param tags
+     */
+    public ServiceInfo(String host, int port, int weight, String zone, Map<String, String> tags) {
         super();
+        if (weight <= 0) {
+            throw new IllegalArgumentException("weight must be positive!");
+        }
         this.host = host;
         this.port = port;
+        this.weight = weight;
+        this.zone = zone;
+        this.tags = tags == null || tags.isEmpty() ? Collections.emptyMap() : Collections
+                .unmodifiableMap(new HashMap<>(tags));
     }
 
     public String getHost() {
@@ -25,6 +66,44 @@ public class ServiceInfo {
         return port;
     }
 
+    /**
+     * get relative capacity(default 1), used by weighted load balancers
+     * 
+     * @return
+     */
+    public int getWeight() {
+        return weight;
+    }
+
+    /**
+     * get availability zone, null if unknown
+     * 
+     * @return
+     */
+    public String getZone() {
+        return zone;
+    }
+
+    /**
+     * get metadata of the backend, e.g. version
+     * 
+     * @return immutable
+     */
+    public Map<String, String> getTags() {
+        return tags;
+    }
+
+    /**
+     * get if weight, zone and tags are all the same as other's
+     * 
+     * @param other
+     * @return
+     */
+    public boolean metadataEquals(ServiceInfo other) {
+        return weight == other.weight && Objects.equals(zone, other.zone)
+                && tags.equals(other.tags);
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -49,6 +128,7 @@ public class ServiceInfo {
 
     @Override
     public String toString() {
-        return "ServiceInfo [host=" + host + ", port=" + port + "]";
+        return "ServiceInfo [host=" + host + ", port=" + port + ", weight=" + weight + ", zone="
+                + zone + ", tags=" + tags + "]";
     }
 }
@@ -0,0 +1,18 @@
+package com.wealoha.thrift;
+
+/**
+ * Map a key's hash to a partition of {@link ShardedThriftClientPool}.
+ * Built once for each partition list by a {@link ShardStrategy}(or any
+ * function), it's immutable and thread-safe.
+ * 
+ * @author javamonk
+ * @createTime 2026年10月18日 下午11:02:35
+ */
+public interface ShardRouter {
+
+    /**
+     * @param hash any int, including negative
+     * @return index of partition
+     */
+    int shard(int hash);
+}
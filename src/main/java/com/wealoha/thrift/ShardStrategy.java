@@ -0,0 +1,86 @@
+package com.wealoha.thrift;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Built-in {@link ShardRouter}s of {@link ShardedThriftClientPool}
+ * 
+ * @author javamonk
+ * @createTime 2026年10月18日 下午11:05:10
+ */
+public enum ShardStrategy implements Function<List<List<ServiceInfo>>, ShardRouter> {
+
+    /**
+     * hash mod number of partitions(default), adding or removing a partition
+     * remaps nearly every key
+     */
+    MODULO {
+
+        @Override
+        public ShardRouter apply(List<List<ServiceInfo>> partitions) {
+            int size = partitions.size();
+            return hash -> Math.floorMod(hash, size);
+        }
+    },
+
+    /**
+     * ketama ring with virtual nodes, adding or removing any partition only
+     * remaps keys of that partition, O(log n) lookup
+     */
+    KETAMA {
+
+        @Override
+        public ShardRouter apply(List<List<ServiceInfo>> partitions) {
+            return new KetamaShardRouter(partitions);
+        }
+    },
+
+    /**
+     * jump consistent hash, no memory and even distribution, but only adding
+     * or removing the last partition remaps minimally
+     */
+    JUMP {
+
+        @Override
+        public ShardRouter apply(List<List<ServiceInfo>> partitions) {
+            int size = partitions.size();
+            return hash -> jumpConsistentHash(mix(hash), size);
+        }
+    };
+
+    /**
+     * spread bits of user's hash(often a small int like id)
+     * 
+     * @param hash
+     * @return
+     */
+    static long mix(int hash) {
+        // murmur3 fmix64
+        long k = hash;
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    /**
+     * Lamping and Veach, "A Fast, Minimal Memory, Consistent Hash Algorithm"
+     * 
+     * @param key
+     * @param buckets
+     * @return
+     */
+    static int jumpConsistentHash(long key, int buckets) {
+        long b = -1;
+        long j = 0;
+        while (j < buckets) {
+            b = j;
+            key = key * 2862933555777941757L + 1;
+            j = (long) ((b + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+        return (int) b;
+    }
+}
@@ -1,9 +1,25 @@
 package com.wealoha.thrift;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -11,6 +27,9 @@ import org.apache.thrift.TServiceClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.wealoha.thrift.balance.Backend;
+import com.wealoha.thrift.balance.LeastOutstandingLoadBalancer;
+import com.wealoha.thrift.balance.LoadBalancer;
 import com.wealoha.thrift.exception.NoBackendServiceException;
 
 /**
@@ -23,26 +42,81 @@ import com.wealoha.thrift.exception.NoBackendServiceException;
  * list(10.0.1.3:9000)<br/>
  * 
  * if a key's hash is 10, then 10 % 3 = 1, selected node will be
- * 10.0.1.2:9000
+ * 10.0.1.2:9000<br/>
+ * 
+ * Partition is chosen by a {@link ShardRouter}, {@link ShardStrategy#MODULO}
+ * by default, use {@link ShardStrategy#KETAMA} to keep most keys on their
+ * partitions when partitions change<br/>
+ * 
+ * The first server of a partition is its primary, others are replicas, see
+ * {@link #getPrimaryPool(Object)} and {@link #read(Object, PoolCall)}
  * 
  * @author javamonk
  * @createTime 2015年6月5日 上午11:58:08
  */
 public class ShardedThriftClientPool<K, T extends TServiceClient> {
 
-    private Logger logger = LoggerFactory.getLogger(getClass());
+    /**
+     * call a shard with all keys belonging to it, e.g.
+     * <code>(pool, keys) -> pool.&lt;Iface&gt; iface().multiGet(keys)</code>
+     */
+    @FunctionalInterface
+    public interface ShardCall<K, T extends TServiceClient, R> {
+
+        R call(ThriftClientPool<T> pool, List<K> keys) throws Exception;
+    }
 
-    private List<ServiceInfo> serviceList;
+    /**
+     * call a server by its pool, e.g.
+     * <code>pool -> pool.&lt;Iface&gt; iface().get(key)</code>
+     */
+    @FunctionalInterface
+    public interface PoolCall<T extends TServiceClient, R> {
+
+        R call(ThriftClientPool<T> pool) throws Exception;
+    }
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
 
     private final Function<K, Integer> hashFunction;
 
     private final Function<List<ServiceInfo>, List<List<ServiceInfo>>> partitionFunction;
 
+    private final Function<List<List<ServiceInfo>>, ShardRouter> routerFunction;
+
     private final Function<List<ServiceInfo>, ThriftClientPool<T>> clientPoolFunction;
 
-    private Map<Integer, ThriftClientPool<T>> poolMap;
+    private volatile Topology<T> topology;
+
+    /** serializes writers, readers only read topology */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private volatile long drainMillis = 5000;
+
+    private volatile Executor executor = defaultExecutor;
+
+    private volatile LoadBalancer readBalancer = new LeastOutstandingLoadBalancer();
+
+    private volatile boolean readFromPrimary = true;
 
-    private List<List<ServiceInfo>> servicePartitions;
+    private volatile long hedgeDelayMillis = -1;
+
+    private volatile double hedgePercentile = 0;
+
+    private final LatencyHistogram readLatency = new LatencyHistogram();
+
+    private static final Executor defaultExecutor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "sharded-thrift-pool-scatter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final ScheduledExecutorService drainExecutor = Executors
+            .newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "sharded-thrift-pool-drain");
+                thread.setDaemon(true);
+                return thread;
+            });
 
     /**
      * @param serviceList
@@ -56,12 +130,35 @@ public class ShardedThriftClientPool<K, T extends TServiceClient> {
             Function<K, Integer> hashFunction,
             Function<List<ServiceInfo>, List<List<ServiceInfo>>> partitionFunction,
             Function<List<ServiceInfo>, ThriftClientPool<T>> clientPoolFunction) {
+        this(serviceList, hashFunction, partitionFunction, ShardStrategy.MODULO,
+                clientPoolFunction);
+    }
+
+    /**
+     * @param serviceList
+     * @param hashFunction get a key's hash
+     * @param partitionFunction split list of {@link ServiceInfo} to
+     *        partition, {@link #singlePartitions(List)} for one server one
+     *        partition
+     * @param routerFunction build a router for partitions, e.g.
+     *        {@link ShardStrategy#KETAMA}
+     * @param clientPoolFunction
+     */
+    public ShardedThriftClientPool(List<ServiceInfo> serviceList,
+            Function<K, Integer> hashFunction,
+            Function<List<ServiceInfo>, List<List<ServiceInfo>>> partitionFunction,
+            Function<List<List<ServiceInfo>>, ShardRouter> routerFunction,
+            Function<List<ServiceInfo>, ThriftClientPool<T>> clientPoolFunction) {
+        if (routerFunction == null) {
+            throw new IllegalArgumentException("routerFunction is empty!");
+        }
 
         this.hashFunction = hashFunction;
         this.partitionFunction = partitionFunction;
+        this.routerFunction = routerFunction;
         this.clientPoolFunction = clientPoolFunction;
 
-        init(serviceList);
+        this.topology = buildTopology(serviceList, null);
     }
 
     /**
@@ -75,67 +172,543 @@ public class ShardedThriftClientPool<K, T extends TServiceClient> {
     public ShardedThriftClientPool(List<ServiceInfo> serviceList,
             Function<K, Integer> hashFunction,
             Function<List<ServiceInfo>, ThriftClientPool<T>> clientPoolFunction) {
-        this(serviceList, hashFunction, servers -> servers.stream()
-                .map(server -> Collections.singletonList(server)).collect(Collectors.toList()),
+        this(serviceList, hashFunction, ShardedThriftClientPool::singlePartitions,
                 clientPoolFunction);
     }
 
-    private void init(List<ServiceInfo> services) {
+    /**
+     * one server one partition
+     * 
+     * @param servers
+     * @return
+     */
+    public static List<List<ServiceInfo>> singlePartitions(List<ServiceInfo> servers) {
+        return servers.stream() //
+                .map(server -> Collections.singletonList(server)) //
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * build a topology, pools of unchanged partitions are taken from
+     * previous one
+     *
+     * @param services
+     * @param previous null at construction
+     * @return
+     */
+    private Topology<T> buildTopology(List<ServiceInfo> services, Topology<T> previous) {
         if (services == null || services.size() == 0) {
             throw new IllegalArgumentException("serviceList is empty");
         }
-        poolMap = new HashMap<>();
-        this.serviceList = services;
-        servicePartitions = partitionFunction.apply(serviceList);
-        if (servicePartitions == null || servicePartitions.size() == 0) {
+        List<List<ServiceInfo>> partitions = partitionFunction.apply(services);
+        if (partitions == null || partitions.size() == 0) {
             throw new IllegalStateException("partitionFunction should not return empty");
         }
+
+        Map<List<ServiceInfo>, ThriftClientPool<T>> reusable = new HashMap<>();
+        Map<ServiceInfo, Backend> stats = new HashMap<>();
+        if (previous != null) {
+            for (int i = 0; i < previous.pools.length; i++) {
+                if (previous.replicas[i] == null) {
+                    if (previous.pools[i] != null) {
+                        reusable.put(previous.partitions.get(i), previous.pools[i]);
+                    }
+                } else {
+                    for (Replica<T> replica : previous.replicas[i]) {
+                        reusable.put(Collections.singletonList(replica.stats.getServiceInfo()),
+                                replica.pool);
+                        stats.put(replica.stats.getServiceInfo(), replica.stats);
+                    }
+                }
+            }
+        }
+
+        Map<List<ServiceInfo>, ThriftClientPool<T>> built = new HashMap<>();
+        Function<List<ServiceInfo>, ThriftClientPool<T>> poolFunction = servers -> built
+                .computeIfAbsent(servers, key -> {
+                    ThriftClientPool<T> pool = reusable.remove(key);
+                    if (pool == null) {
+                        logger.debug("init client pool: servers={}", key);
+                        pool = clientPoolFunction.apply(key);
+                    }
+                    return pool;
+                });
+
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        ThriftClientPool<T>[] pools = new ThriftClientPool[partitions.size()];
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        Replica<T>[][] replicas = new Replica[partitions.size()][];
+        for (int shard = 0; shard < partitions.size(); shard++) {
+            List<ServiceInfo> servers = partitions.get(shard);
+            if (servers == null || servers.size() == 0) {
+                continue;
+            }
+            if (servers.size() == 1) {
+                pools[shard] = poolFunction.apply(servers);
+            } else {
+                // first one is primary, keys of the partition go to it so
+                // there is no second pool to the same servers
+                @SuppressWarnings({ "unchecked", "rawtypes" })
+                Replica<T>[] shardReplicas = new Replica[servers.size()];
+                for (int i = 0; i < servers.size(); i++) {
+                    ServiceInfo serviceInfo = servers.get(i);
+                    shardReplicas[i] = new Replica<>(poolFunction.apply(Collections
+                            .singletonList(serviceInfo)), stats.computeIfAbsent(serviceInfo,
+                            si -> new Backend(si, 0, 0)));
+                }
+                replicas[shard] = shardReplicas;
+                pools[shard] = shardReplicas[0].pool;
+            }
+        }
+        return new Topology<>(services, partitions, routerFunction.apply(partitions), pools,
+                replicas);
     }
 
     public ThriftClientPool<T> getShardedPool(K key) throws NoBackendServiceException {
         int hash = hashFunction.apply(key);
-        int shard = hash % servicePartitions.size();
-        logger.debug("getPool by key: hash={}, shard={}/{}", hash, shard, servicePartitions.size());
+        Topology<T> current = topology;
+        int shard = current.router.shard(hash);
+        logger.debug("getPool by key: hash={}, shard={}/{}", hash, shard, current.pools.length);
 
-        List<ServiceInfo> servers = servicePartitions.get(shard);
-        if (servers == null || servers.size() == 0) {
+        ThriftClientPool<T> pool = current.pools[shard];
+        if (pool == null) {
             throw new NoBackendServiceException("no servers mapping for key: " + key);
         }
+        return pool;
+    }
 
-        ThriftClientPool<T> pool = poolMap.get(shard);
-        if (pool == null) {
-            synchronized (poolMap) {
-                pool = poolMap.get(shard);
-                if (pool == null) {
-                    logger.debug("init client pool: shard={}, servers={}", shard, servers);
-                    pool = clientPoolFunction.apply(servers);
-                    poolMap.put(shard, pool);
+    /**
+     * set new services for this pool, pools of unchanged partitions are
+     * kept, others are closed after {@link #setDrainMillis(long)} so calls
+     * in flight can finish
+     *
+     * @param services
+     */
+    public void setServices(List<ServiceInfo> services) {
+        List<ThriftClientPool<T>> retired = new ArrayList<>();
+        lock.lock();
+        try {
+            logger.info("reinit pool using new serviceList: {}", services);
+            Topology<T> previous = topology;
+            Topology<T> next = buildTopology(services, previous);
+            topology = next;
+
+            Set<ThriftClientPool<T>> kept = next.allPools();
+            for (ThriftClientPool<T> pool : previous.allPools()) {
+                if (!kept.contains(pool)) {
+                    retired.add(pool);
                 }
             }
+        } finally {
+            lock.unlock();
+        }
+
+        if (!retired.isEmpty()) {
+            logger.info("close {} retired pools in {}ms", retired.size(), drainMillis);
+            drainExecutor.schedule(() -> retired.forEach(ThriftClientPool::close),
+                    drainMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * group keys by shard and call shards in parallel, waiting at most
+     * timeoutMillis for all of them. A failed or timed out shard doesn't
+     * fail others, its keys are reported in
+     * {@link ScatterGatherResult#getFailures()}. Shard calls run with a
+     * {@link Deadline} of timeoutMillis(or caller's if earlier), so calls
+     * still running at timeout are aborted by it and ones not started yet
+     * are skipped.
+     *
+     * @param keys
+     * @param call
+     * @param timeoutMillis
+     * @return
+     */
+    public <R> ScatterGatherResult<K, R> scatterGather(Collection<K> keys,
+            ShardCall<K, T, R> call, long timeoutMillis) {
+        Topology<T> current = topology;
+        Map<Integer, List<K>> shardKeys = new LinkedHashMap<>();
+        for (K key : keys) {
+            int shard = current.router.shard(hashFunction.apply(key));
+            shardKeys.computeIfAbsent(shard, s -> new ArrayList<>()).add(key);
+        }
+
+        List<R> results = new ArrayList<>(shardKeys.size());
+        Map<K, Throwable> failures = new HashMap<>();
+        Deadline deadline = Deadline.after(Duration.ofMillis(Math.max(0, timeoutMillis)));
+        try {
+            Map<List<K>, CompletableFuture<R>> futures = new LinkedHashMap<>();
+            shardKeys.forEach((shard, shardKeyList) -> {
+                CompletableFuture<R> future = new CompletableFuture<>();
+                try {
+                    executor.execute(() -> {
+                        if (future.isDone()) {
+                            // timed out before started
+                            return;
+                        }
+                        Deadline callDeadline = Deadline.attach(deadline);
+                        try {
+                            future.complete(callShard(current, shard, shardKeyList, call));
+                        } catch (Throwable e) {
+                            future.completeExceptionally(e);
+                        } finally {
+                            callDeadline.close();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    future.completeExceptionally(e);
+                }
+                futures.put(shardKeyList, future);
+            });
+
+            futures.forEach((shardKeyList, future) -> {
+                try {
+                    results.add(future.get(deadline.remainingMillis(),
+                            TimeUnit.MILLISECONDS));
+                } catch (ExecutionException e) {
+                    fail(failures, shardKeyList, e.getCause());
+                } catch (TimeoutException e) {
+                    future.cancel(false);
+                    fail(failures, shardKeyList, e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    future.cancel(false);
+                    fail(failures, shardKeyList, e);
+                }
+            });
+        } finally {
+            deadline.close();
+        }
+        return new ScatterGatherResult<>(results, failures);
+    }
+
+    private <R> R callShard(Topology<T> current, int shard, List<K> keys, ShardCall<K, T, R> call)
+            throws Exception {
+        ThriftClientPool<T> pool = current.pools[shard];
+        if (pool == null) {
+            throw new NoBackendServiceException("no servers mapping for shard: " + shard);
+        }
+        return call.call(pool, keys);
+    }
+
+    private void fail(Map<K, Throwable> failures, List<K> keys, Throwable e) {
+        logger.warn("call shard fail: keys={}", keys.size(), e);
+        for (K key : keys) {
+            failures.put(key, e);
+        }
+    }
+
+    /**
+     * get pool of primary(first server) of key's partition, for writes
+     *
+     * @param key
+     * @return
+     * @throws NoBackendServiceException
+     */
+    public ThriftClientPool<T> getPrimaryPool(K key) throws NoBackendServiceException {
+        Topology<T> current = topology;
+        int shard = current.router.shard(hashFunction.apply(key));
+        ThriftClientPool<T> pool = current.pools[shard];
+        if (pool == null) {
+            throw new NoBackendServiceException("no servers mapping for key: " + key);
         }
         return pool;
     }
 
     /**
-     * set new services for this pool(TODO may throw
-     * {@link IndexOutOfBoundsException} at {@link #getShardedPool(Object)}
-     * in heavy load environment)
+     * read from a server of key's partition chosen by
+     * {@link #setReadBalancer(LoadBalancer)}. If hedging is on and the call
+     * takes longer than hedge delay, the same call is sent to another
+     * server and whichever succeeds first is returned.
      *
-     * @param services
-     * @return previous pool, you must release each pool(for example wait
-     *         some seconds while no access to pool)
+     * @param key
+     * @param call
+     * @return
+     * @throws Exception thrown by call, the first one if hedged calls all
+     *         fail
      */
-    public Map<Integer, ThriftClientPool<T>> setServices(List<ServiceInfo> services) {
-        synchronized (poolMap) {
-            logger.info("reinit pool using new serviceList: {}", services);
-            Map<Integer, ThriftClientPool<T>> previousMap = poolMap;
+    public <R> R read(K key, PoolCall<T, R> call) throws Exception {
+        Topology<T> current = topology;
+        int shard = current.router.shard(hashFunction.apply(key));
+        Replica<T>[] replicas = current.replicas[shard];
+        if (replicas == null) {
+            ThriftClientPool<T> pool = current.pools[shard];
+            if (pool == null) {
+                throw new NoBackendServiceException("no servers mapping for key: " + key);
+            }
+            return call.call(pool);
+        }
 
-            init(services);
-            return previousMap;
+        Replica<T> first = selectReplica(replicas, null);
+        long hedgeNanos = getHedgeNanos();
+        if (hedgeNanos < 0) {
+            return callReplica(first, call);
         }
+
+        CompletableFuture<R> result = new CompletableFuture<>();
+        AtomicInteger attempts = new AtomicInteger(1);
+        attempt(first, call, result, attempts);
+        try {
+            return result.get(hedgeNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            Replica<T> second = selectReplica(replicas, first);
+            // 1 means the first one has failed and the result is done
+            if (second != null && attempts.incrementAndGet() > 1) {
+                logger.debug("hedge read to {}", second.stats);
+                attempt(second, call, result, attempts);
+            }
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    private <R> void attempt(Replica<T> replica, PoolCall<T, R> call, CompletableFuture<R> result,
+            AtomicInteger attempts) {
+        try {
+            executor.execute(() -> {
+                try {
+                    result.complete(callReplica(replica, call));
+                } catch (Throwable e) {
+                    if (attempts.decrementAndGet() == 0) {
+                        result.completeExceptionally(e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            if (attempts.decrementAndGet() == 0) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private <R> R callReplica(Replica<T> replica, PoolCall<T, R> call) throws Exception {
+        long start = System.nanoTime();
+        boolean success = false;
+        replica.stats.onStart();
+        try {
+            R result = call.call(replica.pool);
+            success = true;
+            return result;
+        } catch (Exception e) {
+            // exception declared in IDL is a result of the replica
+            success = !ThriftUtil.isServiceFailure(e);
+            throw e;
+        } finally {
+            long latency = System.nanoTime() - start;
+            replica.stats.onFinish(latency, success);
+            if (success) {
+                readLatency.record(latency);
+            }
+        }
+    }
+
+    private Replica<T> selectReplica(Replica<T>[] replicas, Replica<T> exclude) {
+        List<Backend> candidates = new ArrayList<>(replicas.length);
+        for (int i = readFromPrimary ? 0 : 1; i < replicas.length; i++) {
+            if (replicas[i] != exclude) {
+                candidates.add(replicas[i].stats);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return null;
+        }
+        Backend selected = readBalancer.select(candidates);
+        for (Replica<T> replica : replicas) {
+            if (replica.stats == selected) {
+                return replica;
+            }
+        }
+        throw new IllegalStateException("readBalancer returns unknown backend: " + selected);
+    }
+
+    /**
+     * @return negative if hedging is off
+     */
+    private long getHedgeNanos() {
+        if (hedgePercentile > 0) {
+            long nanos = readLatency.percentileNanos(hedgePercentile);
+            if (nanos >= 0) {
+                return nanos;
+            }
+        }
+        return hedgeDelayMillis < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(hedgeDelayMillis);
+    }
+
+    private static Exception unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof Exception) {
+            return (Exception) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return e;
+    }
+
+    /**
+     * set how {@link #read} chooses server of a partition(default
+     * {@link LeastOutstandingLoadBalancer})
+     *
+     * @param readBalancer
+     */
+    public void setReadBalancer(LoadBalancer readBalancer) {
+        if (readBalancer == null) {
+            throw new IllegalArgumentException("readBalancer is empty!");
+        }
+        this.readBalancer = readBalancer;
+    }
+
+    /**
+     * set if {@link #read} goes to primary too(default true), false for
+     * replicas only
+     *
+     * @param readFromPrimary
+     */
+    public void setReadFromPrimary(boolean readFromPrimary) {
+        this.readFromPrimary = readFromPrimary;
+    }
+
+    /**
+     * set fixed delay of hedged read(default -1, means no hedging), or
+     * fallback of {@link #setHedgePercentile(double)} before enough
+     * samples
+     *
+     * @param hedgeDelayMillis
+     */
+    public void setHedgeDelayMillis(long hedgeDelayMillis) {
+        this.hedgeDelayMillis = hedgeDelayMillis;
+    }
+
+    /**
+     * set hedge reads slower than this percentile(0-100) of recent reads,
+     * e.g. 95(default 0, means use {@link #setHedgeDelayMillis(long)})
+     *
+     * @param hedgePercentile
+     */
+    public void setHedgePercentile(double hedgePercentile) {
+        this.hedgePercentile = hedgePercentile;
+    }
+
+    /**
+     * set executor of {@link #scatterGather}(default a cached thread pool),
+     * e.g. Executors.newVirtualThreadPerTaskExecutor() on jdk 21+
+     *
+     * @param executor
+     */
+    public void setExecutor(Executor executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("executor is empty!");
+        }
+        this.executor = executor;
+    }
+
+    public List<ServiceInfo> getServices() {
+        return topology.services;
     }
 
     public int getPartitionSize() {
-        return servicePartitions.size();
+        return topology.partitions.size();
+    }
+
+    /**
+     * get how long retired pools are kept after {@link #setServices(List)}
+     * (default 5000)
+     *
+     * @return
+     */
+    public long getDrainMillis() {
+        return drainMillis;
+    }
+
+    /**
+     * set how long retired pools are kept after {@link #setServices(List)},
+     * callers got them before can still use them in this period
+     *
+     * @param drainMillis
+     */
+    public void setDrainMillis(long drainMillis) {
+        this.drainMillis = drainMillis;
+    }
+
+    /**
+     * close all pools
+     */
+    public void close() {
+        lock.lock();
+        try {
+            for (ThriftClientPool<T> pool : topology.allPools()) {
+                pool.close();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * immutable services, partitions and their pools, swapped as a whole
+     */
+    private static final class Topology<T extends TServiceClient> {
+
+        private final List<ServiceInfo> services;
+
+        private final List<List<ServiceInfo>> partitions;
+
+        private final ShardRouter router;
+
+        /**
+         * pool of each partition, pool of primary if replicated, null for
+         * empty partition
+         */
+        private final ThriftClientPool<T>[] pools;
+
+        /** primary and replicas of each partition, null if less than 2 */
+        private final Replica<T>[][] replicas;
+
+        Topology(List<ServiceInfo> services, List<List<ServiceInfo>> partitions,
+                ShardRouter router, ThriftClientPool<T>[] pools, Replica<T>[][] replicas) {
+            this.services = services;
+            this.partitions = partitions;
+            this.router = router;
+            this.pools = pools;
+            this.replicas = replicas;
+        }
+
+        /**
+         * @return pools of partitions and replicas, by identity
+         */
+        Set<ThriftClientPool<T>> allPools() {
+            Set<ThriftClientPool<T>> all = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (int i = 0; i < pools.length; i++) {
+                if (pools[i] != null) {
+                    all.add(pools[i]);
+                }
+                if (replicas[i] != null) {
+                    for (Replica<T> replica : replicas[i]) {
+                        all.add(replica.pool);
+                    }
+                }
+            }
+            return all;
+        }
+    }
+
+    /**
+     * one server of a partition, with its own pool and load
+     */
+    private static final class Replica<T extends TServiceClient> {
+
+        private final ThriftClientPool<T> pool;
+
+        private final Backend stats;
+
+        Replica(ThriftClientPool<T> pool, Backend stats) {
+            this.pool = pool;
+            this.stats = stats;
+        }
     }
 }
@@ -0,0 +1,19 @@
+package com.wealoha.thrift;
+
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.transport.TTransport;
+
+/**
+ * {@link TBinaryProtocol} on transport
+ * 
+ * @author javamonk
+ * @createTime 2026年10月18日 下午9:41:27
+ */
+public class ThriftBinaryProtocolFactory implements ThriftProtocolFactory {
+
+    @Override
+    public TProtocol makeProtocol(TTransport transport) {
+        return new TBinaryProtocol(transport);
+    }
+}
@@ -0,0 +1,45 @@
+package com.wealoha.thrift;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+
+import org.apache.thrift.transport.TIOStreamTransport;
+import org.apache.thrift.transport.TSocket;
+import org.apache.thrift.transport.TTransport;
+import org.apache.thrift.transport.TTransportException;
+
+/**
+ * Socket streams with buffers of given size(TSocket uses 1024 bytes), so a
+ * message of unframed protocol is read and written with less syscalls
+ * 
+ * @author javamonk
+ * @createTime 2026年10月18日 下午9:38:02
+ */
+public class ThriftBufferedTransportFactory implements ThriftTransportFactory {
+
+    private final int bufferSize;
+
+    public ThriftBufferedTransportFactory() {
+        this(8192);
+    }
+
+    /**
+     * @param bufferSize read and write buffer size in bytes
+     */
+    public ThriftBufferedTransportFactory(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    @Override
+    public TTransport makeTransport(TSocket socket) throws TTransportException {
+        Socket s = socket.getSocket();
+        try {
+            return new TIOStreamTransport(new BufferedInputStream(s.getInputStream(), bufferSize),
+                    new BufferedOutputStream(s.getOutputStream(), bufferSize));
+        } catch (IOException e) {
+            throw new TTransportException(TTransportException.NOT_OPEN, e);
+        }
+    }
+}
@@ -1,12 +1,19 @@
 package com.wealoha.thrift;
 
 import java.io.Closeable;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
 
 import org.apache.commons.pool2.ObjectPool;
 import org.apache.thrift.TServiceClient;
+import org.apache.thrift.transport.TSocket;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.wealoha.thrift.balance.Backend;
+
 /**
  * The thrift client which hold the connection to backend server.<br/>
  * 
@@ -26,13 +33,56 @@ public class ThriftClient<T extends TServiceClient> implements Closeable {
 
     private final ServiceInfo serviceInfo;
 
+    private final Backend backend;
+
+    /** null if unknown */
+    private final TSocket socket;
+
+    private final int readTimeout;
+
+    private final MetricsRecorder metricsRecorder;
+
     private boolean finish;
 
+    /** the call failed by transport or server, counts against backend health */
+    private boolean failed;
+
+    /** nano time of borrowed, 0 if not in use */
+    private long borrowTime;
+
+    /** connection closed by another thread, the call is abandoned */
+    private volatile boolean aborted;
+
+    /** socket timeout is set by {@link Deadline} */
+    private boolean deadlineTimeout;
+
+    /** nano time the connection should be closed, 0 means never */
+    private volatile long expireTime;
+
     public ThriftClient(T client, ObjectPool<ThriftClient<T>> pool, ServiceInfo serviceInfo) {
+        this(client, pool, serviceInfo, null, null, 0, MetricsRecorder.NOOP);
+    }
+
+    /**
+     * @param client
+     * @param pool
+     * @param serviceInfo
+     * @param backend
+     * @param socket socket of client, its timeout is adjusted by
+     *        {@link Deadline}
+     * @param readTimeout socket timeout besides deadline
+     * @param metricsRecorder
+     */
+    ThriftClient(T client, ObjectPool<ThriftClient<T>> pool, ServiceInfo serviceInfo,
+            Backend backend, TSocket socket, int readTimeout, MetricsRecorder metricsRecorder) {
         super();
         this.client = client;
         this.pool = pool;
         this.serviceInfo = serviceInfo;
+        this.backend = backend;
+        this.socket = socket;
+        this.readTimeout = readTimeout;
+        this.metricsRecorder = metricsRecorder;
     }
 
     /**
@@ -53,9 +103,52 @@ public class ThriftClient<T extends TServiceClient> implements Closeable {
         return client;
     }
 
+    Backend getBackend() {
+        return backend;
+    }
+
+    /**
+     * borrowed from pool, request starts
+     */
+    void onBorrow() {
+        if (backend != null) {
+            borrowTime = System.nanoTime();
+            backend.onStart();
+        }
+        Deadline deadline = Deadline.current();
+        if (socket != null && deadline != null) {
+            long timeout = Math.max(1, deadline.remainingMillis());
+            if (readTimeout > 0) {
+                timeout = Math.min(timeout, readTimeout);
+            }
+            socket.setSocketTimeout((int) Math.min(Integer.MAX_VALUE, timeout));
+            deadlineTimeout = true;
+        }
+    }
+
     @Override
     public void close() {
+        if (borrowTime != 0) {
+            if (aborted || !finish && !failed) {
+                // not finished for a reason unknown to the pool, e.g. caller's
+                // own exception, neither success nor failure of the backend
+                backend.onCancel();
+            } else {
+                backend.onFinish(System.nanoTime() - borrowTime, !failed);
+            }
+            borrowTime = 0;
+            failed = false;
+            metricsRecorder.onRelease(serviceInfo);
+        }
+        if (aborted) {
+            finish = false;
+        }
+        if (deadlineTimeout && finish) {
+            socket.setSocketTimeout(readTimeout);
+        }
+        deadlineTimeout = false;
         try {
+            // an expired one is closed by housekeeper, not on caller thread
             if (finish) {
                 logger.debug("return object to pool: " + this);
                 finish = false;
@@ -71,13 +164,75 @@ public class ThriftClient<T extends TServiceClient> implements Closeable {
         }
     }
 
+    /**
+     * close connection from another thread to abandon the call in progress,
+     * the client is not returned to pool
+     */
+    void abort() {
+        aborted = true;
+        closeClient();
+    }
+
+    /**
+     * set when the connection should be closed
+     * 
+     * @param expireTime nano time
+     */
+    void setExpireTime(long expireTime) {
+        this.expireTime = expireTime;
+    }
+
+    boolean isExpired() {
+        long expire = expireTime;
+        return expire != 0 && System.nanoTime() - expire >= 0;
+    }
+
+    /**
+     * check an idle connection is not closed by peer without blocking: an
+     * idle connection should have nothing to read, EOF or data means it's
+     * unusable
+     * 
+     * @return
+     */
+    boolean isAlive() {
+        if (socket == null) {
+            return client.getInputProtocol().getTransport().isOpen();
+        }
+        Socket s = socket.getSocket();
+        if (s == null || s.isClosed() || !s.isConnected() || s.isInputShutdown()) {
+            return false;
+        }
+        SocketChannel channel = s.getChannel();
+        if (channel == null) {
+            try {
+                return s.getInputStream().available() == 0;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+        synchronized (channel.blockingLock()) {
+            try {
+                channel.configureBlocking(false);
+                try {
+                    return channel.read(ByteBuffer.allocate(1)) == 0;
+                } finally {
+                    channel.configureBlocking(true);
+                }
+            } catch (IOException e) {
+                return false;
+            }
+        }
+    }
+
     void closeClient() {
         logger.debug("close client {}", this);
         ThriftUtil.closeClient(this.client);
     }
 
     /**
-     * client should return to pool
+     * client should return to pool, call it after the call succeeded or threw
+     * an exception declared in IDL. A client closed without it doesn't count
+     * for or against backend health
      * 
      */
     public void finish() {
@@ -88,6 +243,18 @@ public class ThriftClient<T extends TServiceClient> implements Closeable {
         this.finish = finish;
     }
 
+    /**
+     * set result of the call, the client is returned to pool if the response
+     * is read, and the backend is healthy unless the call failed by transport
+     * or server
+     * 
+     * @param error null if succeeded
+     */
+    void setResult(Throwable error) {
+        this.finish = error == null || ThriftUtil.isConnectionReusable(error);
+        this.failed = error != null && ThriftUtil.isServiceFailure(error);
+    }
+
     @Override
     protected void finalize() throws Throwable {
         super.finalize();
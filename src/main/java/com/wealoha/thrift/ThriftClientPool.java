@@ -1,30 +1,60 @@
 package com.wealoha.thrift;
 
-import java.lang.reflect.Proxy;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.function.Supplier;
 
-import org.apache.commons.lang3.RandomUtils;
 import org.apache.commons.pool2.BasePooledObjectFactory;
+import org.apache.commons.pool2.ObjectPool;
 import org.apache.commons.pool2.PooledObject;
 import org.apache.commons.pool2.impl.DefaultPooledObject;
-import org.apache.commons.pool2.impl.GenericObjectPool;
 import org.apache.thrift.TServiceClient;
+import org.apache.thrift.protocol.TProtocol;
 import org.apache.thrift.transport.TSocket;
 import org.apache.thrift.transport.TTransport;
 import org.apache.thrift.transport.TTransportException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.wealoha.thrift.balance.Backend;
+import com.wealoha.thrift.balance.CircuitBreaker;
+import com.wealoha.thrift.balance.CircuitBreakerPolicy;
+import com.wealoha.thrift.balance.ConcurrencyLimit;
+import com.wealoha.thrift.balance.ConcurrencyLimiter;
+import com.wealoha.thrift.balance.LoadBalancer;
+import com.wealoha.thrift.exception.ConcurrencyLimitExceededException;
 import com.wealoha.thrift.exception.ConnectionFailException;
+import com.wealoha.thrift.exception.DeadlineExceededException;
 import com.wealoha.thrift.exception.NoBackendServiceException;
 import com.wealoha.thrift.exception.ThriftException;
 
 /**
  * Pool for ThriftClient <br/>
  * <p/>
+ * Each backend service has its own sub-pool, {@link PoolConfig#getLoadBalancer()}
+ * chooses one of them for each borrow.
+ * <p/>
  * <code>
  * ThriftClientPool pool = new ThriftClientPool(services, clientFactory)
  * </code>
@@ -38,14 +68,58 @@ public class ThriftClientPool<T extends TServiceClient> {
 
     private final Function<TTransport, T> clientFactory;
 
-    private final GenericObjectPool<ThriftClient<T>> pool;
+    private volatile List<ServiceInfo> services;
+
+    /** backends of current services, replaced as a whole by setServices */
+    private volatile Topology topology = new Topology(Collections.emptyList(),
+            Collections.emptyList(), null);
 
-    private List<ServiceInfo> services;
+    private volatile int maxTotalPerBackend;
 
-    private boolean serviceReset = false;
+    private volatile int minIdlePerBackend;
 
     private final PoolConfig poolConfig;
 
+    private final PoolEngine engine;
+
+    private volatile Object ifaceProxy;
+
+    /** sub-pool of each service in services */
+    private final ConcurrentMap<ServiceInfo, BackendPool> backendPools = new ConcurrentHashMap<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private volatile boolean closed;
+
+    private static final long WAIT_SLICE_MILLIS = 100;
+
+    /** draws of load balancer before choosing from usable backends only */
+    private static final int MAX_DRAWS = 3;
+
+    private volatile CompletableFuture<Void> readyFuture = CompletableFuture.completedFuture(null);
+
+    private static final ExecutorService warmUpExecutor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "thrift-pool-warm-up");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final ScheduledExecutorService housekeeper = Executors
+            .newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "thrift-pool-housekeeper");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    /**
+     * null if neither {@link PoolConfig#getKeepAliveMillis()} nor
+     * {@link PoolConfig#getMaxLifetimeMillis()} is set
+     */
+    private volatile ScheduledFuture<?> housekeepingTask;
+
+    /** set while the housekeeper validates idle connections */
+    private static final ThreadLocal<Boolean> housekeeping = new ThreadLocal<>();
+
     /**
      * Construct a new pool using default config
      *
@@ -53,7 +127,7 @@ public class ThriftClientPool<T extends TServiceClient> {
      * @param factory
      */
     public ThriftClientPool(List<ServiceInfo> services, Function<TTransport, T> factory) {
-        this(services, factory, new PoolConfig(), null);
+        this(services, factory, new PoolConfig());
     }
 
     /**
@@ -69,11 +143,6 @@ public class ThriftClientPool<T extends TServiceClient> {
      */
     public ThriftClientPool(List<ServiceInfo> services, Function<TTransport, T> factory,
             PoolConfig config) {
-        this(services, factory, config, null);
-    }
-
-    public ThriftClientPool(List<ServiceInfo> services, Function<TTransport, T> factory,
-            PoolConfig config, ThriftProtocolFactory pFactory) {
         if (services == null || services.size() == 0) {
             throw new IllegalArgumentException("services is empty!");
         }
@@ -84,83 +153,118 @@ public class ThriftClientPool<T extends TServiceClient> {
             throw new IllegalArgumentException("config is empty!");
         }
 
-        this.services = services;
         this.clientFactory = factory;
         this.poolConfig = config;
         // test if config change
         this.poolConfig.setTestOnReturn(true);
         this.poolConfig.setTestOnBorrow(true);
-        this.pool = new GenericObjectPool<>(new BasePooledObjectFactory<ThriftClient<T>>() {
-
-            @Override
-            public ThriftClient<T> create() throws Exception {
-
-                // get from global list first
-                List<ServiceInfo> serviceList = ThriftClientPool.this.services;
-                ServiceInfo serviceInfo = getRandomService(serviceList);
-                TTransport transport = getTransport(serviceInfo);
-
-                try {
-                    transport.open();
-                } catch (TTransportException e) {
-                    logger.info("transport open fail service: host={}, port={}",
-                            serviceInfo.getHost(), serviceInfo.getPort());
-                    if (poolConfig.isFailover()) {
-                        while (true) {
-                            try {
-                                // mark current fail and try next, until none service available
-                                serviceList = removeFailService(serviceList, serviceInfo);
-                                serviceInfo = getRandomService(serviceList);
-                                transport = getTransport(serviceInfo); // while break here
-                                logger.info("failover to next service host={}, port={}",
-                                        serviceInfo.getHost(), serviceInfo.getPort());
-                                transport.open();
-                                break;
-                            } catch (TTransportException e2) {
-                                logger.warn("failover fail, services left: {}", serviceList.size());
-                            }
-                        }
-                    } else {
-                        throw new ConnectionFailException("host=" + serviceInfo.getHost() + ", ip="
-                                + serviceInfo.getPort(), e);
-                    }
-                }
+        this.engine = poolConfig.isVirtualThreadMode() ? PoolEngine.CONCURRENT_BAG : poolConfig
+                .getPoolEngine();
+        setServices(services);
+        long housekeepingMillis = getHousekeepingMillis(poolConfig);
+        if (housekeepingMillis > 0) {
+            housekeepingTask = scheduleHousekeeping(this, housekeepingMillis);
+        }
+    }
 
-                ThriftClient<T> client = new ThriftClient<>(clientFactory.apply(transport), pool,
-                        serviceInfo);
+    /**
+     * interval of housekeeping, keepAlive or a tenth of maxLifetime if
+     * shorter
+     *
+     * @param config
+     * @return 0 if neither is set
+     */
+    private static long getHousekeepingMillis(PoolConfig config) {
+        long millis = config.getKeepAliveMillis() > 0 ? config.getKeepAliveMillis() : 0;
+        if (config.getMaxLifetimeMillis() > 0) {
+            long lifetimeMillis = Math.max(1, config.getMaxLifetimeMillis() / 10);
+            millis = millis > 0 ? Math.min(millis, lifetimeMillis) : lifetimeMillis;
+        }
+        return millis;
+    }
 
-                logger.debug("create new object for pool {}", client);
-                return client;
+    /**
+     * check idle connections of pool periodically in background, the task
+     * keeps no strong reference to pool so it can be collected
+     *
+     * @param pool
+     * @param housekeepingMillis
+     * @return
+     */
+    private static ScheduledFuture<?> scheduleHousekeeping(ThriftClientPool<?> pool,
+            long housekeepingMillis) {
+        WeakReference<ThriftClientPool<?>> poolRef = new WeakReference<>(pool);
+        CompletableFuture<ScheduledFuture<?>> self = new CompletableFuture<>();
+        ScheduledFuture<?> task = housekeeper.scheduleWithFixedDelay(() -> {
+            ThriftClientPool<?> current = poolRef.get();
+            if (current == null) {
+                self.thenAccept(f -> f.cancel(false));
+                return;
             }
+            current.housekeep();
+        }, housekeepingMillis, housekeepingMillis, TimeUnit.MILLISECONDS);
+        self.complete(task);
+        return task;
+    }
 
-            @Override
-            public PooledObject<ThriftClient<T>> wrap(ThriftClient<T> obj) {
-                return new DefaultPooledObject<>(obj);
+    /**
+     * validate idle connections of all backends, expired ones and dead
+     * ones(if {@link PoolConfig#getKeepAliveMillis()} set) are closed, then
+     * refill to minIdle, so request threads neither close nor open them
+     */
+    void housekeep() {
+        int minIdle = minIdlePerBackend;
+        for (BackendPool backendPool : backendPools.values()) {
+            if (closed) {
+                return;
             }
-
-            @Override
-            public boolean validateObject(PooledObject<ThriftClient<T>> p) {
-                ThriftClient<T> client = p.getObject();
-
-                // check if return client in current service list if 
-                if (serviceReset) {
-                    if (!ThriftClientPool.this.services.contains(client.getServiceInfo())) {
-                        logger.warn("not return object because it's from previous config {}",
-                                client);
-                        client.closeClient();
-                        return false;
-                    }
+            housekeeping.set(Boolean.TRUE);
+            try {
+                engine.evict(backendPool.pool);
+            } catch (Exception e) {
+                logger.warn("check idle connections fail: {}", backendPool.backend, e);
+            } finally {
+                housekeeping.remove();
+            }
+            try {
+                for (int i = backendPool.pool.getNumIdle(); i < minIdle
+                        && backendPool.backend.isAvailable() && !closed; i++) {
+                    backendPool.pool.addObject();
                 }
-
-                return super.validateObject(p);
+            } catch (Exception e) {
+                logger.warn("refill idle connections fail: {}", backendPool.backend, e);
             }
+        }
+    }
 
-            @Override
-            public void destroyObject(PooledObject<ThriftClient<T>> p) throws Exception {
-                p.getObject().closeClient();
-                super.destroyObject(p);
-            }
-        }, poolConfig);
+    /**
+     * Construct a new pool which builds clients through pipeline: socket
+     * -> transport({@link PoolConfig#setTransportFactory}) -> protocol
+     * -> client
+     *
+     * @param services
+     * @param pFactory protocol on transport, e.g.
+     *        {@link ThriftCompactProtocolFactory}
+     * @param factory protocol->new Client(protocol)
+     * @param config
+     */
+    public ThriftClientPool(List<ServiceInfo> services, ThriftProtocolFactory pFactory,
+            Function<TProtocol, T> factory, PoolConfig config) {
+        this(services, toClientFactory(pFactory, factory), config);
+    }
+
+    /**
+     * @deprecated pFactory can't be applied to a client built from
+     *             transport, use
+     *             {@link #ThriftClientPool(List, ThriftProtocolFactory, Function, PoolConfig)}
+     */
+    @Deprecated
+    public ThriftClientPool(List<ServiceInfo> services, Function<TTransport, T> factory,
+            PoolConfig config, ThriftProtocolFactory pFactory) {
+        this(services, factory, config);
+        if (pFactory != null) {
+            logger.warn("pFactory is ignored, construct pool with protocol factory instead");
+        }
     }
 
     public List<ServiceInfo> getServices() {
@@ -168,7 +272,16 @@ public class ThriftClientPool<T extends TServiceClient> {
     }
 
     /**
-     * set new services for this pool
+     * set new services for this pool, only the difference is applied:
+     * <ul>
+     * <li>sub-pools of kept services are kept with their connections, weight
+     * and metadata are updated</li>
+     * <li>added services are connected in background if
+     * {@link PoolConfig#isWarmUp()}, see {@link #getReadyFuture()}</li>
+     * <li>removed services get no new borrow, idle connections are closed at
+     * once, connections in use are closed when returned, or aborted after
+     * {@link PoolConfig#getDrainMillis()}</li>
+     * </ul>
      *
      * @param services
      */
@@ -176,45 +289,410 @@ public class ThriftClientPool<T extends TServiceClient> {
         if (services == null || services.size() == 0) {
             throw new IllegalArgumentException("services is empty!");
         }
-        this.services = services;
-        serviceReset = true;
+        services = Collections.unmodifiableList(new ArrayList<>(services));
+        Set<ServiceInfo> serviceSet = new HashSet<>(services);
+        List<ServiceInfo> added = new ArrayList<>();
+        List<BackendPool> removed = new ArrayList<>();
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("pool is closed");
+            }
+            int maxTotal = getMaxTotalPerBackend(serviceSet.size());
+            int minIdle = getMinIdlePerBackend(serviceSet.size());
+            for (BackendPool backendPool : backendPools.values()) {
+                if (!serviceSet.contains(backendPool.backend.getServiceInfo())) {
+                    removed.add(backendPool);
+                } else {
+                    engine.setMaxTotal(backendPool.pool, maxTotal);
+                    engine.setMinIdle(backendPool.pool, minIdle);
+                }
+            }
+            for (ServiceInfo serviceInfo : serviceSet) {
+                BackendPool backendPool = backendPools.get(serviceInfo);
+                if (backendPool != null
+                        && !backendPool.backend.getServiceInfo().metadataEquals(serviceInfo)) {
+                    backendPool.backend.setServiceInfo(serviceInfo);
+                }
+            }
+            for (ServiceInfo serviceInfo : serviceSet) {
+                if (!backendPools.containsKey(serviceInfo)) {
+                    backendPools.put(serviceInfo, new BackendPool(serviceInfo, maxTotal,
+                            minIdle));
+                    added.add(serviceInfo);
+                }
+            }
+            // locality is decided here once, not on each borrow
+            String zone = poolConfig.getZone();
+            List<Backend> localBackends = new ArrayList<>();
+            List<Backend> remoteBackends = new ArrayList<>();
+            for (ServiceInfo serviceInfo : services) {
+                Backend backend = backendPools.get(serviceInfo).backend;
+                if (zone != null && zone.equals(backend.getServiceInfo().getZone())) {
+                    localBackends.add(backend);
+                } else {
+                    remoteBackends.add(backend);
+                }
+            }
+            // borrowers see no removed backend once their pools are removed
+            this.topology = new Topology(localBackends, remoteBackends, poolConfig
+                    .getLoadBalancer());
+            for (BackendPool backendPool : removed) {
+                backendPools.remove(backendPool.backend.getServiceInfo());
+            }
+            this.maxTotalPerBackend = maxTotal;
+            this.minIdlePerBackend = minIdle;
+            this.services = services;
+        } finally {
+            lock.unlock();
+        }
+
+        for (BackendPool backendPool : removed) {
+            logger.info("close pool of removed service {}", backendPool.backend);
+            backendPool.pool.close();
+            long drainMillis = poolConfig.getDrainMillis();
+            if (drainMillis >= 0 && !backendPool.connections.isEmpty()) {
+                housekeeper.schedule(backendPool::abort, drainMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (poolConfig.isWarmUp()) {
+            readyFuture = warmUp(added);
+        }
+    }
+
+    /**
+     * get max connections of each backend
+     *
+     * @param backends number of backends
+     * @return negative for no limit
+     */
+    private int getMaxTotalPerBackend(int backends) {
+        if (poolConfig.getMaxTotalPerBackend() >= 0) {
+            return poolConfig.getMaxTotalPerBackend();
+        }
+        int maxTotal = poolConfig.getMaxTotal();
+        return maxTotal < 0 ? -1 : (maxTotal + backends - 1) / backends;
+    }
+
+    /**
+     * get min idle connections of each backend
+     *
+     * @param backends number of backends
+     * @return
+     */
+    private int getMinIdlePerBackend(int backends) {
+        if (poolConfig.getMinIdlePerBackend() >= 0) {
+            return poolConfig.getMinIdlePerBackend();
+        }
+        int minIdle = poolConfig.getMinIdle();
+        return minIdle <= 0 ? 0 : (minIdle + backends - 1) / backends;
+    }
+
+    /**
+     * open min idle connections of each backend(minIdle divided by number of
+     * backends, or {@link PoolConfig#getMinIdlePerBackend()}) in background,
+     * connections are opened in parallel
+     *
+     * @return completes when all connections are tried, exceptionally if
+     *         none of them can be opened
+     */
+    public CompletableFuture<Void> warmUp() {
+        return warmUp(services);
+    }
+
+    /**
+     * get the result of last warm-up started by
+     * {@link PoolConfig#setWarmUp(boolean)}, at construction or after
+     * {@link #setServices(List)}
+     *
+     * @return
+     */
+    public CompletableFuture<Void> getReadyFuture() {
+        return readyFuture;
+    }
+
+    private CompletableFuture<Void> warmUp(List<ServiceInfo> serviceList) {
+        int minIdle = minIdlePerBackend;
+        if (minIdle <= 0 || serviceList.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+        for (ServiceInfo serviceInfo : serviceList) {
+            for (int i = 0; i < minIdle; i++) {
+                futures.add(CompletableFuture.supplyAsync(() -> addObject(serviceInfo),
+                        warmUpExecutor));
+            }
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()]))
+                .thenRun(() -> {
+                    long opened = futures.stream().filter(CompletableFuture::join).count();
+                    logger.info("warm up {} connections of {} services, opened={}",
+                            futures.size(), serviceList.size(), opened);
+                    if (opened == 0) {
+                        throw new NoBackendServiceException();
+                    }
+                });
     }
 
-    private TTransport getTransport(ServiceInfo serviceInfo) {
+    private boolean addObject(ServiceInfo serviceInfo) {
+        BackendPool backendPool = backendPools.get(serviceInfo);
+        if (backendPool == null) {
+            // removed
+            return false;
+        }
+        try {
+            backendPool.pool.addObject();
+            return true;
+        } catch (Exception e) {
+            logger.warn("warm up fail: host={}, port={}", serviceInfo.getHost(),
+                    serviceInfo.getPort(), e);
+            return false;
+        }
+    }
+
+    private static <T> Function<TTransport, T> toClientFactory(ThriftProtocolFactory pFactory,
+            Function<TProtocol, T> factory) {
+        if (pFactory == null) {
+            throw new IllegalArgumentException("pFactory is empty!");
+        }
+        if (factory == null) {
+            throw new IllegalArgumentException("factory is empty!");
+        }
+        return transport -> factory.apply(pFactory.makeProtocol(transport));
+    }
+
+    /**
+     * open a socket to service, backed by a channel so an idle one can be
+     * checked without blocking, see {@link ThriftClient#isAlive()}
+     *
+     * @param serviceInfo
+     * @return
+     * @throws TTransportException
+     */
+    private TSocket openTransport(ServiceInfo serviceInfo) throws TTransportException {
 
         if (serviceInfo == null) {
             throw new NoBackendServiceException();
         }
 
-        TTransport transport;
-        if (poolConfig.getTimeout() > 0) {
-            transport = new TSocket(serviceInfo.getHost(), serviceInfo.getPort(),
-                    poolConfig.getTimeout());
-        } else {
-            transport = new TSocket(serviceInfo.getHost(), serviceInfo.getPort());
+        int connectTimeout = poolConfig.getConnectTimeout() >= 0 ? poolConfig
+                .getConnectTimeout() : poolConfig.getTimeout();
+        SocketChannel channel = null;
+        try {
+            channel = SocketChannel.open();
+            Socket socket = channel.socket();
+            socket.setSoTimeout(getReadTimeout());
+            socket.connect(new InetSocketAddress(serviceInfo.getHost(), serviceInfo.getPort()),
+                    Math.max(0, connectTimeout));
+            return new TSocket(socket);
+        } catch (IOException e) {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException closeException) {
+                    // ignore
+                }
+            }
+            throw new TTransportException(TTransportException.NOT_OPEN, e);
         }
-        return transport;
     }
 
     /**
-     * get a random service
+     * get socket read timeout in millis, 0 for none
+     *
+     * @return
+     */
+    int getReadTimeout() {
+        int readTimeout = poolConfig.getReadTimeout() >= 0 ? poolConfig.getReadTimeout()
+                : poolConfig.getTimeout();
+        return Math.max(0, readTimeout);
+    }
+
+    /**
+     * apply {@link PoolConfig#getTransportFactory()} on an opened socket
      *
-     * @param serviceList
+     * @param socket
      * @return
+     * @throws TTransportException
+     */
+    private TTransport wrapTransport(TSocket socket) throws TTransportException {
+        ThriftTransportFactory transportFactory = poolConfig.getTransportFactory();
+        if (transportFactory == null) {
+            return socket;
+        }
+        try {
+            return transportFactory.makeTransport(socket);
+        } catch (TTransportException | RuntimeException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * choose a backend by {@link PoolConfig#getLoadBalancer()} from
+     * available ones, or from all if all are ejected, but never one whose
+     * circuit breaker is open or at concurrency limit. With
+     * {@link PoolConfig#getZone()} a usable draw from backends of the zone
+     * is taken, an unusable one may spill to other zones, see
+     * {@link PoolConfig#setLocalMinHealthyPercent(double)}. The balancer
+     * chooses from lists of {@link Topology}, a choice not usable is drawn
+     * again, so no list is built or scanned unless backends are unhealthy.
+     *
+     * @param excluded services not to choose, null for none
+     * @return null if no backend can be chosen
+     * @throws ConcurrencyLimitExceededException if all available ones are
+     *         at concurrency limit
      */
-    private ServiceInfo getRandomService(List<ServiceInfo> serviceList) {
-        if (serviceList == null || serviceList.size() == 0) {
+    private BackendPool selectPool(Set<ServiceInfo> excluded) {
+        while (true) {
+            Topology current = topology;
+            Backend backend = select(current, excluded);
+            if (backend == null) {
+                return null;
+            }
+            BackendPool backendPool = backendPools.get(backend.getServiceInfo());
+            if (backendPool != null || current == topology) {
+                return backendPool;
+            }
+            // removed just now, choose from new services
+        }
+    }
+
+    private Backend select(Topology current, Set<ServiceInfo> excluded) {
+        List<Backend> local = current.localBackends;
+        if (!local.isEmpty()) {
+            Backend drawn = poolConfig.getLoadBalancer().select(local);
+            if (isUsable(drawn, excluded, true)) {
+                return drawn;
+            }
+            // only an unusable draw counts usable local ones
+            int usable = 0;
+            for (int i = 0; i < local.size(); i++) {
+                if (isUsable(local.get(i), excluded, true)) {
+                    usable++;
+                }
+            }
+            if (usable > 0 && (isLocalPreferred(usable, local.size())
+                    || !hasUsable(current.remoteBackends, excluded))) {
+                Backend backend = choose(local, excluded, true);
+                if (backend != null) {
+                    return backend;
+                }
+            }
+        }
+        Backend backend = choose(current.remoteBackends, excluded, false);
+        if (backend != null) {
+            return backend;
+        }
+
+        // none is usable, wait for exhausted local ones, or try ejected ones
+        List<Backend> exhausted = new ArrayList<>();
+        List<Backend> ejected = new ArrayList<>();
+        boolean limited = false;
+        for (Backend candidate : current.allBackends) {
+            if (excluded != null && excluded.contains(candidate.getServiceInfo())) {
+                continue;
+            }
+            if (candidate.isLimited()) {
+                limited = true;
+            } else if (candidate.isAvailable()) {
+                exhausted.add(candidate);
+            } else if (!candidate.isCircuitOpen()) {
+                ejected.add(candidate);
+            }
+        }
+        if (!exhausted.isEmpty()) {
+            return poolConfig.getLoadBalancer().select(exhausted);
+        }
+        if (limited) {
+            throw new ConcurrencyLimitExceededException("all services are at limit: " + services);
+        }
+        if (ejected.isEmpty()) {
+            return null;
+        }
+        logger.warn("all services are ejected, choose from all: {}", ejected);
+        return poolConfig.getLoadBalancer().select(ejected);
+    }
+
+    /**
+     * choose a usable one of backends, drawn again a few times if not usable,
+     * then chosen from the usable ones
+     *
+     * @param backends
+     * @param excluded
+     * @param local
+     * @return null if none is usable
+     */
+    private Backend choose(List<Backend> backends, Set<ServiceInfo> excluded, boolean local) {
+        if (backends.isEmpty()) {
             return null;
         }
-        return serviceList.get(RandomUtils.nextInt(0, serviceList.size()));
+        LoadBalancer loadBalancer = poolConfig.getLoadBalancer();
+        for (int i = 0; i < MAX_DRAWS; i++) {
+            Backend backend = loadBalancer.select(backends);
+            if (isUsable(backend, excluded, local)) {
+                return backend;
+            }
+        }
+        List<Backend> usable = new ArrayList<>(backends.size());
+        for (Backend backend : backends) {
+            if (isUsable(backend, excluded, local)) {
+                usable.add(backend);
+            }
+        }
+        return usable.isEmpty() ? null : loadBalancer.select(usable);
+    }
+
+    private boolean hasUsable(List<Backend> backends, Set<ServiceInfo> excluded) {
+        for (int i = 0; i < backends.size(); i++) {
+            if (isUsable(backends.get(i), excluded, false)) {
+                return true;
+            }
+        }
+        return false;
     }
 
-    private List<ServiceInfo> removeFailService(List<ServiceInfo> list, ServiceInfo serviceInfo) {
+    /**
+     * get if a new borrow can go to the backend
+     *
+     * @param backend
+     * @param excluded
+     * @param local local ones are not usable when exhausted, so others are
+     *        preferred to waiting for them
+     * @return
+     */
+    private boolean isUsable(Backend backend, Set<ServiceInfo> excluded, boolean local) {
+        return (excluded == null || !excluded.contains(backend.getServiceInfo()))
+                && !backend.isLimited() && backend.isAvailable()
+                && (!local || !isExhausted(backend));
+    }
+
+    private boolean isExhausted(Backend backend) {
+        int maxTotal = maxTotalPerBackend;
+        return maxTotal > 0 && backend.getOutstanding() >= maxTotal;
+    }
+
+    /**
+     * keep all traffic local if enough local backends are usable, or spill
+     * in proportion to the shortage
+     *
+     * @param usable
+     * @param local
+     * @return
+     */
+    private boolean isLocalPreferred(int usable, int local) {
+        double healthy = usable * 100.0 / local / poolConfig.getLocalMinHealthyPercent();
+        return healthy >= 1 || ThreadLocalRandom.current().nextDouble() < healthy;
+    }
+
+    private Set<ServiceInfo> excludeFailService(Set<ServiceInfo> excluded,
+            ServiceInfo serviceInfo) {
         logger.info("remove service from current service list: host={}, port={}",
                 serviceInfo.getHost(), serviceInfo.getPort());
-        return list.stream() //
-                .filter(si -> !serviceInfo.equals(si)) //
-                .collect(Collectors.toList());
+        Set<ServiceInfo> result = excluded != null ? excluded : new HashSet<>();
+        result.add(serviceInfo);
+        return result;
     }
 
     /**
@@ -228,11 +706,107 @@ public class ThriftClientPool<T extends TServiceClient> {
      * @throws ConnectionFailException if
      *         {@link PoolConfig#setFailover(boolean)} not set and
      *         connection fail
+     * @throws DeadlineExceededException if {@link Deadline} of current
+     *         thread passed before a client is borrowed
+     * @throws ConcurrencyLimitExceededException if all services are at
+     *         {@link PoolConfig#setConcurrencyLimit(java.util.function.Supplier)}
      */
     public ThriftClient<T> getClient() throws ThriftException {
-        try {
-            return pool.borrowObject();
-        } catch (Exception e) {
+        return getClient(null);
+    }
+
+    /**
+     * get a client from pool not connected to exclude
+     *
+     * @param exclude null for any backend
+     * @return
+     * @throws ThriftException
+     */
+    ThriftClient<T> getClient(ServiceInfo exclude) throws ThriftException {
+        long start = System.nanoTime();
+        long maxWaitMillis = poolConfig.getBlockWhenExhausted() ? poolConfig.getMaxWaitMillis()
+                : 0;
+        long deadline = maxWaitMillis < 0 ? Long.MAX_VALUE : System.currentTimeMillis()
+                + maxWaitMillis;
+        // wait no longer than deadline of the call
+        Deadline callDeadline = Deadline.current();
+        boolean waitByDeadline = false;
+        if (callDeadline != null) {
+            long callDeadlineMillis = System.currentTimeMillis() + callDeadline.remainingMillis();
+            if (callDeadlineMillis <= deadline) {
+                deadline = callDeadlineMillis;
+                waitByDeadline = true;
+            }
+        }
+        // failed services, allocated on first failure
+        Set<ServiceInfo> excluded = exclude != null ? new HashSet<>(Collections
+                .singleton(exclude)) : null;
+        while (true) {
+            if (closed) {
+                throw new ThriftException("pool is closed");
+            }
+            if (callDeadline != null && callDeadline.isExpired()) {
+                throw new DeadlineExceededException("deadline exceeded waiting client");
+            }
+            BackendPool backendPool = selectPool(excluded);
+            if (backendPool == null) {
+                throw new NoBackendServiceException();
+            }
+            ServiceInfo serviceInfo = backendPool.backend.getServiceInfo();
+            if (!backendPool.backend.tryAcquire()) {
+                // reached limit just now, choose again
+                continue;
+            }
+            // wait in slices and choose again, a backend may be ejected or
+            // others returned meanwhile
+            long wait = Math.max(0,
+                    Math.min(WAIT_SLICE_MILLIS, deadline - System.currentTimeMillis()));
+            try {
+                ThriftClient<T> client;
+                try {
+                    client = engine.borrowObject(backendPool.pool, wait);
+                } catch (Exception e) {
+                    backendPool.backend.release();
+                    throw e;
+                }
+                client.onBorrow();
+                poolConfig.getMetricsRecorder().onBorrow(serviceInfo, System.nanoTime() - start);
+                return client;
+            } catch (IllegalStateException e) {
+                // pool closed after services changed, choose again
+                logger.debug("pool closed: {}", serviceInfo);
+            } catch (NoSuchElementException e) {
+                if (System.currentTimeMillis() < deadline) {
+                    continue;
+                }
+                if (waitByDeadline) {
+                    throw new DeadlineExceededException("deadline exceeded waiting client");
+                }
+                failover(serviceInfo, e);
+                excluded = excludeFailService(excluded, serviceInfo);
+            } catch (Exception e) {
+                failover(serviceInfo, e);
+                // mark current fail and try next, until none service available
+                excluded = excludeFailService(excluded, serviceInfo);
+                logger.warn("failover fail, services failed: {}", excluded.size());
+            }
+        }
+    }
+
+    PoolConfig getPoolConfig() {
+        return poolConfig;
+    }
+
+    /**
+     * throw if not failover
+     *
+     * @param serviceInfo
+     * @param e
+     * @throws ThriftException
+     */
+    private void failover(ServiceInfo serviceInfo, Exception e) throws ThriftException {
+        poolConfig.getMetricsRecorder().onFailover(serviceInfo, e);
+        if (!poolConfig.isFailover()) {
             if (e instanceof ThriftException) {
                 throw (ThriftException) e;
             }
@@ -241,16 +815,16 @@ public class ThriftClientPool<T extends TServiceClient> {
     }
 
     /**
-     * get a client's IFace from pool
+     * get an IFace backed by this pool, each method call borrows a client
+     * from pool and returns it after call
      * <p/>
      * <ul>
      * <li>
      * <span style="color:red">Important: Iface is totally generated by
      * thrift, a ClassCastException will be thrown if assign not
      * match!</span></li>
-     * <li>
-     * <span style="color:red">Limitation: The return object can only used
-     * once.</span></li>
+     * <li>The return object is thread-safe and can be kept and used any
+     * times.</li>
      * </ul>
      *
      * @return
@@ -261,50 +835,210 @@ public class ThriftClientPool<T extends TServiceClient> {
      * @throws ConnectionFailException if
      *         {@link PoolConfig#setFailover(boolean)} not set and
      *         connection fail
-     * @throws IllegalStateException if call method on return object twice
      */
     @SuppressWarnings("unchecked")
     public <X> X iface() throws ThriftException {
-        ThriftClient<T> client;
+        Object proxy = ifaceProxy;
+        if (proxy == null) {
+            // Iface types are known after a client created
+            try (ThriftClient<T> client = getClient()) {
+                proxy = PooledIfaceHandler.newProxy(this, client.iFace().getClass());
+                client.finish();
+            }
+            ifaceProxy = proxy;
+        }
+        return (X) proxy;
+    }
+
+    /**
+     * close all connections, connections in use are closed when returned.
+     * No client can be got after closed.
+     */
+    public void close() {
+        lock.lock();
         try {
-            client = pool.borrowObject();
+            closed = true;
+        } finally {
+            lock.unlock();
+        }
+        ScheduledFuture<?> task = housekeepingTask;
+        if (task != null) {
+            task.cancel(false);
+        }
+        for (BackendPool backendPool : backendPools.values()) {
+            backendPool.pool.close();
+        }
+    }
+
+    private boolean isAlive(ThriftClient<T> client) {
+        if (!client.isAlive()) {
+            return false;
+        }
+        ThriftPing ping = poolConfig.getPing();
+        if (ping == null) {
+            return true;
+        }
+        try {
+            ping.ping(client.iFace());
+            return true;
         } catch (Exception e) {
-            if (e instanceof ThriftException) {
-                throw (ThriftException) e;
-            }
-            throw new ThriftException("Get client from pool failed.", e);
+            logger.debug("ping fail {}", client, e);
+            return false;
         }
-        AtomicBoolean returnToPool = new AtomicBoolean(false);
-        return (X) Proxy.newProxyInstance(this.getClass().getClassLoader(), client.iFace()
-                .getClass().getInterfaces(), (proxy, method, args) -> {
-            if (returnToPool.get()) {
-                throw new IllegalStateException("Object returned via iface can only used once!");
-            }
-            boolean success = false;
-            try {
-                Object result = method.invoke(client.iFace(), args);
-                success = true;
-                return result;
-            } catch (Throwable e) {
-                logger.warn("invoke fail", e);
-                throw e;
-            } finally {
-                if (success) {
-                    pool.returnObject(client);
-                } else {
-                    client.closeClient();
-                    pool.invalidateObject(client);
-                }
-                returnToPool.set(true);
-            }
-        });
     }
 
     @Override
     protected void finalize() throws Throwable {
-        if (pool != null) {
-            pool.close();
-        }
+        close();
         super.finalize();
     }
+
+    /**
+     * backends of current services split by {@link PoolConfig#getZone()},
+     * lists are immutable and prepared by the load balancer once, so it gets
+     * the same list on each borrow
+     */
+    private static class Topology {
+
+        private final List<Backend> localBackends;
+
+        private final List<Backend> remoteBackends;
+
+        private final List<Backend> allBackends;
+
+        /**
+         * @param localBackends
+         * @param remoteBackends
+         * @param loadBalancer null to keep lists unprepared
+         */
+        Topology(List<Backend> localBackends, List<Backend> remoteBackends,
+                LoadBalancer loadBalancer) {
+            this.localBackends = prepare(localBackends, loadBalancer);
+            this.remoteBackends = prepare(remoteBackends, loadBalancer);
+            List<Backend> allBackends = new ArrayList<>(localBackends);
+            allBackends.addAll(remoteBackends);
+            this.allBackends = Collections.unmodifiableList(allBackends);
+        }
+
+        private static List<Backend> prepare(List<Backend> backends, LoadBalancer loadBalancer) {
+            List<Backend> list = Collections.unmodifiableList(Arrays.asList(backends
+                    .toArray(new Backend[backends.size()])));
+            return loadBalancer != null ? loadBalancer.prepare(list) : list;
+        }
+    }
+
+    /**
+     * connections to one backend
+     */
+    private class BackendPool {
+
+        private final Backend backend;
+
+        private final ObjectPool<ThriftClient<T>> pool;
+
+        /** opened and not destroyed */
+        private final Set<ThriftClient<T>> connections = ConcurrentHashMap.newKeySet();
+
+        BackendPool(ServiceInfo serviceInfo, int maxTotal, int minIdle) {
+            CircuitBreakerPolicy circuitBreakerPolicy = poolConfig.getCircuitBreakerPolicy();
+            Supplier<ConcurrencyLimit> concurrencyLimit = poolConfig.getConcurrencyLimit();
+            this.backend = new Backend(serviceInfo, poolConfig.getEjectionFailures(),
+                    poolConfig.getEjectionMillis(), circuitBreakerPolicy != null
+                            ? new CircuitBreaker(circuitBreakerPolicy) : null,
+                    concurrencyLimit != null ? new ConcurrencyLimiter(concurrencyLimit.get())
+                            : null);
+            PoolConfig config = (PoolConfig) poolConfig.clone();
+            config.setMaxTotal(maxTotal);
+            config.setMinIdle(minIdle);
+            if (getHousekeepingMillis(poolConfig) > 0) {
+                // check all idle connections each time
+                config.setTestWhileIdle(true);
+                config.setNumTestsPerEvictionRun(-1);
+            }
+            this.pool = engine.createPool(new BasePooledObjectFactory<ThriftClient<T>>() {
+
+                @Override
+                public ThriftClient<T> create() throws Exception {
+                    if (backend.isCircuitOpen()) {
+                        // fail fast instead of waiting connect timeout
+                        throw new ConnectionFailException("circuit open: host="
+                                + serviceInfo.getHost() + ", ip=" + serviceInfo.getPort());
+                    }
+                    TSocket socket;
+                    try {
+                        socket = openTransport(serviceInfo);
+                    } catch (TTransportException e) {
+                        logger.info("transport open fail service: host={}, port={}",
+                                serviceInfo.getHost(), serviceInfo.getPort());
+                        backend.onFailure();
+                        poolConfig.getMetricsRecorder().onCreateFailure(serviceInfo, e);
+                        throw new ConnectionFailException("host=" + serviceInfo.getHost()
+                                + ", ip=" + serviceInfo.getPort(), e);
+                    }
+                    ThriftClient<T> client = new ThriftClient<>(clientFactory
+                            .apply(wrapTransport(socket)), pool, serviceInfo, backend, socket,
+                            getReadTimeout(), poolConfig.getMetricsRecorder());
+                    connections.add(client);
+                    poolConfig.getMetricsRecorder().onCreate(serviceInfo);
+                    long maxLifetimeMillis = poolConfig.getMaxLifetimeMillis();
+                    if (maxLifetimeMillis > 0) {
+                        // up to 10% less, connections don't expire together
+                        long lifetime = maxLifetimeMillis
+                                - ThreadLocalRandom.current().nextLong(maxLifetimeMillis / 10 + 1);
+                        client.setExpireTime(System.nanoTime()
+                                + TimeUnit.MILLISECONDS.toNanos(lifetime));
+                    }
+                    logger.debug("create new object for pool {}", client);
+                    return client;
+                }
+
+                @Override
+                public PooledObject<ThriftClient<T>> wrap(ThriftClient<T> obj) {
+                    return new DefaultPooledObject<>(obj);
+                }
+
+                @Override
+                public boolean validateObject(PooledObject<ThriftClient<T>> p) {
+                    if (backend.isEjected()) {
+                        logger.warn("not return object because backend is ejected {}", backend);
+                        p.getObject().closeClient();
+                        poolConfig.getMetricsRecorder().onValidationFailure(serviceInfo);
+                        return false;
+                    }
+                    ThriftClient<T> client = p.getObject();
+                    // idle connection checked in background
+                    if (housekeeping.get() != null) {
+                        if (client.isExpired()) {
+                            logger.debug("connection reached max lifetime {}", client);
+                            return false;
+                        }
+                        if (poolConfig.getKeepAliveMillis() > 0 && !isAlive(client)) {
+                            logger.info("idle connection is dead {}", client);
+                            poolConfig.getMetricsRecorder().onValidationFailure(serviceInfo);
+                            return false;
+                        }
+                    }
+                    return super.validateObject(p);
+                }
+
+                @Override
+                public void destroyObject(PooledObject<ThriftClient<T>> p) throws Exception {
+                    p.getObject().closeClient();
+                    connections.remove(p.getObject());
+                    poolConfig.getMetricsRecorder().onDestroy(serviceInfo);
+                    super.destroyObject(p);
+                }
+            }, config);
+        }
+
+        /**
+         * abort connections still in use after the drain period
+         */
+        private void abort() {
+            for (ThriftClient<T> client : connections) {
+                logger.warn("abort undrained connection of removed service {}", backend);
+                client.abort();
+            }
+        }
+    }
 }
@@ -0,0 +1,20 @@
+package com.wealoha.thrift;
+
+import org.apache.thrift.protocol.TCompactProtocol;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.transport.TTransport;
+
+/**
+ * {@link TCompactProtocol} on transport, less bytes on the wire than binary
+ * protocol
+ * 
+ * @author javamonk
+ * @createTime 2026年10月18日 下午9:42:55
+ */
+public class ThriftCompactProtocolFactory implements ThriftProtocolFactory {
+
+    @Override
+    public TProtocol makeProtocol(TTransport transport) {
+        return new TCompactProtocol(transport);
+    }
+}
@@ -0,0 +1,32 @@
+package com.wealoha.thrift;
+
+import org.apache.thrift.transport.TFramedTransport;
+import org.apache.thrift.transport.TSocket;
+import org.apache.thrift.transport.TTransport;
+
+/**
+ * {@link TFramedTransport} on socket, one write syscall per message
+ * 
+ * @author javamonk
+ * @createTime 2026年10月18日 下午9:34:40
+ */
+public class ThriftFramedTransportFactory implements ThriftTransportFactory {
+
+    private final int maxLength;
+
+    public ThriftFramedTransportFactory() {
+        this(16384000);
+    }
+
+    /**
+     * @param maxLength max frame size in bytes
+     */
+    public ThriftFramedTransportFactory(int maxLength) {
+        this.maxLength = maxLength;
+    }
+
+    @Override
+    public TTransport makeTransport(TSocket socket) {
+        return new TFramedTransport(socket, maxLength);
+    }
+}
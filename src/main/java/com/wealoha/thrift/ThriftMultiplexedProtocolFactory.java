@@ -0,0 +1,41 @@
+package com.wealoha.thrift;
+
+import org.apache.thrift.TMultiplexedProcessor;
+import org.apache.thrift.protocol.TMultiplexedProtocol;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.transport.TTransport;
+
+/**
+ * {@link TMultiplexedProtocol} over another protocol, for servers running
+ * {@link TMultiplexedProcessor}
+ * 
+ * @author javamonk
+ * @createTime 2026年10月18日 下午9:44:18
+ */
+public class ThriftMultiplexedProtocolFactory implements ThriftProtocolFactory {
+
+    private final ThriftProtocolFactory protocolFactory;
+
+    private final String serviceName;
+
+    /**
+     * @param protocolFactory the underlying protocol
+     * @param serviceName name registered in server's processor
+     */
+    public ThriftMultiplexedProtocolFactory(ThriftProtocolFactory protocolFactory,
+            String serviceName) {
+        if (protocolFactory == null) {
+            throw new IllegalArgumentException("protocolFactory is empty!");
+        }
+        if (serviceName == null || serviceName.isEmpty()) {
+            throw new IllegalArgumentException("serviceName is empty!");
+        }
+        this.protocolFactory = protocolFactory;
+        this.serviceName = serviceName;
+    }
+
+    @Override
+    public TProtocol makeProtocol(TTransport transport) {
+        return new TMultiplexedProtocol(protocolFactory.makeProtocol(transport), serviceName);
+    }
+}
@@ -0,0 +1,25 @@
+package com.wealoha.thrift;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.TServiceClient;
+
+/**
+ * Lightweight call to check an idle connection is alive, see
+ * {@link PoolConfig#setPing(ThriftPing)}, e.g.
+ * 
+ * <pre>
+ * config.setPing(client -&gt; ((YourService.Client) client).ping());
+ * </pre>
+ * 
+ * @author javamonk
+ * @createTime 2026年10月19日 上午4:02:36
+ */
+@FunctionalInterface
+public interface ThriftPing {
+
+    /**
+     * @param client client of an idle connection
+     * @throws TException if the connection is broken
+     */
+    void ping(TServiceClient client) throws TException;
+}
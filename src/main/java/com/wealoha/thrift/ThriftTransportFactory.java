@@ -0,0 +1,24 @@
+package com.wealoha.thrift;
+
+import org.apache.thrift.transport.TSocket;
+import org.apache.thrift.transport.TTransport;
+import org.apache.thrift.transport.TTransportException;
+
+/**
+ * Transport stage of the connection pipeline: socket -> transport ->
+ * protocol -> client, see {@link PoolConfig#setTransportFactory}
+ * 
+ * @author javamonk
+ * @createTime 2026年10月18日 下午9:30:12
+ */
+public interface ThriftTransportFactory {
+
+    /**
+     * wrap an opened socket
+     * 
+     * @param socket
+     * @return
+     * @throws TTransportException
+     */
+    TTransport makeTransport(TSocket socket) throws TTransportException;
+}
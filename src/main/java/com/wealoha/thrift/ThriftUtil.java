@@ -1,7 +1,11 @@
 package com.wealoha.thrift;
 
+import org.apache.thrift.TApplicationException;
+import org.apache.thrift.TException;
 import org.apache.thrift.TServiceClient;
 import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.protocol.TProtocolException;
+import org.apache.thrift.transport.TTransportException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -41,4 +45,44 @@ public abstract class ThriftUtil {
         }
 
     }
+
+    /**
+     * get if a call failed because of the backend or the connection, which
+     * counts against backend health: transport, protocol and timeout
+     * failures, and {@link TApplicationException} but missing result.
+     * Exceptions declared in IDL are normal results of a call.
+     * 
+     * @param e
+     * @return
+     */
+    public static boolean isServiceFailure(Throwable e) {
+        if (e instanceof TApplicationException) {
+            return ((TApplicationException) e).getType() != TApplicationException.MISSING_RESULT;
+        }
+        return !(e instanceof TException) || e instanceof TTransportException
+                || e instanceof TProtocolException;
+    }
+
+    /**
+     * get if the connection can be reused after a call threw e, that is the
+     * whole response is read: exceptions declared in IDL, and
+     * {@link TApplicationException} sent by server
+     * 
+     * @param e
+     * @return
+     */
+    public static boolean isConnectionReusable(Throwable e) {
+        if (e instanceof TApplicationException) {
+            switch (((TApplicationException) e).getType()) {
+                case TApplicationException.INTERNAL_ERROR:
+                case TApplicationException.MISSING_RESULT:
+                case TApplicationException.UNKNOWN_METHOD:
+                    return true;
+                default:
+                    return false;
+            }
+        }
+        return e instanceof TException && !(e instanceof TTransportException)
+                && !(e instanceof TProtocolException);
+    }
 }
@@ -0,0 +1,65 @@
+package com.wealoha.thrift.balance;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limit kept in [minLimit, maxLimit], samples are applied one at a time
+ * under a {@link ReentrantLock} rather than a monitor, so virtual threads
+ * finishing calls are not pinned. Reading the limit takes no lock.
+ *
+ * @author javamonk
+ * @createTime 2026年10月19日 上午5:22:30
+ */
+public abstract class AbstractLimit implements ConcurrencyLimit {
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private volatile double limit;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    protected AbstractLimit(int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit <= 0 || maxLimit < minLimit || initialLimit < minLimit
+                || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("invalid limits!");
+        }
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    @Override
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    @Override
+    public void onSample(long rttNanos, int inflight, boolean dropped) {
+        lock.lock();
+        try {
+            double next = update(limit, rttNanos, inflight, dropped);
+            limit = Math.max(minLimit, Math.min(maxLimit, next));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * called one sample at a time, subclasses keep their state without
+     * synchronization
+     * 
+     * @param limit current limit
+     * @param rttNanos
+     * @param inflight
+     * @param dropped
+     * @return new limit, clamped by caller
+     */
+    protected abstract double update(double limit, long rttNanos, int inflight, boolean dropped);
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + " [limit=" + getLimit() + "]";
+    }
+}
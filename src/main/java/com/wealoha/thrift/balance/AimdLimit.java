@@ -0,0 +1,51 @@
+package com.wealoha.thrift.balance;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Additive increase, multiplicative decrease(as TCP Reno): +1 for a fast
+ * call while the limit is in use, times backoffRatio for a dropped or slow
+ * one
+ *
+ * @author javamonk
+ * @createTime 2026年10月19日 上午5:24:18
+ */
+public class AimdLimit extends AbstractLimit {
+
+    private final double backoffRatio;
+
+    private final long slowCallNanos;
+
+    /**
+     * limit 20 in [1, 200], backoff 0.9, calls over 1s are slow
+     */
+    public AimdLimit() {
+        this(20, 1, 200, 0.9, 1000);
+    }
+
+    /**
+     * @param initialLimit
+     * @param minLimit
+     * @param maxLimit
+     * @param backoffRatio in (0, 1)
+     * @param slowCallMillis calls slower are taken as dropped
+     */
+    public AimdLimit(int initialLimit, int minLimit, int maxLimit, double backoffRatio,
+            long slowCallMillis) {
+        super(initialLimit, minLimit, maxLimit);
+        if (backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("backoffRatio must be in (0, 1)!");
+        }
+        this.backoffRatio = backoffRatio;
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(slowCallMillis);
+    }
+
+    @Override
+    protected double update(double limit, long rttNanos, int inflight, boolean dropped) {
+        if (dropped || rttNanos > slowCallNanos) {
+            return limit * backoffRatio;
+        }
+        // don't grow while the limit is not reached
+        return inflight * 2 >= limit ? limit + 1 : limit;
+    }
+}
@@ -0,0 +1,340 @@
+package com.wealoha.thrift.balance;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.wealoha.thrift.ServiceInfo;
+
+/**
+ * Load and health of one backend service, shared by all connections to it.
+ * <br/>
+ * 
+ * After {@code ejectionFailures} consecutive failures(connect or call) the
+ * backend is ejected for {@code ejectionMillis}, no new connection goes to
+ * it. When time is up it is available again as a probe: next success
+ * brings it back, next failure ejects it again.<br/>
+ * 
+ * With a {@link CircuitBreaker} the backend also gets no connection or call
+ * while the breaker is open, and only probes while half-open.<br/>
+ * 
+ * With a {@link ConcurrencyLimiter} a call needs a permit by
+ * {@link #tryAcquire()} before it starts.
+ * 
+ * @author javamonk
+ * @createTime 2026年10月18日 下午10:05:21
+ */
+public class Backend {
+
+    /** time constant of latency ewma, older samples decay by e after it */
+    private static final double DECAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    /** share of weight a backend gets at the start of slow start */
+    private static final double SLOW_START_MIN_RATIO = 0.1;
+
+    private volatile ServiceInfo serviceInfo;
+
+    private final int ejectionFailures;
+
+    private final long ejectionNanos;
+
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+    private volatile long ejectedUntil;
+
+    private volatile boolean ejected;
+
+    private final CircuitBreaker circuitBreaker;
+
+    private final ConcurrencyLimiter concurrencyLimiter;
+
+    private volatile double ewmaNanos;
+
+    private volatile long lastSampleTime;
+
+    private final long addedTime = System.nanoTime();
+
+    /**
+     * @param serviceInfo
+     * @param ejectionFailures consecutive failures to eject, 0 means never
+     * @param ejectionMillis
+     */
+    public Backend(ServiceInfo serviceInfo, int ejectionFailures, long ejectionMillis) {
+        this(serviceInfo, ejectionFailures, ejectionMillis, null);
+    }
+
+    /**
+     * @param serviceInfo
+     * @param ejectionFailures consecutive failures to eject, 0 means never
+     * @param ejectionMillis
+     * @param circuitBreaker null means none
+     */
+    public Backend(ServiceInfo serviceInfo, int ejectionFailures, long ejectionMillis,
+            CircuitBreaker circuitBreaker) {
+        this(serviceInfo, ejectionFailures, ejectionMillis, circuitBreaker, null);
+    }
+
+    /**
+     * @param serviceInfo
+     * @param ejectionFailures consecutive failures to eject, 0 means never
+     * @param ejectionMillis
+     * @param circuitBreaker null means none
+     * @param concurrencyLimiter null means none
+     */
+    public Backend(ServiceInfo serviceInfo, int ejectionFailures, long ejectionMillis,
+            CircuitBreaker circuitBreaker, ConcurrencyLimiter concurrencyLimiter) {
+        if (serviceInfo == null) {
+            throw new IllegalArgumentException("serviceInfo is empty!");
+        }
+        this.serviceInfo = serviceInfo;
+        this.ejectionFailures = ejectionFailures;
+        this.ejectionNanos = TimeUnit.MILLISECONDS.toNanos(ejectionMillis);
+        this.circuitBreaker = circuitBreaker;
+        this.concurrencyLimiter = concurrencyLimiter;
+    }
+
+    public ServiceInfo getServiceInfo() {
+        return serviceInfo;
+    }
+
+    /**
+     * update weight and metadata of the service
+     * 
+     * @param serviceInfo same host and port
+     */
+    public void setServiceInfo(ServiceInfo serviceInfo) {
+        if (!this.serviceInfo.equals(serviceInfo)) {
+            throw new IllegalArgumentException("serviceInfo is not the same backend!");
+        }
+        this.serviceInfo = serviceInfo;
+    }
+
+    /**
+     * get weight of the service, ramped linearly from 10% to full in
+     * slowStartMillis since this backend is added so a cold one is not
+     * flooded
+     * 
+     * @param slowStartMillis 0 means no ramp
+     * @return
+     */
+    public double getWeight(long slowStartMillis) {
+        int weight = serviceInfo.getWeight();
+        if (slowStartMillis <= 0) {
+            return weight;
+        }
+        double ratio = (System.nanoTime() - addedTime)
+                / (double) TimeUnit.MILLISECONDS.toNanos(slowStartMillis);
+        if (ratio >= 1) {
+            return weight;
+        }
+        return weight * Math.max(SLOW_START_MIN_RATIO, ratio);
+    }
+
+    /**
+     * get if {@link #getWeight(long)} is still ramping
+     * 
+     * @param slowStartMillis
+     * @return
+     */
+    public boolean isSlowStart(long slowStartMillis) {
+        return System.nanoTime() - addedTime < TimeUnit.MILLISECONDS.toNanos(slowStartMillis);
+    }
+
+    /**
+     * get requests in flight
+     * 
+     * @return
+     */
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    /**
+     * get decayed average latency of succeeded requests, 0 if no sample
+     * 
+     * @return
+     */
+    public double getEwmaNanos() {
+        return ewmaNanos;
+    }
+
+    /**
+     * get if new connections can go to this backend(not ejected, or
+     * ejection expired and waiting a probe), and circuit breaker permits
+     * 
+     * @return
+     */
+    public boolean isAvailable() {
+        return !isEjectionActive() && !isCircuitOpen();
+    }
+
+    /**
+     * get if ejected and ejection not expired, or circuit breaker is open,
+     * connections to it should not be reused
+     * 
+     * @return
+     */
+    public boolean isEjected() {
+        return isEjectionActive()
+                || circuitBreaker != null && circuitBreaker.getState() == CircuitBreaker.State.OPEN;
+    }
+
+    /**
+     * get if circuit breaker rejects calls now, the backend should not be
+     * tried even if all others are down
+     * 
+     * @return
+     */
+    public boolean isCircuitOpen() {
+        return circuitBreaker != null && !circuitBreaker.isCallPermitted();
+    }
+
+    /**
+     * get circuit breaker, null if none
+     * 
+     * @return
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * get concurrency limiter, null if none
+     * 
+     * @return
+     */
+    public ConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    /**
+     * get if calls in flight reach concurrency limit, new calls should go
+     * elsewhere
+     * 
+     * @return
+     */
+    public boolean isLimited() {
+        return concurrencyLimiter != null && concurrencyLimiter.isLimited();
+    }
+
+    /**
+     * take a permit of concurrency limiter before {@link #onStart()}, give
+     * it back by {@link #release()} if the call doesn't start
+     * 
+     * @return true if taken or no limiter
+     */
+    public boolean tryAcquire() {
+        return concurrencyLimiter == null || concurrencyLimiter.tryAcquire();
+    }
+
+    /**
+     * give back a permit taken by {@link #tryAcquire()} for a call not
+     * started
+     */
+    public void release() {
+        if (concurrencyLimiter != null) {
+            concurrencyLimiter.release();
+        }
+    }
+
+    private boolean isEjectionActive() {
+        return ejected && System.nanoTime() - ejectedUntil < 0;
+    }
+
+    /**
+     * a request starts
+     */
+    public void onStart() {
+        outstanding.incrementAndGet();
+        if (circuitBreaker != null) {
+            circuitBreaker.onStart();
+        }
+    }
+
+    /**
+     * a request started by {@link #onStart()} ends
+     * 
+     * @param latencyNanos
+     * @param success false only if failed by transport, timeout or server,
+     *        exceptions declared in IDL are success
+     */
+    public void onFinish(long latencyNanos, boolean success) {
+        outstanding.decrementAndGet();
+        if (circuitBreaker != null) {
+            circuitBreaker.onFinish(latencyNanos, success);
+        }
+        if (concurrencyLimiter != null) {
+            concurrencyLimiter.onFinish(latencyNanos, success);
+        }
+        if (success) {
+            updateEwma(latencyNanos);
+            onSuccess();
+        } else {
+            countFailure();
+        }
+    }
+
+    /**
+     * a request started by {@link #onStart()} is abandoned, neither success
+     * nor failure
+     */
+    public void onCancel() {
+        outstanding.decrementAndGet();
+        if (circuitBreaker != null) {
+            circuitBreaker.onCancel();
+        }
+        release();
+    }
+
+    /**
+     * a call succeeded, clears consecutive failures, connections opened
+     * don't count since a backend may accept and fail every call
+     */
+    public void onSuccess() {
+        if (consecutiveFailures.get() != 0) {
+            consecutiveFailures.set(0);
+        }
+        ejected = false;
+    }
+
+    /**
+     * a connection can't be opened
+     */
+    public void onFailure() {
+        if (circuitBreaker != null) {
+            circuitBreaker.onConnectFailure();
+        }
+        countFailure();
+    }
+
+    private void countFailure() {
+        int failures = consecutiveFailures.incrementAndGet();
+        if (ejectionFailures > 0 && failures >= ejectionFailures) {
+            // also a failed probe
+            ejectedUntil = System.nanoTime() + ejectionNanos;
+            ejected = true;
+        }
+    }
+
+    private void updateEwma(long latencyNanos) {
+        // racy but good enough, a lost sample makes no difference
+        long now = System.nanoTime();
+        double ewma = ewmaNanos;
+        if (ewma == 0) {
+            ewmaNanos = latencyNanos;
+        } else {
+            double weight = Math.exp(-(now - lastSampleTime) / DECAY_NANOS);
+            ewmaNanos = ewma * weight + latencyNanos * (1 - weight);
+        }
+        lastSampleTime = now;
+    }
+
+    @Override
+    public String toString() {
+        return "Backend [serviceInfo=" + serviceInfo + ", outstanding=" + outstanding
+                + ", consecutiveFailures=" + consecutiveFailures + ", ejected=" + isEjected()
+                + ", circuitBreaker=" + circuitBreaker + ", concurrencyLimiter="
+                + concurrencyLimiter + "]";
+    }
+}
@@ -0,0 +1,261 @@
+package com.wealoha.thrift.balance;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Circuit breaker of one backend.<br/>
+ * 
+ * CLOSED: calls go through, outcomes of the last windowSize calls are
+ * kept, when failure rate or slow call rate reaches the threshold(after
+ * minimumCalls) it opens.<br/>
+ * OPEN: no call or new connection goes to the backend for openMillis, then
+ * it's half-open.<br/>
+ * HALF_OPEN: up to halfOpenCalls probes at a time, when that many probes
+ * succeed it closes, any failure opens it again.<br/>
+ * 
+ * Lock free: the window is a ring of atomic slots and each phase is an
+ * immutable object switched by CAS, so no call blocks or pins a virtual
+ * thread.
+ * 
+ * @author javamonk
+ * @createTime 2026年10月19日 上午2:04:33
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * a state with its own probe counters, replaced as a whole on each
+     * transition
+     */
+    private static final class Phase {
+
+        private final State state;
+
+        /** nano time the open state ends */
+        private final long openUntil;
+
+        private final AtomicInteger probes = new AtomicInteger();
+
+        private final AtomicInteger probeSuccesses = new AtomicInteger();
+
+        private Phase(State state, long openUntil) {
+            this.state = state;
+            this.openUntil = openUntil;
+        }
+    }
+
+    private static final IntUnaryOperator DECREMENT_TO_ZERO = v -> Math.max(0, v - 1);
+
+    private static final int EMPTY = 0;
+
+    private static final int SUCCESS = 1;
+
+    private static final int FAILURE = 2;
+
+    private static final int SLOW = 3;
+
+    private final CircuitBreakerPolicy policy;
+
+    private final long slowCallNanos;
+
+    private final long openNanos;
+
+    /** outcomes of last calls, ring buffer */
+    private final AtomicIntegerArray window;
+
+    private final AtomicLong windowIndex = new AtomicLong();
+
+    /** counts of outcomes in window, changed by each swap of a slot */
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private final AtomicInteger failures = new AtomicInteger();
+
+    private final AtomicInteger slowCalls = new AtomicInteger();
+
+    private final AtomicReference<Phase> phase = new AtomicReference<>(new Phase(State.CLOSED,
+            0));
+
+    public CircuitBreaker(CircuitBreakerPolicy policy) {
+        if (policy == null) {
+            throw new IllegalArgumentException("policy is empty!");
+        }
+        this.policy = policy;
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(policy.getSlowCallMillis());
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(policy.getOpenMillis());
+        this.window = new AtomicIntegerArray(policy.getWindowSize());
+    }
+
+    public State getState() {
+        return phase().state;
+    }
+
+    private Phase phase() {
+        Phase current = phase.get();
+        if (current.state == State.OPEN && System.nanoTime() - current.openUntil >= 0) {
+            Phase halfOpen = new Phase(State.HALF_OPEN, 0);
+            return phase.compareAndSet(current, halfOpen) ? halfOpen : phase.get();
+        }
+        return current;
+    }
+
+    /**
+     * get if a call can go to the backend now
+     * 
+     * @return
+     */
+    public boolean isCallPermitted() {
+        Phase current = phase();
+        switch (current.state) {
+            case CLOSED:
+                return true;
+            case HALF_OPEN:
+                return current.probes.get() < policy.getHalfOpenCalls();
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * a call starts
+     */
+    public void onStart() {
+        Phase current = phase();
+        if (current.state == State.HALF_OPEN) {
+            current.probes.incrementAndGet();
+        }
+    }
+
+    /**
+     * a call started by {@link #onStart()} ends
+     * 
+     * @param latencyNanos
+     * @param success false only if the call failed by transport, timeout or
+     *        server, see {@link com.wealoha.thrift.ThriftUtil#isServiceFailure(Throwable)}
+     */
+    public void onFinish(long latencyNanos, boolean success) {
+        int outcome = !success ? FAILURE : slowCallNanos > 0 && latencyNanos >= slowCallNanos
+                ? SLOW : SUCCESS;
+        Phase current = phase();
+        if (current.state == State.HALF_OPEN) {
+            if (outcome == SUCCESS) {
+                current.probes.updateAndGet(DECREMENT_TO_ZERO);
+                if (current.probeSuccesses.incrementAndGet() >= policy.getHalfOpenCalls()) {
+                    close(current);
+                }
+            } else {
+                open(current);
+            }
+        } else if (current.state == State.CLOSED) {
+            record(current, outcome);
+        }
+    }
+
+    /**
+     * a call started by {@link #onStart()} is abandoned
+     */
+    public void onCancel() {
+        Phase current = phase.get();
+        if (current.state == State.HALF_OPEN) {
+            current.probes.updateAndGet(DECREMENT_TO_ZERO);
+        }
+    }
+
+    /**
+     * a connection can't be opened, counted as a failed call
+     */
+    public void onConnectFailure() {
+        Phase current = phase.get();
+        if (current.state == State.HALF_OPEN) {
+            open(current);
+        } else if (current.state == State.CLOSED) {
+            record(current, FAILURE);
+        }
+    }
+
+    private void record(Phase current, int outcome) {
+        int index = (int) (windowIndex.getAndIncrement() % window.length());
+        swap(index, outcome);
+
+        int total = count(calls);
+        if (total < policy.getMinimumCalls()) {
+            return;
+        }
+        int failed = count(failures);
+        int slow = count(slowCalls);
+        if (failed > 0 && failed * 100.0 >= policy.getFailureRatePercent() * total) {
+            open(current);
+        } else if (slow > 0 && slow * 100.0 >= policy.getSlowCallRatePercent() * total) {
+            open(current);
+        }
+    }
+
+    /**
+     * put outcome into a slot and count the difference, counts stay the sum
+     * of slots however swaps interleave. Racing swaps of one slot may leave
+     * a count one off for a moment, it never touches the other counts.
+     */
+    private void swap(int index, int outcome) {
+        int old = window.getAndSet(index, outcome);
+        if (old == outcome) {
+            return;
+        }
+        if (old == EMPTY) {
+            calls.incrementAndGet();
+        }
+        AtomicInteger added = counter(outcome);
+        if (added != null) {
+            added.incrementAndGet();
+        }
+        AtomicInteger removed = counter(old);
+        if (removed != null) {
+            removed.decrementAndGet();
+        }
+        if (outcome == EMPTY) {
+            calls.decrementAndGet();
+        }
+    }
+
+    private AtomicInteger counter(int outcome) {
+        switch (outcome) {
+            case FAILURE:
+                return failures;
+            case SLOW:
+                return slowCalls;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * read a count, below zero for a moment is read as zero
+     */
+    private int count(AtomicInteger counter) {
+        return Math.max(0, Math.min(window.length(), counter.get()));
+    }
+
+    private void open(Phase current) {
+        phase.compareAndSet(current, new Phase(State.OPEN, System.nanoTime() + openNanos));
+    }
+
+    private void close(Phase current) {
+        if (phase.compareAndSet(current, new Phase(State.CLOSED, 0))) {
+            for (int i = 0; i < window.length(); i++) {
+                swap(i, EMPTY);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CircuitBreaker [state=" + phase.get().state + ", calls=" + count(calls)
+                + ", failures=" + count(failures) + ", slowCalls=" + count(slowCalls) + "]";
+    }
+}
@@ -0,0 +1,159 @@
+package com.wealoha.thrift.balance;
+
+/**
+ * Settings of {@link CircuitBreaker}, shared by breakers of all backends.
+ * 
+ * @author javamonk
+ * @createTime 2026年10月19日 上午1:58:16
+ */
+public class CircuitBreakerPolicy {
+
+    private int windowSize = 20;
+
+    private int minimumCalls = 10;
+
+    private double failureRatePercent = 50;
+
+    private long slowCallMillis = 0;
+
+    private double slowCallRatePercent = 50;
+
+    private long openMillis = 10000;
+
+    private int halfOpenCalls = 3;
+
+    /**
+     * get calls in sliding window(default 20)
+     * 
+     * @return
+     */
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    /**
+     * set calls in sliding window, the last windowSize calls decide
+     * failure rate and slow call rate
+     * 
+     * @param windowSize
+     */
+    public void setWindowSize(int windowSize) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("windowSize must be positive!");
+        }
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * get calls needed in window before the breaker can open(default 10)
+     * 
+     * @return
+     */
+    public int getMinimumCalls() {
+        return minimumCalls;
+    }
+
+    /**
+     * set calls needed in window before the breaker can open
+     * 
+     * @param minimumCalls
+     */
+    public void setMinimumCalls(int minimumCalls) {
+        this.minimumCalls = minimumCalls;
+    }
+
+    /**
+     * get failure rate(0-100) opens the breaker(default 50)
+     * 
+     * @return
+     */
+    public double getFailureRatePercent() {
+        return failureRatePercent;
+    }
+
+    /**
+     * set failure rate(0-100) opens the breaker
+     * 
+     * @param failureRatePercent
+     */
+    public void setFailureRatePercent(double failureRatePercent) {
+        this.failureRatePercent = failureRatePercent;
+    }
+
+    /**
+     * get latency of a slow call(default 0, means slow calls are not
+     * counted)
+     * 
+     * @return
+     */
+    public long getSlowCallMillis() {
+        return slowCallMillis;
+    }
+
+    /**
+     * set latency of a slow call
+     * 
+     * @param slowCallMillis
+     */
+    public void setSlowCallMillis(long slowCallMillis) {
+        this.slowCallMillis = slowCallMillis;
+    }
+
+    /**
+     * get slow call rate(0-100) opens the breaker(default 50)
+     * 
+     * @return
+     */
+    public double getSlowCallRatePercent() {
+        return slowCallRatePercent;
+    }
+
+    /**
+     * set slow call rate(0-100) opens the breaker
+     * 
+     * @param slowCallRatePercent
+     */
+    public void setSlowCallRatePercent(double slowCallRatePercent) {
+        this.slowCallRatePercent = slowCallRatePercent;
+    }
+
+    /**
+     * get how long the breaker stays open(default 10000)
+     * 
+     * @return
+     */
+    public long getOpenMillis() {
+        return openMillis;
+    }
+
+    /**
+     * set how long the breaker stays open before half-open
+     * 
+     * @param openMillis
+     */
+    public void setOpenMillis(long openMillis) {
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * get probe calls in half-open state(default 3)
+     * 
+     * @return
+     */
+    public int getHalfOpenCalls() {
+        return halfOpenCalls;
+    }
+
+    /**
+     * set probe calls in half-open state, all of them succeed closes the
+     * breaker, any failure opens it again
+     * 
+     * @param halfOpenCalls
+     */
+    public void setHalfOpenCalls(int halfOpenCalls) {
+        if (halfOpenCalls <= 0) {
+            throw new IllegalArgumentException("halfOpenCalls must be positive!");
+        }
+        this.halfOpenCalls = halfOpenCalls;
+    }
+}
@@ -0,0 +1,30 @@
+package com.wealoha.thrift.balance;
+
+/**
+ * Algorithm adjusting how many calls can be in flight to one backend from
+ * round trip times. Each backend has its own instance, see
+ * {@link ConcurrencyLimiter}.
+ *
+ * @author javamonk
+ * @createTime 2026年10月19日 上午5:21:07
+ */
+public interface ConcurrencyLimit {
+
+    /**
+     * get calls allowed in flight now
+     *
+     * @return at least 1
+     */
+    int getLimit();
+
+    /**
+     * a call finished
+     *
+     * @param rttNanos round trip time
+     * @param inflight calls in flight when it started to finish, including
+     *        itself
+     * @param dropped failed by transport or server or timed out, a sign of
+     *        overload
+     */
+    void onSample(long rttNanos, int inflight, boolean dropped);
+}
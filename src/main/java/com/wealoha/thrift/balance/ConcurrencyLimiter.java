@@ -0,0 +1,82 @@
+package com.wealoha.thrift.balance;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Permits of calls in flight to one backend, the number is adjusted by a
+ * {@link ConcurrencyLimit}
+ *
+ * @author javamonk
+ * @createTime 2026年10月19日 上午5:32:02
+ */
+public class ConcurrencyLimiter {
+
+    private final ConcurrencyLimit limit;
+
+    private final AtomicInteger inflight = new AtomicInteger();
+
+    public ConcurrencyLimiter(ConcurrencyLimit limit) {
+        if (limit == null) {
+            throw new IllegalArgumentException("limit is empty!");
+        }
+        this.limit = limit;
+    }
+
+    /**
+     * take a permit if calls in flight are under limit
+     *
+     * @return
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inflight.get();
+            if (current >= limit.getLimit()) {
+                return false;
+            }
+            if (inflight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * get if no permit is left
+     *
+     * @return
+     */
+    public boolean isLimited() {
+        return inflight.get() >= limit.getLimit();
+    }
+
+    /**
+     * a call with a permit finished, give it back and adjust limit
+     *
+     * @param rttNanos
+     * @param success false only if failed by transport, timeout or server,
+     *        exceptions declared in IDL don't shrink the limit
+     */
+    public void onFinish(long rttNanos, boolean success) {
+        int current = inflight.getAndDecrement();
+        limit.onSample(rttNanos, current, !success);
+    }
+
+    /**
+     * give back a permit without adjusting limit, e.g. no call is made
+     */
+    public void release() {
+        inflight.decrementAndGet();
+    }
+
+    public int getInflight() {
+        return inflight.get();
+    }
+
+    public int getLimit() {
+        return limit.getLimit();
+    }
+
+    @Override
+    public String toString() {
+        return "ConcurrencyLimiter [inflight=" + inflight + ", limit=" + limit + "]";
+    }
+}
@@ -0,0 +1,18 @@
+package com.wealoha.thrift.balance;
+
+/**
+ * Power of two choices weighted by latency: cost is decayed average
+ * latency multiplied by requests in flight(plus one), slow backends get
+ * less connections. Backends without samples cost nothing, so new ones are
+ * tried first.
+ * 
+ * @author javamonk
+ * @createTime 2026年10月18日 下午10:22:18
+ */
+public class EwmaLoadBalancer extends PowerOfTwoChoicesLoadBalancer {
+
+    @Override
+    protected double cost(Backend backend) {
+        return backend.getEwmaNanos() * (backend.getOutstanding() + 1);
+    }
+}
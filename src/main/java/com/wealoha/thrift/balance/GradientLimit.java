@@ -0,0 +1,71 @@
+package com.wealoha.thrift.balance;
+
+/**
+ * Scale the limit by the gradient of long term average rtt over current
+ * rtt: limit = limit * clamp(tolerance * longRtt / rtt, 0.5, 1) +
+ * sqrt(limit), smoothed. Rtt over the long term average means queueing, so
+ * the limit shrinks; otherwise sqrt(limit) headroom lets it grow. If rtt
+ * stays low for long the long term average is pulled down so it keeps up
+ * with a faster backend.
+ *
+ * @author javamonk
+ * @createTime 2026年10月19日 上午5:29:33
+ */
+public class GradientLimit extends AbstractLimit {
+
+    private static final double SMOOTHING = 0.2;
+
+    private final double tolerance;
+
+    private final int window;
+
+    private double longRttNanos;
+
+    /**
+     * limit 20 in [1, 200], tolerance 1.5, average over 600 samples
+     */
+    public GradientLimit() {
+        this(20, 1, 200, 1.5, 600);
+    }
+
+    /**
+     * @param initialLimit
+     * @param minLimit
+     * @param maxLimit
+     * @param tolerance rtt up to tolerance times of average is not queueing
+     * @param window samples of long term average
+     */
+    public GradientLimit(int initialLimit, int minLimit, int maxLimit, double tolerance,
+            int window) {
+        super(initialLimit, minLimit, maxLimit);
+        if (tolerance < 1) {
+            throw new IllegalArgumentException("tolerance must not be less than 1!");
+        }
+        if (window <= 0) {
+            throw new IllegalArgumentException("window must be positive!");
+        }
+        this.tolerance = tolerance;
+        this.window = window;
+    }
+
+    @Override
+    protected double update(double limit, long rttNanos, int inflight, boolean dropped) {
+        if (longRttNanos == 0) {
+            longRttNanos = rttNanos;
+        } else {
+            longRttNanos += (rttNanos - longRttNanos) / window;
+        }
+        if (longRttNanos > rttNanos * 2) {
+            // recover faster after a spike
+            longRttNanos *= 0.95;
+        }
+        if (!dropped && inflight * 2 < limit) {
+            return limit;
+        }
+
+        double gradient = dropped ? 0.5 : Math.max(0.5, Math.min(1, tolerance * longRttNanos
+                / Math.max(1, rttNanos)));
+        double next = limit * gradient + Math.sqrt(limit);
+        return limit * (1 - SMOOTHING) + next * SMOOTHING;
+    }
+}
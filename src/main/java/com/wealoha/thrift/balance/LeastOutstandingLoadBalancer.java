@@ -0,0 +1,28 @@
+package com.wealoha.thrift.balance;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The backend with least requests in flight, scans all backends. Ties are
+ * broken by a random start so idle backends share connections.
+ * 
+ * @author javamonk
+ * @createTime 2026年10月18日 下午10:17:10
+ */
+public class LeastOutstandingLoadBalancer implements LoadBalancer {
+
+    @Override
+    public Backend select(List<Backend> backends) {
+        int size = backends.size();
+        int start = ThreadLocalRandom.current().nextInt(size);
+        Backend best = null;
+        for (int i = 0; i < size; i++) {
+            Backend backend = backends.get((start + i) % size);
+            if (best == null || backend.getOutstanding() < best.getOutstanding()) {
+                best = backend;
+            }
+        }
+        return best;
+    }
+}
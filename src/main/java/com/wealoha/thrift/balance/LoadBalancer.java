@@ -0,0 +1,35 @@
+package com.wealoha.thrift.balance;
+
+import java.util.List;
+
+/**
+ * Choose the backend a new connection goes to. Implementations are shared
+ * by threads and must be thread-safe. Lists passed are never changed,
+ * {@link com.wealoha.thrift.ThriftClientPool} passes lists returned by
+ * {@link #prepare(List)} while services don't change and draws again if
+ * the chosen one is not usable, filtered lists are passed only when draws
+ * keep failing.
+ * 
+ * @author javamonk
+ * @createTime 2026年10月18日 下午10:12:40
+ */
+public interface LoadBalancer {
+
+    /**
+     * @param backends candidate backends, not empty
+     * @return one of backends
+     */
+    Backend select(List<Backend> backends);
+
+    /**
+     * called once for each list to be passed many times(backends of a zone
+     * in a services snapshot), e.g. to build a table for it
+     *
+     * @param backends
+     * @return list of the same backends to pass to {@link #select(List)}
+     *         instead
+     */
+    default List<Backend> prepare(List<Backend> backends) {
+        return backends;
+    }
+}
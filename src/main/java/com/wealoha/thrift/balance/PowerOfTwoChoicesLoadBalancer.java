@@ -0,0 +1,42 @@
+package com.wealoha.thrift.balance;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Pick two backends at random and take the better one, nearly as good as
+ * scanning all of them at O(1) cost. Compares requests in flight, subclass
+ * overrides {@link #cost(Backend)} for other measures.
+ * 
+ * @author javamonk
+ * @createTime 2026年10月18日 下午10:19:45
+ */
+public class PowerOfTwoChoicesLoadBalancer implements LoadBalancer {
+
+    @Override
+    public Backend select(List<Backend> backends) {
+        int size = backends.size();
+        if (size == 1) {
+            return backends.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+        Backend a = backends.get(first);
+        Backend b = backends.get(second);
+        return cost(b) < cost(a) ? b : a;
+    }
+
+    /**
+     * lower is better
+     * 
+     * @param backend
+     * @return
+     */
+    protected double cost(Backend backend) {
+        return backend.getOutstanding();
+    }
+}
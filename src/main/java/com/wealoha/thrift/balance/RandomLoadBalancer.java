@@ -0,0 +1,18 @@
+package com.wealoha.thrift.balance;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Uniformly random
+ * 
+ * @author javamonk
+ * @createTime 2026年10月18日 下午10:14:02
+ */
+public class RandomLoadBalancer implements LoadBalancer {
+
+    @Override
+    public Backend select(List<Backend> backends) {
+        return backends.get(ThreadLocalRandom.current().nextInt(backends.size()));
+    }
+}
@@ -0,0 +1,20 @@
+package com.wealoha.thrift.balance;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One by one
+ * 
+ * @author javamonk
+ * @createTime 2026年10月18日 下午10:15:36
+ */
+public class RoundRobinLoadBalancer implements LoadBalancer {
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    @Override
+    public Backend select(List<Backend> backends) {
+        return backends.get(Math.floorMod(next.getAndIncrement(), backends.size()));
+    }
+}
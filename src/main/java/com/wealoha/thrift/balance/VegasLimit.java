@@ -0,0 +1,61 @@
+package com.wealoha.thrift.balance;
+
+/**
+ * Estimate queued calls from how much rtt exceeds the lowest one seen(as
+ * TCP Vegas): queue = limit * (1 - minRtt / rtt). Grow while the queue is
+ * under alpha, shrink once it's over beta, both scaled by log10(limit). The
+ * lowest rtt is measured again every probeSamples in case the backend
+ * itself got slower.
+ *
+ * @author javamonk
+ * @createTime 2026年10月19日 上午5:26:45
+ */
+public class VegasLimit extends AbstractLimit {
+
+    private final int probeSamples;
+
+    private long minRttNanos;
+
+    private int samples;
+
+    /**
+     * limit 20 in [1, 200], probe every 1000 samples
+     */
+    public VegasLimit() {
+        this(20, 1, 200, 1000);
+    }
+
+    public VegasLimit(int initialLimit, int minLimit, int maxLimit, int probeSamples) {
+        super(initialLimit, minLimit, maxLimit);
+        if (probeSamples <= 0) {
+            throw new IllegalArgumentException("probeSamples must be positive!");
+        }
+        this.probeSamples = probeSamples;
+    }
+
+    @Override
+    protected double update(double limit, long rttNanos, int inflight, boolean dropped) {
+        if (++samples >= probeSamples) {
+            samples = 0;
+            minRttNanos = 0;
+        }
+        if (minRttNanos == 0 || rttNanos < minRttNanos) {
+            minRttNanos = rttNanos;
+        }
+        double step = Math.max(1, Math.log10(limit));
+        if (dropped) {
+            return limit - step;
+        }
+        if (inflight * 2 < limit) {
+            return limit;
+        }
+
+        double queue = limit * (1 - (double) minRttNanos / Math.max(1, rttNanos));
+        if (queue < 3 * step) {
+            return limit + step;
+        } else if (queue > 6 * step) {
+            return limit - step;
+        }
+        return limit;
+    }
+}
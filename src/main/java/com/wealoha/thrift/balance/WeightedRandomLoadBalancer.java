@@ -0,0 +1,171 @@
+package com.wealoha.thrift.balance;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.wealoha.thrift.ServiceInfo;
+
+/**
+ * Random by {@link ServiceInfo#getWeight()}, sampled in O(1) by an alias
+ * table(Vose). Each list given to {@link #prepare(List)}(local and remote
+ * backends of a services snapshot) gets its own table, rebuilt every 100ms
+ * while any of its backends is in slow start, see
+ * {@link Backend#getWeight(long)}. Other lists, e.g. filtered ones after a
+ * backend is ejected, are sampled in O(n).
+ *
+ * @author javamonk
+ * @createTime 2026年10月19日 上午4:55:42
+ */
+public class WeightedRandomLoadBalancer implements LoadBalancer {
+
+    private static final long REBUILD_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final long slowStartMillis;
+
+    public WeightedRandomLoadBalancer() {
+        this(0);
+    }
+
+    /**
+     * @param slowStartMillis window new backends ramp up in, 0 means none
+     */
+    public WeightedRandomLoadBalancer(long slowStartMillis) {
+        this.slowStartMillis = slowStartMillis;
+    }
+
+    @Override
+    public List<Backend> prepare(List<Backend> backends) {
+        if (backends.isEmpty()) {
+            return backends;
+        }
+        return new TabledList(this, backends);
+    }
+
+    @Override
+    public Backend select(List<Backend> backends) {
+        if (!(backends instanceof TabledList) || ((TabledList) backends).owner != this) {
+            return sample(backends);
+        }
+        TabledList list = (TabledList) backends;
+        AliasTable current = list.table;
+        long now = System.nanoTime();
+        if (current.slowStart && now - current.buildTime > REBUILD_NANOS) {
+            // racy but any table of the same backends is good
+            current = new AliasTable(list.backends, slowStartMillis, now);
+            list.table = current;
+        }
+        return current.sample();
+    }
+
+    /**
+     * sample by weight in O(n)
+     */
+    private Backend sample(List<Backend> backends) {
+        int n = backends.size();
+        double total = 0;
+        for (int i = 0; i < n; i++) {
+            total += backends.get(i).getWeight(slowStartMillis);
+        }
+        double point = ThreadLocalRandom.current().nextDouble() * total;
+        for (int i = 0; i < n - 1; i++) {
+            point -= backends.get(i).getWeight(slowStartMillis);
+            if (point < 0) {
+                return backends.get(i);
+            }
+        }
+        return backends.get(n - 1);
+    }
+
+    /**
+     * a prepared list with its alias table
+     */
+    private static final class TabledList extends AbstractList<Backend> implements
+            RandomAccess {
+
+        private final WeightedRandomLoadBalancer owner;
+
+        private final List<Backend> backends;
+
+        private volatile AliasTable table;
+
+        TabledList(WeightedRandomLoadBalancer owner, List<Backend> backends) {
+            this.owner = owner;
+            this.backends = backends;
+            this.table = new AliasTable(backends, owner.slowStartMillis, System.nanoTime());
+        }
+
+        @Override
+        public Backend get(int index) {
+            return backends.get(index);
+        }
+
+        @Override
+        public int size() {
+            return backends.size();
+        }
+    }
+
+    private static class AliasTable {
+
+        private final Backend[] backends;
+
+        private final double[] probability;
+
+        private final int[] alias;
+
+        private final boolean slowStart;
+
+        private final long buildTime;
+
+        AliasTable(List<Backend> backendList, long slowStartMillis, long buildTime) {
+            int n = backendList.size();
+            this.backends = backendList.toArray(new Backend[n]);
+            this.probability = new double[n];
+            this.alias = new int[n];
+            this.buildTime = buildTime;
+
+            double[] scaled = new double[n];
+            double total = 0;
+            boolean ramping = false;
+            for (int i = 0; i < n; i++) {
+                scaled[i] = backends[i].getWeight(slowStartMillis);
+                total += scaled[i];
+                ramping |= backends[i].isSlowStart(slowStartMillis);
+            }
+            this.slowStart = ramping;
+
+            Deque<Integer> small = new ArrayDeque<>();
+            Deque<Integer> large = new ArrayDeque<>();
+            for (int i = 0; i < n; i++) {
+                scaled[i] = scaled[i] * n / total;
+                (scaled[i] < 1 ? small : large).push(i);
+            }
+            while (!small.isEmpty() && !large.isEmpty()) {
+                int less = small.pop();
+                int more = large.pop();
+                probability[less] = scaled[less];
+                alias[less] = more;
+                scaled[more] = scaled[more] + scaled[less] - 1;
+                (scaled[more] < 1 ? small : large).push(more);
+            }
+            // left ones are 1 except rounding error
+            while (!large.isEmpty()) {
+                probability[large.pop()] = 1;
+            }
+            while (!small.isEmpty()) {
+                probability[small.pop()] = 1;
+            }
+        }
+
+        Backend sample() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int i = random.nextInt(backends.length);
+            return random.nextDouble() < probability[i] ? backends[i] : backends[alias[i]];
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.wealoha.thrift.balance;
+
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.wealoha.thrift.ServiceInfo;
+
+/**
+ * Smooth weighted round robin(as nginx), each backend gets its share of
+ * {@link ServiceInfo#getWeight()} evenly spread, e.g. weights 5,1,1 give
+ * a,a,b,a,c,a,a instead of a,a,a,a,a,b,c. New backends ramp up in
+ * slowStartMillis, see {@link Backend#getWeight(long)}. O(n) per select
+ * under a {@link ReentrantLock}, no monitor is taken.
+ *
+ * @author javamonk
+ * @createTime 2026年10月19日 上午4:52:16
+ */
+public class WeightedRoundRobinLoadBalancer implements LoadBalancer {
+
+    private final long slowStartMillis;
+
+    /** current weight of each backend, removed backends are collected */
+    private final Map<Backend, Double> currentWeights = new WeakHashMap<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public WeightedRoundRobinLoadBalancer() {
+        this(0);
+    }
+
+    /**
+     * @param slowStartMillis window new backends ramp up in, 0 means none
+     */
+    public WeightedRoundRobinLoadBalancer(long slowStartMillis) {
+        this.slowStartMillis = slowStartMillis;
+    }
+
+    @Override
+    public Backend select(List<Backend> backends) {
+        lock.lock();
+        try {
+            Backend selected = null;
+            double selectedWeight = 0;
+            double total = 0;
+            for (Backend backend : backends) {
+                double weight = backend.getWeight(slowStartMillis);
+                double current = currentWeights.getOrDefault(backend, 0d) + weight;
+                currentWeights.put(backend, current);
+                total += weight;
+                if (selected == null || current > selectedWeight) {
+                    selected = backend;
+                    selectedWeight = current;
+                }
+            }
+            currentWeights.put(selected, selectedWeight - total);
+            return selected;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
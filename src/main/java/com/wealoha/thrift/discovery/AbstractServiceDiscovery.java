@@ -0,0 +1,99 @@
+package com.wealoha.thrift.discovery;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.wealoha.thrift.ServiceInfo;
+
+/**
+ * Keep current services and push the difference of each
+ * {@link #update(Collection)} to listeners, updates without difference(
+ * including weight and metadata) are dropped
+ *
+ * @author javamonk
+ * @createTime 2026年10月19日 上午4:24:03
+ */
+public abstract class AbstractServiceDiscovery implements ServiceDiscovery {
+
+    private static Logger logger = LoggerFactory.getLogger(AbstractServiceDiscovery.class);
+
+    private final List<ServiceListener> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile List<ServiceInfo> services = Collections.emptyList();
+
+    @Override
+    public List<ServiceInfo> getServices() {
+        return services;
+    }
+
+    @Override
+    public synchronized void subscribe(ServiceListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener is empty!");
+        }
+        listeners.add(listener);
+        if (!services.isEmpty()) {
+            fire(listener, new ServiceChange(services, new LinkedHashSet<>(services),
+                    Collections.emptySet()));
+        }
+    }
+
+    @Override
+    public void unsubscribe(ServiceListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * replace current services, duplicates are dropped
+     *
+     * @param newServices
+     * @return false if nothing changed
+     */
+    protected synchronized boolean update(Collection<ServiceInfo> newServices) {
+        Set<ServiceInfo> next = new LinkedHashSet<>(newServices);
+        Set<ServiceInfo> added = new LinkedHashSet<>(next);
+        added.removeAll(services);
+        Set<ServiceInfo> removed = new LinkedHashSet<>(services);
+        removed.removeAll(next);
+        Map<ServiceInfo, ServiceInfo> previous = new HashMap<>();
+        for (ServiceInfo serviceInfo : services) {
+            previous.put(serviceInfo, serviceInfo);
+        }
+        Set<ServiceInfo> updated = new LinkedHashSet<>();
+        for (ServiceInfo serviceInfo : next) {
+            ServiceInfo old = previous.get(serviceInfo);
+            if (old != null && !old.metadataEquals(serviceInfo)) {
+                updated.add(serviceInfo);
+            }
+        }
+        if (added.isEmpty() && removed.isEmpty() && updated.isEmpty()) {
+            return false;
+        }
+
+        services = Collections.unmodifiableList(new ArrayList<>(next));
+        ServiceChange change = new ServiceChange(services, added, removed, updated);
+        logger.debug("services changed: {}", change);
+        for (ServiceListener listener : listeners) {
+            fire(listener, change);
+        }
+        return true;
+    }
+
+    private void fire(ServiceListener listener, ServiceChange change) {
+        try {
+            listener.onChange(change);
+        } catch (RuntimeException e) {
+            logger.warn("listener fail: {}", listener, e);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.wealoha.thrift.discovery;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.wealoha.thrift.ServiceInfo;
+
+/**
+ * Coalesce bursts of changes into one call of target, e.g.
+ * <code>pool::setServices</code>. Target is called with the latest services
+ * after no change for quietMillis, or maxDelayMillis after the first change
+ * of a burst so a long rolling restart still gets applied. Calls are on one
+ * background thread and never overlap. An empty list is not applied since
+ * pools need at least one service.
+ *
+ * @author javamonk
+ * @createTime 2026年10月19日 上午4:34:52
+ */
+public class DebouncedServiceListener implements ServiceListener, Closeable {
+
+    private static Logger logger = LoggerFactory.getLogger(DebouncedServiceListener.class);
+
+    private static final ScheduledExecutorService debounceExecutor = Executors
+            .newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "thrift-discovery-debounce");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private final Consumer<List<ServiceInfo>> target;
+
+    private final long quietMillis;
+
+    private final long maxDelayMillis;
+
+    private List<ServiceInfo> pending;
+
+    private long firstChangeNanos;
+
+    private ScheduledFuture<?> task;
+
+    private boolean closed;
+
+    /**
+     * maxDelayMillis is 10 times of quietMillis
+     *
+     * @param target
+     * @param quietMillis
+     */
+    public DebouncedServiceListener(Consumer<List<ServiceInfo>> target, long quietMillis) {
+        this(target, quietMillis, quietMillis * 10);
+    }
+
+    public DebouncedServiceListener(Consumer<List<ServiceInfo>> target, long quietMillis,
+            long maxDelayMillis) {
+        if (target == null) {
+            throw new IllegalArgumentException("target is empty!");
+        }
+        if (quietMillis < 0 || maxDelayMillis < quietMillis) {
+            throw new IllegalArgumentException("invalid quietMillis or maxDelayMillis!");
+        }
+        this.target = target;
+        this.quietMillis = quietMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    @Override
+    public synchronized void onChange(ServiceChange change) {
+        if (closed) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (pending == null) {
+            firstChangeNanos = now;
+        } else {
+            task.cancel(false);
+        }
+        pending = change.getServices();
+        long waited = TimeUnit.NANOSECONDS.toMillis(now - firstChangeNanos);
+        long delay = Math.max(0, Math.min(quietMillis, maxDelayMillis - waited));
+        task = debounceExecutor.schedule(this::flush, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void flush() {
+        List<ServiceInfo> services;
+        synchronized (this) {
+            // a cancelled task may still run if it started before cancel
+            if (pending == null || closed) {
+                return;
+            }
+            services = pending;
+            pending = null;
+        }
+        if (services.isEmpty()) {
+            logger.warn("no service discovered, keep last services");
+            return;
+        }
+        try {
+            target.accept(services);
+        } catch (RuntimeException e) {
+            logger.warn("apply services fail: {}", services, e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (task != null) {
+            task.cancel(false);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.wealoha.thrift.discovery;
+
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.naming.Context;
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.InitialDirContext;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.wealoha.thrift.ServiceInfo;
+
+/**
+ * Services from DNS SRV records of a name, e.g.
+ * <code>_thrift._tcp.echo.example.com</code>. Records are cached for
+ * ttlMillis and resolved again in background, JNDI doesn't expose record
+ * TTL so it's given here. Only records of the lowest priority are used, the
+ * others are backups by SRV, record weight is
+ * {@link ServiceInfo#getWeight()}. If resolving fails or gets nothing the last
+ * services are kept.
+ *
+ * @author javamonk
+ * @createTime 2026年10月19日 上午4:31:05
+ */
+public class DnsSrvServiceDiscovery extends AbstractServiceDiscovery {
+
+    private static Logger logger = LoggerFactory.getLogger(DnsSrvServiceDiscovery.class);
+
+    private static final ScheduledExecutorService resolveExecutor = Executors
+            .newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "thrift-discovery-dns");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private final String name;
+
+    private final Callable<List<ServiceInfo>> resolver;
+
+    private final ScheduledFuture<?> task;
+
+    /**
+     * resolve the name at once and every ttlMillis
+     *
+     * @param name
+     * @param ttlMillis
+     */
+    public DnsSrvServiceDiscovery(String name, long ttlMillis) {
+        this(name, ttlMillis, () -> resolveSrv(name));
+    }
+
+    DnsSrvServiceDiscovery(String name, long ttlMillis, Callable<List<ServiceInfo>> resolver) {
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("name is empty!");
+        }
+        if (ttlMillis <= 0) {
+            throw new IllegalArgumentException("ttlMillis must be positive!");
+        }
+        this.name = name;
+        this.resolver = resolver;
+        refresh();
+        this.task = resolveExecutor.scheduleWithFixedDelay(this::refresh, ttlMillis, ttlMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    private void refresh() {
+        try {
+            List<ServiceInfo> services = resolver.call();
+            if (services.isEmpty()) {
+                logger.warn("no SRV record of {}, keep last services", name);
+            } else if (update(services)) {
+                logger.info("services resolved from {}: {}", name, services);
+            }
+        } catch (Exception e) {
+            logger.warn("resolve {} fail, keep last services", name, e);
+        }
+    }
+
+    static List<ServiceInfo> resolveSrv(String name) throws NamingException {
+        Hashtable<String, String> env = new Hashtable<>();
+        env.put(Context.INITIAL_CONTEXT_FACTORY, "com.sun.jndi.dns.DnsContextFactory");
+        DirContext context = new InitialDirContext(env);
+        try {
+            Attribute records = context.getAttributes(name, new String[] { "SRV" }).get("SRV");
+            List<ServiceInfo> services = new ArrayList<>();
+            if (records == null) {
+                return services;
+            }
+            int minPriority = Integer.MAX_VALUE;
+            NamingEnumeration<?> values = records.getAll();
+            while (values.hasMore()) {
+                // priority weight port target
+                String[] fields = values.next().toString().trim().split("\\s+");
+                int priority = Integer.parseInt(fields[0]);
+                if (priority > minPriority) {
+                    continue;
+                }
+                if (priority < minPriority) {
+                    minPriority = priority;
+                    services.clear();
+                }
+                String host = fields[3].endsWith(".") ? fields[3].substring(0,
+                        fields[3].length() - 1) : fields[3];
+                // weight 0 is the least in SRV
+                int weight = Math.max(1, Integer.parseInt(fields[1]));
+                services.add(new ServiceInfo(host, Integer.parseInt(fields[2]), weight));
+            }
+            return services;
+        } finally {
+            context.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        task.cancel(false);
+    }
+}
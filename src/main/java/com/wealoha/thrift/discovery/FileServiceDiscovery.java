@@ -0,0 +1,130 @@
+package com.wealoha.thrift.discovery;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.wealoha.thrift.ServiceInfo;
+
+/**
+ * Services in a text file, one <code>host:port [weight]</code> each line,
+ * lines start with <code>#</code> are comments. The directory is watched so the
+ * file is reloaded once changed, if it's deleted, empty or can't be read
+ * the last services are kept. Editors may write a file in several steps,
+ * replace it by rename or put a {@link DebouncedServiceListener} before
+ * pools.
+ *
+ * @author javamonk
+ * @createTime 2026年10月19日 上午4:27:40
+ */
+public class FileServiceDiscovery extends AbstractServiceDiscovery {
+
+    private static Logger logger = LoggerFactory.getLogger(FileServiceDiscovery.class);
+
+    private final Path file;
+
+    private final WatchService watchService;
+
+    /**
+     * load the file and start watching it
+     *
+     * @param file
+     * @throws IOException if the file can't be read or watched
+     */
+    public FileServiceDiscovery(Path file) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("file is empty!");
+        }
+        this.file = file.toAbsolutePath();
+        update(parse(Files.readAllLines(this.file, StandardCharsets.UTF_8)));
+
+        this.watchService = this.file.getFileSystem().newWatchService();
+        this.file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        Thread thread = new Thread(this::watch, "thrift-discovery-file-" + file.getFileName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    // context is null on overflow, reload anyway
+                    changed |= event.context() == null
+                            || file.getFileName().equals(event.context());
+                }
+                key.reset();
+                if (changed) {
+                    reload();
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            logger.debug("stop watching {}", file);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void reload() {
+        try {
+            List<ServiceInfo> services = parse(Files.readAllLines(file, StandardCharsets.UTF_8));
+            if (services.isEmpty()) {
+                // may be truncated for writing
+                logger.warn("no service in {}, keep last services", file);
+            } else if (update(services)) {
+                logger.info("services reloaded from {}: {}", file, services);
+            }
+        } catch (NoSuchFileException e) {
+            logger.warn("{} is deleted, keep last services", file);
+        } catch (IOException e) {
+            logger.warn("reload {} fail, keep last services", file, e);
+        }
+    }
+
+    static List<ServiceInfo> parse(List<String> lines) {
+        List<ServiceInfo> services = new ArrayList<>();
+        for (String line : lines) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\\s+");
+            int index = fields[0].lastIndexOf(':');
+            try {
+                if (index <= 0 || fields.length > 2) {
+                    throw new IllegalArgumentException("no port");
+                }
+                int weight = fields.length > 1 ? Integer.parseInt(fields[1]) : 1;
+                services.add(new ServiceInfo(fields[0].substring(0, index), Integer
+                        .parseInt(fields[0].substring(index + 1)), weight));
+            } catch (IllegalArgumentException e) {
+                logger.warn("skip invalid line: {}", line);
+            }
+        }
+        return services;
+    }
+
+    @Override
+    public void close() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            logger.warn("close watch service fail: {}", file, e);
+        }
+    }
+}
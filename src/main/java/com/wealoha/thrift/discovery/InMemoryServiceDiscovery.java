@@ -0,0 +1,51 @@
+package com.wealoha.thrift.discovery;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import com.wealoha.thrift.ServiceInfo;
+
+/**
+ * Registry in memory, services register and deregister themselves, mostly
+ * for tests
+ *
+ * @author javamonk
+ * @createTime 2026年10月19日 上午4:26:12
+ */
+public class InMemoryServiceDiscovery extends AbstractServiceDiscovery {
+
+    /**
+     * add a service, or update its weight and metadata if registered
+     *
+     * @param serviceInfo
+     */
+    public synchronized void register(ServiceInfo serviceInfo) {
+        if (serviceInfo == null) {
+            throw new IllegalArgumentException("serviceInfo is empty!");
+        }
+        List<ServiceInfo> services = new ArrayList<>(getServices());
+        services.remove(serviceInfo);
+        services.add(serviceInfo);
+        update(services);
+    }
+
+    public synchronized void deregister(ServiceInfo serviceInfo) {
+        List<ServiceInfo> services = new ArrayList<>(getServices());
+        services.remove(serviceInfo);
+        update(services);
+    }
+
+    /**
+     * replace all services
+     *
+     * @param services
+     */
+    public void setServices(Collection<ServiceInfo> services) {
+        update(services);
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,75 @@
+package com.wealoha.thrift.discovery;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import com.wealoha.thrift.ServiceInfo;
+
+/**
+ * A change of services, with the full list after it and the difference
+ *
+ * @author javamonk
+ * @createTime 2026年10月19日 上午4:22:48
+ */
+public class ServiceChange {
+
+    private final List<ServiceInfo> services;
+
+    private final Set<ServiceInfo> added;
+
+    private final Set<ServiceInfo> removed;
+
+    private final Set<ServiceInfo> updated;
+
+    public ServiceChange(List<ServiceInfo> services, Set<ServiceInfo> added,
+            Set<ServiceInfo> removed) {
+        this(services, added, removed, Collections.emptySet());
+    }
+
+    /**
+     * @param services
+     * @param added
+     * @param removed
+     * @param updated kept services with new weight or metadata
+     */
+    public ServiceChange(List<ServiceInfo> services, Set<ServiceInfo> added,
+            Set<ServiceInfo> removed, Set<ServiceInfo> updated) {
+        this.services = Collections.unmodifiableList(services);
+        this.added = Collections.unmodifiableSet(added);
+        this.removed = Collections.unmodifiableSet(removed);
+        this.updated = Collections.unmodifiableSet(updated);
+    }
+
+    /**
+     * get all services after this change
+     *
+     * @return
+     */
+    public List<ServiceInfo> getServices() {
+        return services;
+    }
+
+    public Set<ServiceInfo> getAdded() {
+        return added;
+    }
+
+    public Set<ServiceInfo> getRemoved() {
+        return removed;
+    }
+
+    /**
+     * get kept services with new weight or metadata
+     *
+     * @return
+     */
+    public Set<ServiceInfo> getUpdated() {
+        return updated;
+    }
+
+    @Override
+    public String toString() {
+        return "ServiceChange [services=" + services.size() + ", added=" + added + ", removed="
+                + removed + ", updated=" + updated + "]";
+    }
+}
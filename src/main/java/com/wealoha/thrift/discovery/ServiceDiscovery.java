@@ -0,0 +1,44 @@
+package com.wealoha.thrift.discovery;
+
+import java.io.Closeable;
+import java.util.List;
+
+import com.wealoha.thrift.ServiceInfo;
+
+/**
+ * Source of backend services which pushes changes to listeners, e.g. feed a
+ * pool through {@link DebouncedServiceListener}:
+ *
+ * <pre>
+ * ThriftClientPool&lt;Client&gt; pool = new ThriftClientPool&lt;&gt;(discovery.getServices(), ...);
+ * discovery.subscribe(new DebouncedServiceListener(pool::setServices, 500));
+ * </pre>
+ *
+ * @author javamonk
+ * @createTime 2026年10月19日 上午4:21:37
+ */
+public interface ServiceDiscovery extends Closeable {
+
+    /**
+     * get current services
+     *
+     * @return immutable, empty if none
+     */
+    List<ServiceInfo> getServices();
+
+    /**
+     * add a listener, it's called with current services at once if there's
+     * any, then on each change
+     *
+     * @param listener
+     */
+    void subscribe(ServiceListener listener);
+
+    void unsubscribe(ServiceListener listener);
+
+    /**
+     * stop watching the source, no more change is pushed
+     */
+    @Override
+    void close();
+}
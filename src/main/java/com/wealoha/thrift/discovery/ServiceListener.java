@@ -0,0 +1,14 @@
+package com.wealoha.thrift.discovery;
+
+/**
+ * Receive changes of a {@link ServiceDiscovery}, called on the thread which
+ * found the change so it should not block
+ *
+ * @author javamonk
+ * @createTime 2026年10月19日 上午4:22:10
+ */
+@FunctionalInterface
+public interface ServiceListener {
+
+    void onChange(ServiceChange change);
+}
@@ -0,0 +1,25 @@
+package com.wealoha.thrift.discovery;
+
+import java.util.List;
+
+import com.wealoha.thrift.ServiceInfo;
+
+/**
+ * Fixed list of services, never changes
+ *
+ * @author javamonk
+ * @createTime 2026年10月19日 上午4:25:31
+ */
+public class StaticServiceDiscovery extends AbstractServiceDiscovery {
+
+    public StaticServiceDiscovery(List<ServiceInfo> services) {
+        if (services == null || services.isEmpty()) {
+            throw new IllegalArgumentException("services is empty!");
+        }
+        update(services);
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,21 @@
+package com.wealoha.thrift.exception;
+
+/**
+ * All backends have as many calls in flight as their concurrency limit,
+ * the call is rejected without waiting
+ *
+ * @author javamonk
+ * @createTime 2026年10月19日 上午5:33:40
+ */
+public class ConcurrencyLimitExceededException extends ThriftException {
+
+    private static final long serialVersionUID = 7205419264318765301L;
+
+    public ConcurrencyLimitExceededException() {
+        super();
+    }
+
+    public ConcurrencyLimitExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,20 @@
+package com.wealoha.thrift.exception;
+
+/**
+ * Deadline of the call passed before a client is borrowed
+ * 
+ * @author javamonk
+ * @createTime 2026年10月19日 上午2:40:12
+ */
+public class DeadlineExceededException extends ThriftException {
+
+    private static final long serialVersionUID = -3318460724180431756L;
+
+    public DeadlineExceededException() {
+        super();
+    }
+
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+}
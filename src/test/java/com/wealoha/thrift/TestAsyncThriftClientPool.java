@@ -0,0 +1,157 @@
+package com.wealoha.thrift;
+
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.server.TThreadPoolServer;
+import org.apache.thrift.server.TThreadPoolServer.Args;
+import org.apache.thrift.transport.TFramedTransport;
+import org.apache.thrift.transport.TServerSocket;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.wealoha.thrift.service.TestThriftService.AsyncClient;
+import com.wealoha.thrift.service.TestThriftService.Iface;
+import com.wealoha.thrift.service.TestThriftService.Processor;
+import com.wealoha.thrift.service.TestThriftServiceHandler;
+
+/**
+ * 
+ * @author javamonk
+ * @createTime 2026年10月18日 下午4:52:10
+ */
+public class TestAsyncThriftClientPool {
+
+    private static TThreadPoolServer server;
+
+    private static int port;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        TServerSocket serverTransport = new TServerSocket(new ServerSocket(0));
+        port = serverTransport.getServerSocket().getLocalPort();
+
+        Args processor = new TThreadPoolServer.Args(serverTransport)
+                .inputTransportFactory(new TFramedTransport.Factory())
+                .outputTransportFactory(new TFramedTransport.Factory())
+                .processor(new Processor<>(new TestThriftServiceHandler()));
+        server = new TThreadPoolServer(processor);
+        new Thread(server::serve).start();
+        while (!server.isServing()) {
+            Thread.sleep(10);
+        }
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void testEcho() throws Exception {
+        PoolConfig config = new PoolConfig();
+        config.setTimeout(1000);
+        config.setMaxTotal(4);
+        config.setSelectorThreads(2);
+        AsyncThriftClientPool<AsyncClient> pool = new AsyncThriftClientPool<>(
+                Arrays.asList(new ServiceInfo("127.0.0.1", port)),
+                (manager, transport) -> new AsyncClient(new TBinaryProtocol.Factory(), manager,
+                        transport), config);
+
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            String message = "Hello " + i + "!";
+            futures.add(pool.call((client, callback) -> client.echo(message, callback),
+                    AsyncClient.echo_call::getResult));
+        }
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals("Hello " + i + "!", futures.get(i).get(10, TimeUnit.SECONDS));
+        }
+        Assert.assertTrue(pool.getNumConnections() <= 4);
+        pool.close();
+    }
+
+    @Test
+    public void testFailover() throws Exception {
+        PoolConfig config = new PoolConfig();
+        config.setTimeout(1000);
+        config.setFailover(true);
+        AsyncThriftClientPool<AsyncClient> pool = new AsyncThriftClientPool<>(Arrays.asList( //
+                new ServiceInfo("127.0.0.1", 1), //
+                new ServiceInfo("127.0.0.1", port)), //
+                (manager, transport) -> new AsyncClient(new TBinaryProtocol.Factory(), manager,
+                        transport), config);
+
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals("Hello!",
+                    pool.call((client, callback) -> client.echo("Hello!", callback),
+                            AsyncClient.echo_call::getResult).get(10, TimeUnit.SECONDS));
+        }
+        pool.close();
+    }
+
+    private static TThreadPoolServer startServer(TServerSocket serverTransport, Iface handler)
+            throws InterruptedException {
+        TThreadPoolServer server = new TThreadPoolServer(new TThreadPoolServer.Args(
+                serverTransport).inputTransportFactory(new TFramedTransport.Factory())
+                .outputTransportFactory(new TFramedTransport.Factory())
+                .processor(new Processor<>(handler)));
+        Thread thread = new Thread(server::serve);
+        thread.setDaemon(true);
+        thread.start();
+        while (!server.isServing()) {
+            Thread.sleep(10);
+        }
+        return server;
+    }
+
+    @Test
+    public void testNoFailoverAfterConnected() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        Iface slowHandler = message -> {
+            calls.incrementAndGet();
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return message;
+        };
+        TServerSocket first = new TServerSocket(new ServerSocket(0));
+        TServerSocket second = new TServerSocket(new ServerSocket(0));
+        TThreadPoolServer firstServer = startServer(first, slowHandler);
+        TThreadPoolServer secondServer = startServer(second, slowHandler);
+
+        PoolConfig config = new PoolConfig();
+        config.setTimeout(200);
+        config.setFailover(true);
+        AsyncThriftClientPool<AsyncClient> pool = new AsyncThriftClientPool<>(Arrays.asList( //
+                new ServiceInfo("127.0.0.1", first.getServerSocket().getLocalPort()), //
+                new ServiceInfo("127.0.0.1", second.getServerSocket().getLocalPort())), //
+                (manager, transport) -> new AsyncClient(new TBinaryProtocol.Factory(), manager,
+                        transport), config);
+
+        // the request is sent, a read timeout is not sent again to another service
+        try {
+            pool.call((client, callback) -> client.echo("Hello!", callback),
+                    AsyncClient.echo_call::getResult).get(10, TimeUnit.SECONDS);
+            Assert.fail("should time out");
+        } catch (ExecutionException e) {
+            // expected
+        }
+        Thread.sleep(500);
+        Assert.assertEquals(1, calls.get());
+        pool.close();
+        firstServer.stop();
+        secondServer.stop();
+    }
+}
@@ -0,0 +1,172 @@
+package com.wealoha.thrift;
+
+import java.util.Collections;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.pool2.BasePooledObjectFactory;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.PooledObjectState;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 
+ * @author javamonk
+ * @createTime 2026年10月18日 下午2:41:17
+ */
+public class TestConcurrentBagObjectPool {
+
+    private static class Resource {
+
+        volatile boolean valid = true;
+
+        volatile boolean destroyed;
+    }
+
+    private static class ResourceFactory extends BasePooledObjectFactory<Resource> {
+
+        final AtomicInteger created = new AtomicInteger();
+
+        @Override
+        public Resource create() throws Exception {
+            created.incrementAndGet();
+            return new Resource();
+        }
+
+        @Override
+        public PooledObject<Resource> wrap(Resource obj) {
+            return new DefaultPooledObject<>(obj);
+        }
+
+        @Override
+        public boolean validateObject(PooledObject<Resource> p) {
+            return p.getObject().valid;
+        }
+
+        @Override
+        public void destroyObject(PooledObject<Resource> p) throws Exception {
+            p.getObject().destroyed = true;
+        }
+    }
+
+    private PoolConfig config(int maxTotal, long maxWaitMillis) {
+        PoolConfig config = new PoolConfig();
+        config.setMaxTotal(maxTotal);
+        config.setMaxWaitMillis(maxWaitMillis);
+        config.setTestOnBorrow(true);
+        config.setTestOnReturn(true);
+        return config;
+    }
+
+    @Test
+    public void testBorrowReturn() throws Exception {
+        ResourceFactory factory = new ResourceFactory();
+        ConcurrentBagObjectPool<Resource> pool = new ConcurrentBagObjectPool<>(factory, config(2,
+                100));
+
+        Resource r1 = pool.borrowObject();
+        Resource r2 = pool.borrowObject();
+        Assert.assertNotSame(r1, r2);
+        Assert.assertEquals(2, pool.getNumActive());
+
+        boolean exhausted = false;
+        try {
+            pool.borrowObject();
+        } catch (NoSuchElementException e) {
+            exhausted = true;
+        }
+        Assert.assertTrue("pool must be exhausted", exhausted);
+
+        pool.returnObject(r1);
+        Assert.assertEquals(1, pool.getNumIdle());
+        // reuse object returned by current thread
+        Assert.assertSame(r1, pool.borrowObject());
+        Assert.assertEquals(2, factory.created.get());
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+        ResourceFactory factory = new ResourceFactory();
+        ConcurrentBagObjectPool<Resource> pool = new ConcurrentBagObjectPool<>(factory, config(1,
+                100));
+
+        Resource r1 = pool.borrowObject();
+        pool.invalidateObject(r1);
+        Assert.assertTrue(r1.destroyed);
+
+        Resource r2 = pool.borrowObject();
+        Assert.assertNotSame(r1, r2);
+
+        // fail validation on return
+        r2.valid = false;
+        pool.returnObject(r2);
+        Assert.assertTrue(r2.destroyed);
+        Assert.assertEquals(0, pool.getNumIdle() + pool.getNumActive());
+    }
+
+    @Test
+    public void testEvict() throws Exception {
+        ResourceFactory factory = new ResourceFactory() {
+
+            @Override
+            public boolean validateObject(PooledObject<Resource> p) {
+                // eviction is tracked by bag entry, not the synchronized
+                // state of pooled object
+                return p.getObject().valid && p.getState() != PooledObjectState.EVICTION;
+            }
+        };
+        ConcurrentBagObjectPool<Resource> pool = new ConcurrentBagObjectPool<>(factory, config(2,
+                100));
+        Resource r1 = pool.borrowObject();
+        Resource r2 = pool.borrowObject();
+        pool.returnObject(r1);
+        pool.returnObject(r2);
+
+        r2.valid = false;
+        pool.evict();
+        Assert.assertFalse(r1.destroyed);
+        Assert.assertTrue(r2.destroyed);
+        Assert.assertEquals(1, pool.getNumIdle());
+        Assert.assertSame(r1, pool.borrowObject());
+        pool.close();
+    }
+
+    @Test
+    public void testConcurrentBorrow() throws Exception {
+        ResourceFactory factory = new ResourceFactory();
+        int maxTotal = 4;
+        ConcurrentBagObjectPool<Resource> pool = new ConcurrentBagObjectPool<>(factory, config(
+                maxTotal, -1));
+
+        Set<Resource> inUse = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        AtomicInteger errors = new AtomicInteger();
+        ExecutorService executorService = Executors.newFixedThreadPool(16);
+        for (int i = 0; i < 10000; i++) {
+            executorService.submit(() -> {
+                try {
+                    Resource r = pool.borrowObject();
+                    if (!inUse.add(r)) {
+                        errors.incrementAndGet();
+                    }
+                    inUse.remove(r);
+                    pool.returnObject(r);
+                } catch (Throwable e) {
+                    errors.incrementAndGet();
+                }
+            });
+        }
+        executorService.shutdown();
+        Assert.assertTrue(executorService.awaitTermination(1, TimeUnit.MINUTES));
+
+        Assert.assertEquals(0, errors.get());
+        Assert.assertTrue(factory.created.get() <= maxTotal);
+        Assert.assertEquals(factory.created.get(), pool.getNumIdle());
+    }
+}
@@ -0,0 +1,36 @@
+package com.wealoha.thrift;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 
+ * @author javamonk
+ * @createTime 2026年10月19日 上午12:52:08
+ */
+public class TestLatencyHistogram {
+
+    @Test
+    public void testBuckets() {
+        for (long micros = 0; micros < 1_000_000; micros += 7) {
+            long upper = LatencyHistogram.upperBound(LatencyHistogram.bucket(micros));
+            Assert.assertTrue(micros < upper);
+            Assert.assertTrue(upper <= Math.max(micros * 1.13, micros + 1));
+        }
+    }
+
+    @Test
+    public void testPercentile() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(-1, histogram.percentileNanos(99));
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+        long p50 = TimeUnit.NANOSECONDS.toMillis(histogram.percentileNanos(50));
+        long p99 = TimeUnit.NANOSECONDS.toMillis(histogram.percentileNanos(99));
+        Assert.assertTrue("p50 " + p50, p50 >= 50 && p50 <= 57);
+        Assert.assertTrue("p99 " + p99, p99 >= 99 && p99 <= 112);
+    }
+}
@@ -0,0 +1,109 @@
+package com.wealoha.thrift;
+
+import java.net.ServerSocket;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.thrift.TMultiplexedProcessor;
+import org.apache.thrift.TProcessor;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.server.TThreadPoolServer;
+import org.apache.thrift.server.TThreadPoolServer.Args;
+import org.apache.thrift.transport.TFramedTransport;
+import org.apache.thrift.transport.TServerSocket;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.wealoha.thrift.exception.ThriftException;
+import com.wealoha.thrift.service.TestThriftService.Client;
+import com.wealoha.thrift.service.TestThriftService.Iface;
+import com.wealoha.thrift.service.TestThriftService.Processor;
+import com.wealoha.thrift.service.TestThriftServiceHandler;
+
+/**
+ * 
+ * @author javamonk
+ * @createTime 2026年10月18日 下午8:55:31
+ */
+public class TestPipelinedThriftClientPool {
+
+    private static int startServer(TProcessor processor) throws Exception {
+        TServerSocket serverTransport = new TServerSocket(new ServerSocket(0));
+        Args args = new TThreadPoolServer.Args(serverTransport)
+                .inputTransportFactory(new TFramedTransport.Factory())
+                .outputTransportFactory(new TFramedTransport.Factory()).processor(processor);
+        TThreadPoolServer server = new TThreadPoolServer(args);
+        Thread thread = new Thread(server::serve);
+        thread.setDaemon(true);
+        thread.start();
+        while (!server.isServing()) {
+            Thread.sleep(10);
+        }
+        return serverTransport.getServerSocket().getLocalPort();
+    }
+
+    private void concurrentEcho(Iface iface) throws Exception {
+        AtomicInteger errors = new AtomicInteger();
+        ExecutorService executorService = Executors.newFixedThreadPool(16);
+        for (int i = 0; i < 1000; i++) {
+            String message = "Hello " + i + "!";
+            executorService.submit(() -> {
+                try {
+                    if (!message.equals(iface.echo(message))) {
+                        errors.incrementAndGet();
+                    }
+                } catch (Throwable e) {
+                    errors.incrementAndGet();
+                }
+            });
+        }
+        executorService.shutdown();
+        Assert.assertTrue(executorService.awaitTermination(1, TimeUnit.MINUTES));
+        Assert.assertEquals(0, errors.get());
+    }
+
+    @Test
+    public void testEcho() throws Exception {
+        int port = startServer(new Processor<>(new TestThriftServiceHandler()));
+
+        PoolConfig config = new PoolConfig();
+        config.setTimeout(5000);
+        config.setPipelineConnections(1);
+        PipelinedThriftClientPool<Client> pool = new PipelinedThriftClientPool<>(
+                Collections.singletonList(new ServiceInfo("127.0.0.1", port)), Client::new,
+                transport -> new TBinaryProtocol(new TFramedTransport(transport)), config);
+
+        concurrentEcho(pool.iface());
+        // client can be reused by current thread
+        Client client = pool.getClient();
+        Assert.assertEquals("Hello!", client.echo("Hello!"));
+        Assert.assertEquals("Hello again!", client.echo("Hello again!"));
+        pool.close();
+
+        try {
+            pool.getClient();
+            Assert.fail("should throw");
+        } catch (ThriftException e) {
+            // expected, no connection reopened after close
+        }
+    }
+
+    @Test
+    public void testMultiplexedEcho() throws Exception {
+        TMultiplexedProcessor processor = new TMultiplexedProcessor();
+        processor.registerProcessor("echo", new Processor<>(new TestThriftServiceHandler()));
+        int port = startServer(processor);
+
+        PoolConfig config = new PoolConfig();
+        config.setTimeout(5000);
+        PipelinedThriftClientPool<Client> pool = new PipelinedThriftClientPool<>(
+                Collections.singletonList(new ServiceInfo("127.0.0.1", port)), Client::new,
+                new ThriftMultiplexedBinaryProtocolFactory("echo"), config);
+
+        concurrentEcho(pool.iface());
+        pool.close();
+    }
+}
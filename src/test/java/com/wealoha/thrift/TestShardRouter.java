@@ -0,0 +1,85 @@
+package com.wealoha.thrift;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 
+ * @author javamonk
+ * @createTime 2026年10月18日 下午11:31:20
+ */
+public class TestShardRouter {
+
+    private static final int KEYS = 100000;
+
+    private List<List<ServiceInfo>> partitions(int size) {
+        List<ServiceInfo> servers = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            servers.add(new ServiceInfo("10.0.1." + i, 9000));
+        }
+        return ShardedThriftClientPool.singlePartitions(servers);
+    }
+
+    /**
+     * add a partition, count keys moved to other partitions
+     * 
+     * @param strategy
+     * @return
+     */
+    private int remapped(ShardStrategy strategy) {
+        ShardRouter before = strategy.apply(partitions(10));
+        ShardRouter after = strategy.apply(partitions(11));
+        int remapped = 0;
+        for (int key = -KEYS / 2; key < KEYS / 2; key++) {
+            int shard = before.shard(key);
+            Assert.assertTrue(shard >= 0 && shard < 10);
+            int newShard = after.shard(key);
+            if (newShard != shard) {
+                // only moves to the new one
+                Assert.assertEquals(10, newShard);
+                remapped++;
+            }
+        }
+        return remapped;
+    }
+
+    @Test
+    public void testModulo() {
+        ShardRouter router = ShardStrategy.MODULO.apply(partitions(3));
+        Assert.assertEquals(1, router.shard(10));
+        Assert.assertEquals(2, router.shard(-10));
+        Assert.assertEquals(1, router.shard(Integer.MIN_VALUE));
+    }
+
+    @Test
+    public void testKetama() {
+        // about 1/11 of keys
+        int remapped = remapped(ShardStrategy.KETAMA);
+        Assert.assertTrue("remapped " + remapped, remapped > KEYS / 22 && remapped < KEYS / 6);
+    }
+
+    @Test
+    public void testJump() {
+        int remapped = remapped(ShardStrategy.JUMP);
+        Assert.assertTrue("remapped " + remapped, remapped > KEYS / 15 && remapped < KEYS / 8);
+    }
+
+    @Test
+    public void testKetamaRemovePartition() {
+        List<List<ServiceInfo>> partitions = partitions(10);
+        ShardRouter before = ShardStrategy.KETAMA.apply(partitions);
+        List<List<ServiceInfo>> removed = new ArrayList<>(partitions);
+        removed.remove(3);
+        ShardRouter after = ShardStrategy.KETAMA.apply(removed);
+        for (int key = 0; key < KEYS; key++) {
+            int shard = before.shard(key);
+            if (shard != 3) {
+                // keys of other partitions stay
+                Assert.assertEquals(partitions.get(shard), removed.get(after.shard(key)));
+            }
+        }
+    }
+}
@@ -1,15 +1,28 @@
 package com.wealoha.thrift;
 
+import java.net.ServerSocket;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.server.TThreadPoolServer;
 import org.apache.thrift.transport.TFramedTransport;
+import org.apache.thrift.transport.TServerSocket;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import com.wealoha.thrift.exception.ThriftException;
 import com.wealoha.thrift.service.TestThriftService.Client;
+import com.wealoha.thrift.service.TestThriftService.Iface;
+import com.wealoha.thrift.service.TestThriftService.Processor;
+import com.wealoha.thrift.service.TestThriftServiceHandler;
 
 /**
  * 
@@ -22,6 +35,21 @@ public class TestShardedThriftClientPool {
     public static void setUpBeforeClass() throws Exception {
     }
 
+    private static TThreadPoolServer startServer(TServerSocket serverTransport, Iface handler)
+            throws InterruptedException {
+        TThreadPoolServer server = new TThreadPoolServer(new TThreadPoolServer.Args(
+                serverTransport).inputTransportFactory(new TFramedTransport.Factory())
+                .outputTransportFactory(new TFramedTransport.Factory())
+                .processor(new Processor<>(handler)));
+        Thread thread = new Thread(server::serve);
+        thread.setDaemon(true);
+        thread.start();
+        while (!server.isServing()) {
+            Thread.sleep(10);
+        }
+        return server;
+    }
+
     @Test
     public void testGetShardedPool() {
         PoolConfig config = new PoolConfig();
@@ -70,13 +98,169 @@ public class TestShardedThriftClientPool {
 
         Integer key = 10;
         ThriftClientPool<Client> pool = shardedPool.getShardedPool(key);
-        Assert.assertEquals(Arrays.asList(new ServiceInfo("127.0.0.1", 9092), //
-                new ServiceInfo("127.0.0.1", 9093)), //
+        // replicated partition goes to pool of its primary
+        Assert.assertEquals(Arrays.asList(new ServiceInfo("127.0.0.1", 9092)), //
                 pool.getServices());
+        Assert.assertSame(shardedPool.getPrimaryPool(key), pool);
 
         key = 8;
         pool = shardedPool.getShardedPool(key);
         Assert.assertEquals(Arrays.asList(new ServiceInfo("127.0.0.1", 9094)), //
                 pool.getServices());
     }
+
+    @Test
+    public void testSetServices() throws InterruptedException {
+        PoolConfig config = new PoolConfig();
+        config.setTimeout(1000);
+
+        ServiceInfo a = new ServiceInfo("127.0.0.1", 9090);
+        ServiceInfo b = new ServiceInfo("127.0.0.1", 9091);
+        ServiceInfo c = new ServiceInfo("127.0.0.1", 9092);
+        ShardedThriftClientPool<Integer, Client> shardedPool = new ShardedThriftClientPool<>(
+                Arrays.asList(a, b), //
+                key -> key, //
+                ShardedThriftClientPool::singlePartitions, //
+                ShardStrategy.KETAMA, //
+                servers -> new ThriftClientPool<>(servers, transport -> new Client(
+                        new TBinaryProtocol(new TFramedTransport(transport))), config));
+        shardedPool.setDrainMillis(0);
+
+        Map<ServiceInfo, ThriftClientPool<Client>> pools = new HashMap<>();
+        for (int key = 0; key < 100; key++) {
+            ThriftClientPool<Client> pool = shardedPool.getShardedPool(key);
+            pools.put(pool.getServices().get(0), pool);
+        }
+        Assert.assertEquals(2, pools.size());
+
+        shardedPool.setServices(Arrays.asList(a, c));
+        Assert.assertEquals(Arrays.asList(a, c), shardedPool.getServices());
+        for (int key = 0; key < 100; key++) {
+            ThriftClientPool<Client> pool = shardedPool.getShardedPool(key);
+            if (pool.getServices().contains(a)) {
+                // unchanged partition keeps its pool
+                Assert.assertSame(pools.get(a), pool);
+            } else {
+                Assert.assertEquals(Arrays.asList(c), pool.getServices());
+            }
+        }
+
+        // retired pool is closed
+        Thread.sleep(200);
+        try {
+            pools.get(b).getClient();
+            Assert.fail("retired pool should be closed");
+        } catch (ThriftException e) {
+            Assert.assertEquals("pool is closed", e.getMessage());
+        }
+        shardedPool.close();
+    }
+
+    @Test
+    public void testScatterGather() throws Exception {
+        TServerSocket serverTransport = new TServerSocket(new ServerSocket(0));
+        TThreadPoolServer server = startServer(serverTransport, new TestThriftServiceHandler());
+        int port = serverTransport.getServerSocket().getLocalPort();
+
+        PoolConfig config = new PoolConfig();
+        config.setTimeout(1000);
+        // two shards on the server, the last one is down
+        ShardedThriftClientPool<Integer, Client> shardedPool = new ShardedThriftClientPool<>(
+                Arrays.asList(new ServiceInfo("127.0.0.1", port), new ServiceInfo("localhost",
+                        port), new ServiceInfo("127.0.0.1", 9091)), //
+                key -> key, //
+                servers -> new ThriftClientPool<>(servers, transport -> new Client(
+                        new TBinaryProtocol(new TFramedTransport(transport))), config));
+
+        ScatterGatherResult<Integer, List<String>> result = shardedPool.scatterGather(
+                Arrays.asList(0, 1, 2, 3, 4, 5, 6), (pool, keys) -> {
+                    Iface iface = pool.iface();
+                    List<String> responses = new ArrayList<>();
+                    for (Integer key : keys) {
+                        responses.add(iface.echo(String.valueOf(key)));
+                    }
+                    return responses;
+                }, 5000);
+
+        Assert.assertFalse(result.isComplete());
+        Assert.assertEquals(new HashSet<>(Arrays.asList(2, 5)), result.getFailures().keySet());
+        Set<String> responses = new HashSet<>();
+        result.getResults().forEach(responses::addAll);
+        Assert.assertEquals(new HashSet<>(Arrays.asList("0", "1", "3", "4", "6")), responses);
+        shardedPool.close();
+        server.stop();
+    }
+
+    @Test
+    public void testScatterGatherTimeout() throws Exception {
+        TServerSocket serverTransport = new TServerSocket(new ServerSocket(0));
+        TThreadPoolServer server = startServer(serverTransport, message -> {
+            try {
+                Thread.sleep(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return message;
+        });
+        int port = serverTransport.getServerSocket().getLocalPort();
+
+        PoolConfig config = new PoolConfig();
+        config.setTimeout(5000);
+        // all keys in one shard
+        ShardedThriftClientPool<Integer, Client> shardedPool = new ShardedThriftClientPool<>(
+                Arrays.asList(new ServiceInfo("127.0.0.1", port)), //
+                key -> key, //
+                servers -> new ThriftClientPool<>(servers, transport -> new Client(
+                        new TBinaryProtocol(new TFramedTransport(transport))), config));
+
+        long start = System.currentTimeMillis();
+        ScatterGatherResult<Integer, String> result = shardedPool.scatterGather(
+                Arrays.asList(0, 1), (pool, keys) -> pool.<Iface> iface().echo("Hello!"), 200);
+        Assert.assertTrue(System.currentTimeMillis() - start < 1000);
+        Assert.assertEquals(new HashSet<>(Arrays.asList(0, 1)), result.getFailures().keySet());
+        shardedPool.close();
+        server.stop();
+    }
+
+    @Test
+    public void testHedgedRead() throws Exception {
+        TServerSocket slowTransport = new TServerSocket(new ServerSocket(0));
+        TThreadPoolServer slowServer = startServer(slowTransport, message -> {
+            try {
+                Thread.sleep(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "slow " + message;
+        });
+        TServerSocket fastTransport = new TServerSocket(new ServerSocket(0));
+        TThreadPoolServer fastServer = startServer(fastTransport, new TestThriftServiceHandler());
+        ServiceInfo slow = new ServiceInfo("127.0.0.1", slowTransport.getServerSocket()
+                .getLocalPort());
+        ServiceInfo fast = new ServiceInfo("127.0.0.1", fastTransport.getServerSocket()
+                .getLocalPort());
+
+        PoolConfig config = new PoolConfig();
+        config.setTimeout(5000);
+        // one partition, slow one is primary
+        ShardedThriftClientPool<Integer, Client> shardedPool = new ShardedThriftClientPool<>(
+                Arrays.asList(slow, fast), //
+                key -> key, //
+                servers -> Collections.singletonList(servers), //
+                servers -> new ThriftClientPool<>(servers, transport -> new Client(
+                        new TBinaryProtocol(new TFramedTransport(transport))), config));
+        Assert.assertEquals(Arrays.asList(slow), shardedPool.getPrimaryPool(1).getServices());
+
+        // always try the first one(primary) first
+        shardedPool.setReadBalancer(backends -> backends.get(0));
+        shardedPool.setHedgeDelayMillis(50);
+        long start = System.currentTimeMillis();
+        String response = shardedPool.read(1, pool -> pool.<Iface> iface().echo("Hello!"));
+        Assert.assertEquals("Hello!", response);
+        Assert.assertTrue(System.currentTimeMillis() - start < 1000);
+
+        shardedPool.close();
+        slowServer.stop();
+        fastServer.stop();
+    }
 }
@@ -1,14 +1,33 @@
 package com.wealoha.thrift;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import javax.management.ObjectName;
 
 import org.apache.thrift.TException;
 import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.protocol.TCompactProtocol;
+import org.apache.thrift.protocol.TProtocol;
 import org.apache.thrift.server.TThreadPoolServer;
 import org.apache.thrift.server.TThreadPoolServer.Args;
 import org.apache.thrift.transport.TFramedTransport;
@@ -20,6 +39,17 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import com.wealoha.thrift.balance.AimdLimit;
+import com.wealoha.thrift.balance.Backend;
+import com.wealoha.thrift.balance.CircuitBreakerPolicy;
+import com.wealoha.thrift.balance.ConcurrencyLimit;
+import com.wealoha.thrift.balance.RoundRobinLoadBalancer;
+import com.wealoha.thrift.balance.VegasLimit;
+import com.wealoha.thrift.exception.ConcurrencyLimitExceededException;
+import com.wealoha.thrift.exception.DeadlineExceededException;
+import com.wealoha.thrift.exception.NoBackendServiceException;
 import com.wealoha.thrift.service.TestThriftService;
 import com.wealoha.thrift.service.TestThriftService.Client;
 import com.wealoha.thrift.service.TestThriftService.Iface;
@@ -57,6 +87,30 @@ public class TestThriftClientPool {
         }
     }
 
+    private static TThreadPoolServer startServer(TServerSocket serverTransport, Iface handler)
+            throws InterruptedException {
+        TThreadPoolServer server = new TThreadPoolServer(new TThreadPoolServer.Args(
+                serverTransport).inputTransportFactory(new TFramedTransport.Factory())
+                .outputTransportFactory(new TFramedTransport.Factory())
+                .processor(new Processor<>(handler)));
+        Thread thread = new Thread(server::serve);
+        thread.setDaemon(true);
+        thread.start();
+        while (!server.isServing()) {
+            Thread.sleep(10);
+        }
+        return server;
+    }
+
+    private static String slowEcho(String message) {
+        try {
+            Thread.sleep(2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "slow " + message;
+    }
+
     @Test
     public void testReusingIFace() throws TException {
         List<ServiceInfo> serverList = Collections
@@ -69,19 +123,628 @@ public class TestThriftClientPool {
                 config);
 
         Iface iface = pool.iface();
-        iface.echo("Hello!");
-        boolean exceptionThrow = false;
+        Assert.assertEquals("Hello!", iface.echo("Hello!"));
+        Assert.assertEquals("Hello again!", iface.echo("Hello again!"));
+        Assert.assertSame(iface, pool.iface());
+    }
+
+    @Test
+    public void testFramedBinaryPipeline() throws TException {
+        PoolConfig config = new PoolConfig();
+        config.setTimeout(1000);
+        config.setTransportFactory(new ThriftFramedTransportFactory());
+        ThriftClientPool<TestThriftService.Client> pool = new ThriftClientPool<>(
+                Collections.singletonList(new ServiceInfo("127.0.0.1", 9090)),
+                new ThriftBinaryProtocolFactory(), Client::new, config);
+
+        Iface iface = pool.iface();
+        Assert.assertEquals("Hello!", iface.echo("Hello!"));
+        Assert.assertEquals("Hello again!", iface.echo("Hello again!"));
+    }
+
+    @Test
+    public void testBufferedCompactPipeline() throws Exception {
+        TServerSocket serverTransport = new TServerSocket(new ServerSocket(0));
+        TThreadPoolServer server = new TThreadPoolServer(new TThreadPoolServer.Args(
+                serverTransport).protocolFactory(new TCompactProtocol.Factory())
+                .processor(new Processor<>(new TestThriftServiceHandler())));
+        Thread thread = new Thread(server::serve);
+        thread.setDaemon(true);
+        thread.start();
+        while (!server.isServing()) {
+            Thread.sleep(10);
+        }
+
+        PoolConfig config = new PoolConfig();
+        config.setTimeout(1000);
+        config.setTransportFactory(new ThriftBufferedTransportFactory());
+        ThriftClientPool<TestThriftService.Client> pool = new ThriftClientPool<>(
+                Collections.singletonList(new ServiceInfo("127.0.0.1", serverTransport
+                        .getServerSocket().getLocalPort())), new ThriftCompactProtocolFactory(),
+                Client::new, config);
+
+        Iface iface = pool.iface();
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals("Hello " + i + "!", iface.echo("Hello " + i + "!"));
+        }
+        server.stop();
+    }
+
+    @Test
+    public void testWarmUp() throws Exception {
+        PoolMetrics metrics = new PoolMetrics();
+        PoolConfig config = new PoolConfig();
+        config.setTimeout(1000);
+        config.setMinIdle(3);
+        config.setWarmUp(true);
+        config.setMetricsRecorder(metrics);
+        ThriftClientPool<TestThriftService.Client> pool = new ThriftClientPool<>(Arrays.asList(
+                new ServiceInfo("127.0.0.1", 9090), new ServiceInfo("127.0.0.1", 9091)),
+                transport -> new Client(new TBinaryProtocol(new TFramedTransport(transport))),
+                config);
+        // one of backends is ready, minIdle is split among backends
+        pool.getReadyFuture().get(10, TimeUnit.SECONDS);
+        Assert.assertEquals(2, metrics.getCreates());
+
+        pool.setServices(Collections.singletonList(new ServiceInfo("127.0.0.1", 9092)));
         try {
-            iface.echo("Hello again!");
-        } catch (IllegalStateException e) {
-            logger.info("exception thrown expected!", e);
-            exceptionThrow = true;
+            pool.getReadyFuture().get(10, TimeUnit.SECONDS);
+            Assert.fail("no backend can be warmed up");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof NoBackendServiceException);
         }
-        Assert.assertTrue("exception must thrown", exceptionThrow);
+    }
+
+    @Test
+    public void testEjectDeadBackend() throws TException {
+        PoolConfig config = new PoolConfig();
+        config.setFailover(true);
+        config.setTimeout(1000);
+        config.setEjectionFailures(1);
+        config.setLoadBalancer(new RoundRobinLoadBalancer());
+        ThriftClientPool<TestThriftService.Client> pool = new ThriftClientPool<>(Arrays.asList(
+                new ServiceInfo("127.0.0.1", 9091), new ServiceInfo("127.0.0.1", 9090)),
+                transport -> new Client(new TBinaryProtocol(new TFramedTransport(transport))),
+                config);
+
+        List<ThriftClient<Client>> clients = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            ThriftClient<Client> client = pool.getClient();
+            // 9091 is ejected after first failure
+            Assert.assertEquals(9090, client.getServiceInfo().getPort());
+            Assert.assertEquals("Hello!", client.iFace().echo("Hello!"));
+            clients.add(client);
+        }
+        for (ThriftClient<Client> client : clients) {
+            client.finish();
+            client.close();
+        }
+    }
+
+    @Test
+    public void testBackendPools() throws TException {
+        // two backends on the same server
+        ServiceInfo a = new ServiceInfo("127.0.0.1", 9090);
+        ServiceInfo b = new ServiceInfo("localhost", 9090);
+        PoolConfig config = new PoolConfig();
+        config.setTimeout(1000);
+        config.setMaxTotalPerBackend(1);
+        config.setBlockWhenExhausted(false);
+        config.setFailover(true);
+        ThriftClientPool<TestThriftService.Client> pool = new ThriftClientPool<>(Arrays.asList(
+                a, b), transport -> new Client(new TBinaryProtocol(new TFramedTransport(
+                transport))), config);
+
+        ThriftClient<Client> first = pool.getClient();
+        ThriftClient<Client> second = pool.getClient();
+        Assert.assertNotEquals(first.getServiceInfo(), second.getServiceInfo());
+        try {
+            pool.getClient();
+            Assert.fail("both backends are exhausted");
+        } catch (NoBackendServiceException e) {
+            // expected
+        }
+        first.finish();
+        first.close();
+        second.finish();
+        second.close();
+
+        pool.setServices(Collections.singletonList(a));
+        for (int i = 0; i < 4; i++) {
+            try (ThriftClient<Client> client = pool.getClient()) {
+                Assert.assertEquals(a, client.getServiceInfo());
+                Assert.assertEquals("Hello!", client.iFace().echo("Hello!"));
+                client.finish();
+            }
+        }
+    }
+
+    @Test
+    public void testDrainRemovedBackend() throws Exception {
+        TServerSocket slowTransport = new TServerSocket(new ServerSocket(0));
+        TThreadPoolServer slowServer = startServer(slowTransport, TestThriftClientPool::slowEcho);
+        ServiceInfo slow = new ServiceInfo("127.0.0.1", slowTransport.getServerSocket()
+                .getLocalPort());
+        ServiceInfo fast = new ServiceInfo("127.0.0.1", 9090);
+        PoolMetrics metrics = new PoolMetrics();
+        PoolConfig config = new PoolConfig();
+        config.setTimeout(5000);
+        config.setDrainMillis(200);
+        config.setMetricsRecorder(metrics);
+        config.setTransportFactory(new ThriftFramedTransportFactory());
+        ThriftClientPool<TestThriftService.Client> pool = new ThriftClientPool<>(
+                Collections.singletonList(slow), new ThriftBinaryProtocolFactory(), Client::new,
+                config);
+        try {
+            ThriftClient<Client> idle = pool.getClient();
+            ThriftClient<Client> inUse = pool.getClient();
+            idle.finish();
+            idle.close();
+            CompletableFuture<String> call = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return inUse.iFace().echo("Hello!");
+                } catch (TException e) {
+                    throw new CompletionException(e);
+                } finally {
+                    inUse.close();
+                }
+            });
+            Thread.sleep(100);
+
+            pool.setServices(Collections.singletonList(fast));
+            // idle one closed at once, the one in use is kept for drainMillis
+            Assert.assertEquals(1, metrics.getDestroys());
+            try (ThriftClient<Client> client = pool.getClient()) {
+                Assert.assertEquals(fast, client.getServiceInfo());
+                client.finish();
+            }
+            try {
+                call.get(1000, TimeUnit.MILLISECONDS);
+                Assert.fail("call not returned in drainMillis should be aborted");
+            } catch (ExecutionException e) {
+                // expected
+            }
+            Assert.assertEquals(2, metrics.getDestroys());
+        } finally {
+            pool.close();
+            slowServer.stop();
+            slowTransport.close();
+        }
+    }
+
+    @Test
+    public void testZoneAware() throws TException {
+        // two backends on the same server
+        ServiceInfo local = new ServiceInfo("127.0.0.1", 9090, 1, "zone-a", null);
+        ServiceInfo remote = new ServiceInfo("localhost", 9090, 1, "zone-b", null);
+        PoolConfig config = new PoolConfig();
+        config.setTimeout(1000);
+        config.setZone("zone-a");
+        config.setMaxTotalPerBackend(1);
+        config.setBlockWhenExhausted(false);
+        config.setFailover(true);
+        Set<List<Backend>> lists = Collections.newSetFromMap(new IdentityHashMap<>());
+        RoundRobinLoadBalancer roundRobin = new RoundRobinLoadBalancer();
+        config.setLoadBalancer(backends -> {
+            lists.add(backends);
+            return roundRobin.select(backends);
+        });
+        ThriftClientPool<TestThriftService.Client> pool = new ThriftClientPool<>(Arrays.asList(
+                local, remote), transport -> new Client(new TBinaryProtocol(new TFramedTransport(
+                transport))), config);
+
+        for (int i = 0; i < 4; i++) {
+            try (ThriftClient<Client> client = pool.getClient()) {
+                Assert.assertEquals(local, client.getServiceInfo());
+                client.finish();
+            }
+        }
+        // the same list of local backends on each borrow
+        Assert.assertEquals(1, lists.size());
+        // local one exhausted, spill over
+        try (ThriftClient<Client> first = pool.getClient();
+                ThriftClient<Client> second = pool.getClient()) {
+            Assert.assertEquals(local, first.getServiceInfo());
+            Assert.assertEquals(remote, second.getServiceInfo());
+            Assert.assertEquals("Hello!", second.iFace().echo("Hello!"));
+            first.finish();
+            second.finish();
+        }
+        pool.close();
+    }
+
+    @Test
+    public void testConcurrencyLimitAimd() throws Exception {
+        simulateBrownout(() -> new AimdLimit(20, 1, 200, 0.9, 20));
+    }
+
+    @Test
+    public void testConcurrencyLimitVegas() throws Exception {
+        simulateBrownout(() -> new VegasLimit(20, 1, 200, 1000));
+    }
+
+    /**
+     * backend serves 4 calls in 5ms, more calls queue and slow down all of
+     * them, the limit should drop under initial 20 and excess calls are
+     * rejected instead of piling up
+     */
+    private void simulateBrownout(Supplier<ConcurrencyLimit> limitFactory) throws Exception {
+        AtomicInteger concurrent = new AtomicInteger();
+        TServerSocket serverTransport = new TServerSocket(new ServerSocket(0));
+        TThreadPoolServer server = startServer(serverTransport, message -> {
+            int current = concurrent.incrementAndGet();
+            try {
+                Thread.sleep(current > 4 ? 5L * current : 5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                concurrent.decrementAndGet();
+            }
+            return message;
+        });
+        AtomicReference<ConcurrencyLimit> limit = new AtomicReference<>();
+        PoolConfig config = new PoolConfig();
+        config.setTimeout(5000);
+        config.setMaxTotal(64);
+        config.setTransportFactory(new ThriftFramedTransportFactory());
+        config.setConcurrencyLimit(() -> {
+            limit.set(limitFactory.get());
+            return limit.get();
+        });
+        ThriftClientPool<TestThriftService.Client> pool = new ThriftClientPool<>(
+                Collections.singletonList(new ServiceInfo("127.0.0.1", serverTransport
+                        .getServerSocket().getLocalPort())), new ThriftBinaryProtocolFactory(),
+                Client::new, config);
+        Iface iface = pool.iface();
+        AtomicInteger rejected = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        long end = System.currentTimeMillis() + 1500;
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        for (int i = 0; i < 16; i++) {
+            executor.submit(() -> {
+                while (System.currentTimeMillis() < end) {
+                    try {
+                        iface.echo("Hello!");
+                    } catch (ConcurrencyLimitExceededException e) {
+                        rejected.incrementAndGet();
+                        Thread.sleep(1);
+                    } catch (Exception e) {
+                        failed.incrementAndGet();
+                    }
+                }
+                return null;
+            });
+        }
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        logger.info("brownout with {}: rejected={}", limit.get(), rejected.get());
+        Assert.assertEquals(0, failed.get());
+        Assert.assertTrue(rejected.get() > 0);
+        Assert.assertTrue(limit.get().getLimit() < 16);
+        pool.close();
+        server.stop();
+        serverTransport.close();
+    }
+
+    @Test
+    public void testHedgedIface() throws Exception {
+        TServerSocket slowTransport = new TServerSocket(new ServerSocket(0));
+        TThreadPoolServer slowServer = startServer(slowTransport, TestThriftClientPool::slowEcho);
+
+        PoolConfig config = new PoolConfig();
+        config.setTimeout(5000);
+        config.setTransportFactory(new ThriftFramedTransportFactory());
+        // always the slow one first
+        config.setLoadBalancer(backends -> backends.get(0));
+        HedgePolicy hedgePolicy = new HedgePolicy();
+        hedgePolicy.setMethodNames(Collections.singleton("echo"));
+        hedgePolicy.setDelayMillis(50);
+        hedgePolicy.setBudgetPercent(100);
+        config.setHedgePolicy(hedgePolicy);
+        ThriftClientPool<TestThriftService.Client> pool = new ThriftClientPool<>(Arrays.asList(
+                new ServiceInfo("127.0.0.1", slowTransport.getServerSocket().getLocalPort()),
+                new ServiceInfo("127.0.0.1", 9090)), new ThriftBinaryProtocolFactory(),
+                Client::new, config);
+
+        Iface iface = pool.iface();
+        for (int i = 0; i < 3; i++) {
+            long start = System.currentTimeMillis();
+            Assert.assertEquals("Hello " + i + "!", iface.echo("Hello " + i + "!"));
+            Assert.assertTrue(System.currentTimeMillis() - start < 1000);
+        }
+        pool.close();
+        slowServer.stop();
+    }
+
+    @Test
+    public void testRetryIface() throws Exception {
+        // the server drops connection on every call
+        TServerSocket badTransport = new TServerSocket(new ServerSocket(0));
+        TThreadPoolServer badServer = startServer(badTransport, message -> {
+            throw new IllegalStateException("bad server");
+        });
+
+        PoolConfig config = new PoolConfig();
+        config.setTimeout(1000);
+        config.setEjectionFailures(100);
+        config.setTransportFactory(new ThriftFramedTransportFactory());
+        // always the bad one first
+        config.setLoadBalancer(backends -> backends.get(0));
+        RetryPolicy retryPolicy = new RetryPolicy();
+        retryPolicy.setBudgetPercent(100);
+        config.setRetryPolicy(retryPolicy);
+        List<ServiceInfo> serviceList = Arrays.asList(new ServiceInfo("127.0.0.1", badTransport
+                .getServerSocket().getLocalPort()), new ServiceInfo("127.0.0.1", 9090));
+        ThriftClientPool<TestThriftService.Client> pool = new ThriftClientPool<>(serviceList,
+                new ThriftBinaryProtocolFactory(), Client::new, config);
+
+        // not idempotent, not retried
+        try {
+            pool.<Iface> iface().echo("Hello!");
+            Assert.fail("should not be retried");
+        } catch (TException e) {
+            // expected
+        }
+        pool.close();
+
+        retryPolicy.setMethodNames(Collections.singleton("echo"));
+        pool = new ThriftClientPool<>(serviceList, new ThriftBinaryProtocolFactory(),
+                Client::new, config);
+        Iface iface = pool.iface();
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals("Hello " + i + "!", iface.echo("Hello " + i + "!"));
+        }
+        pool.close();
+        badServer.stop();
+    }
+
+    /**
+     * stands for an exception declared in IDL
+     */
+    private static class NotFoundException extends TException {
+
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * throws {@link NotFoundException} after the response is read
+     */
+    private static class NotFoundClient extends Client implements Iface {
+
+        NotFoundClient(TProtocol protocol) {
+            super(protocol);
+        }
+
+        @Override
+        public String echo(String message) throws TException {
+            String result = super.echo(message);
+            if (message.startsWith("missing")) {
+                throw new NotFoundException();
+            }
+            return result;
+        }
+    }
+
+    @Test
+    public void testDeclaredException() throws Exception {
+        PoolMetrics metrics = new PoolMetrics();
+        AtomicReference<Backend> selected = new AtomicReference<>();
+        PoolConfig config = new PoolConfig();
+        config.setTimeout(1000);
+        config.setEjectionFailures(1);
+        CircuitBreakerPolicy circuitBreakerPolicy = new CircuitBreakerPolicy();
+        circuitBreakerPolicy.setMinimumCalls(2);
+        config.setCircuitBreakerPolicy(circuitBreakerPolicy);
+        config.setConcurrencyLimit(() -> new AimdLimit(4, 1, 4, 0.5, 1000));
+        config.setTransportFactory(new ThriftFramedTransportFactory());
+        config.setMetricsRecorder(metrics);
+        config.setLoadBalancer(backends -> {
+            selected.set(backends.get(0));
+            return backends.get(0);
+        });
+        ThriftClientPool<TestThriftService.Client> pool = new ThriftClientPool<>(
+                Collections.singletonList(new ServiceInfo("127.0.0.1", 9090)),
+                new ThriftBinaryProtocolFactory(), NotFoundClient::new, config);
+
+        Iface iface = pool.iface();
+        for (int i = 0; i < 5; i++) {
+            try {
+                iface.echo("missing " + i);
+                Assert.fail("should throw");
+            } catch (NotFoundException e) {
+                // expected
+            }
+        }
+        // not a failure of backend, and connection is reused
+        Assert.assertFalse(selected.get().isEjected());
+        Assert.assertFalse(selected.get().isCircuitOpen());
+        Assert.assertEquals(4, selected.get().getConcurrencyLimiter().getLimit());
+        Assert.assertEquals(1, metrics.getCreates());
+        Assert.assertEquals(0, metrics.getDestroys());
+        Assert.assertEquals("Hello!", iface.echo("Hello!"));
+
+        // closed without finish, not known as a failure of backend
+        for (int i = 0; i < 3; i++) {
+            pool.getClient().close();
+        }
+        Assert.assertFalse(selected.get().isEjected());
+        Assert.assertFalse(selected.get().isCircuitOpen());
+        pool.close();
+    }
+
+    @Test
+    public void testDeadline() throws Exception {
+        TServerSocket slowTransport = new TServerSocket(new ServerSocket(0));
+        TThreadPoolServer slowServer = startServer(slowTransport, TestThriftClientPool::slowEcho);
+
+        PoolConfig config = new PoolConfig();
+        config.setConnectTimeout(1000);
+        config.setReadTimeout(5000);
+        config.setMaxTotal(1);
+        config.setTransportFactory(new ThriftFramedTransportFactory());
+        ThriftClientPool<TestThriftService.Client> pool = new ThriftClientPool<>(
+                Collections.singletonList(new ServiceInfo("127.0.0.1", slowTransport
+                        .getServerSocket().getLocalPort())), new ThriftBinaryProtocolFactory(),
+                Client::new, config);
+
+        // read times out at deadline instead of read timeout
+        long start = System.currentTimeMillis();
+        try (Deadline deadline = Deadline.after(Duration.ofMillis(200))) {
+            Assert.assertSame(deadline, Deadline.current());
+            pool.<Iface> iface().echo("Hello!");
+            Assert.fail("should time out");
+        } catch (TException e) {
+            // expected
+        }
+        Assert.assertTrue(System.currentTimeMillis() - start < 1000);
+        Assert.assertNull(Deadline.current());
+
+        // waiting in borrow queue ends at deadline
+        try (ThriftClient<Client> client = pool.getClient()) {
+            start = System.currentTimeMillis();
+            try (Deadline deadline = Deadline.after(Duration.ofMillis(200))) {
+                Assert.assertSame(deadline, Deadline.current());
+                pool.getClient();
+                Assert.fail("should time out");
+            } catch (DeadlineExceededException e) {
+                // expected
+            }
+            Assert.assertTrue(System.currentTimeMillis() - start < 1000);
+            client.finish();
+        }
+        pool.close();
+        slowServer.stop();
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        PoolMetrics metrics = new PoolMetrics();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        MicrometerMetricsRecorder micrometer = new MicrometerMetricsRecorder(registry, "test");
+        PoolConfig config = new PoolConfig();
+        config.setTimeout(1000);
+        config.setTransportFactory(new ThriftFramedTransportFactory());
+        config.setMetricsRecorder(metrics);
+        ThriftClientPool<TestThriftService.Client> pool = new ThriftClientPool<>(
+                Collections.singletonList(new ServiceInfo("127.0.0.1", 9090)),
+                new ThriftBinaryProtocolFactory(), Client::new, config);
+        PoolConfig micrometerConfig = (PoolConfig) config.clone();
+        micrometerConfig.setMetricsRecorder(micrometer);
+        ThriftClientPool<TestThriftService.Client> micrometerPool = new ThriftClientPool<>(
+                Collections.singletonList(new ServiceInfo("127.0.0.1", 9090)),
+                new ThriftBinaryProtocolFactory(), Client::new, micrometerConfig);
+
+        for (int i = 0; i < 30; i++) {
+            pool.<Iface> iface().echo("Hello!");
+            micrometerPool.<Iface> iface().echo("Hello!");
+        }
+        try (ThriftClient<Client> client = pool.getClient()) {
+            Assert.assertEquals(1, metrics.getActive());
+            client.finish();
+        }
+
+        // and one by iface() for Iface type
+        Assert.assertEquals(32, metrics.getBorrows());
+        Assert.assertEquals(1, metrics.getCreates());
+        Assert.assertEquals(0, metrics.getActive());
+        Assert.assertEquals(1, metrics.getIdle());
+        Assert.assertEquals(Long.valueOf(30), metrics.getCallsPerMethod().get("echo"));
+        Assert.assertTrue(metrics.getCallMillis("echo", 99) > 0);
+        Assert.assertTrue(metrics.getBorrowWaitP99Millis() >= 0);
+
+        metrics.registerMBean("test");
+        Assert.assertEquals(32L, ManagementFactory.getPlatformMBeanServer().getAttribute(
+                new ObjectName("com.wealoha.thrift:type=PoolMetrics,name=\"test\""), "Borrows"));
+        metrics.unregisterMBean();
+
+        Assert.assertEquals(30, registry.get("thrift.client.calls").tag("method", "echo")
+                .tag("exception", "none").timer().count());
+        Assert.assertEquals(1, registry.get("thrift.pool.connections.idle").gauge().value(), 0);
+        pool.close();
+        micrometerPool.close();
+    }
+
+    @Test
+    public void testKeepAlive() throws Exception {
+        for (PoolEngine engine : PoolEngine.values()) {
+            // closes the first two connections at once, keeps later ones
+            ServerSocket serverSocket = new ServerSocket(0);
+            List<Socket> accepted = new CopyOnWriteArrayList<>();
+            Thread thread = new Thread(() -> {
+                while (!serverSocket.isClosed()) {
+                    try {
+                        Socket socket = serverSocket.accept();
+                        if (accepted.size() < 2) {
+                            socket.close();
+                        }
+                        accepted.add(socket);
+                    } catch (IOException e) {
+                        // closed
+                    }
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+
+            PoolMetrics metrics = new PoolMetrics();
+            PoolConfig config = new PoolConfig();
+            config.setPoolEngine(engine);
+            config.setTimeout(1000);
+            config.setMinIdle(2);
+            config.setKeepAliveMillis(50);
+            config.setMetricsRecorder(metrics);
+            ThriftClientPool<TestThriftService.Client> pool = new ThriftClientPool<>(
+                    Collections.singletonList(new ServiceInfo("127.0.0.1", serverSocket
+                            .getLocalPort())), new ThriftBinaryProtocolFactory(), Client::new,
+                    config);
+            pool.warmUp().get();
+            Assert.assertEquals(2, metrics.getIdle());
+
+            // dead ones are closed, then refilled to minIdle
+            Thread.sleep(300);
+            Assert.assertEquals(engine.name(), 2, metrics.getDestroys());
+            Assert.assertEquals(engine.name(), 4, metrics.getCreates());
+            Assert.assertEquals(engine.name(), 2, metrics.getIdle());
+            pool.close();
+            serverSocket.close();
+            for (Socket socket : accepted) {
+                socket.close();
+            }
+        }
+    }
+
+    @Test
+    public void testMaxLifetime() throws Exception {
+        PoolMetrics metrics = new PoolMetrics();
+        PoolConfig config = new PoolConfig();
+        config.setTimeout(1000);
+        config.setMaxLifetimeMillis(100);
+        config.setMetricsRecorder(metrics);
+        config.setTransportFactory(new ThriftFramedTransportFactory());
+        ThriftClientPool<TestThriftService.Client> pool = new ThriftClientPool<>(
+                Collections.singletonList(new ServiceInfo("127.0.0.1", 9090)),
+                new ThriftBinaryProtocolFactory(), Client::new, config);
+        Iface iface = pool.iface();
+        iface.echo("Hello!");
+        Assert.assertEquals(1, metrics.getCreates());
+        Thread.sleep(150);
+        iface.echo("Hello!");
+        Assert.assertEquals(2, metrics.getCreates());
+        Assert.assertEquals(1, metrics.getDestroys());
+        pool.close();
     }
 
     @Test
     public void testEcho() throws InterruptedException {
+        echo(PoolEngine.COMMONS_POOL2);
+    }
+
+    @Test
+    public void testEchoConcurrentBag() throws InterruptedException {
+        echo(PoolEngine.CONCURRENT_BAG);
+    }
+
+    private void echo(PoolEngine engine) throws InterruptedException {
         List<ServiceInfo> serverList = Arrays.asList( //
                 new ServiceInfo("127.0.0.1", 9092), //
                 new ServiceInfo("127.0.0.1", 9091), //
@@ -92,6 +755,7 @@ public class TestThriftClientPool {
         config.setTimeout(1000);
         config.setMinIdle(3);
         config.setMaxTotal(10);
+        config.setPoolEngine(engine);
         //        config.setBlockWhenExhausted(true);
         ThriftClientPool<TestThriftService.Client> pool = new ThriftClientPool<>(serverList,
                 transport -> new Client(new TBinaryProtocol(new TFramedTransport(transport))),
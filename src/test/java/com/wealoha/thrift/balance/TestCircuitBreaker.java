@@ -0,0 +1,124 @@
+package com.wealoha.thrift.balance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.wealoha.thrift.ServiceInfo;
+import com.wealoha.thrift.balance.CircuitBreaker.State;
+
+/**
+ * 
+ * @author javamonk
+ * @createTime 2026年10月19日 上午2:21:37
+ */
+public class TestCircuitBreaker {
+
+    private CircuitBreakerPolicy policy() {
+        CircuitBreakerPolicy policy = new CircuitBreakerPolicy();
+        policy.setWindowSize(10);
+        policy.setMinimumCalls(4);
+        policy.setFailureRatePercent(50);
+        policy.setOpenMillis(50);
+        policy.setHalfOpenCalls(2);
+        return policy;
+    }
+
+    private void call(CircuitBreaker circuitBreaker, boolean success) {
+        circuitBreaker.onStart();
+        circuitBreaker.onFinish(TimeUnit.MILLISECONDS.toNanos(1), success);
+    }
+
+    @Test
+    public void testOpenAndClose() throws InterruptedException {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(policy());
+        call(circuitBreaker, false);
+        call(circuitBreaker, false);
+        call(circuitBreaker, true);
+        // not enough calls
+        Assert.assertEquals(State.CLOSED, circuitBreaker.getState());
+        call(circuitBreaker, true);
+        Assert.assertEquals(State.OPEN, circuitBreaker.getState());
+        Assert.assertFalse(circuitBreaker.isCallPermitted());
+
+        Thread.sleep(60);
+        Assert.assertEquals(State.HALF_OPEN, circuitBreaker.getState());
+        // a failed probe opens again
+        call(circuitBreaker, false);
+        Assert.assertEquals(State.OPEN, circuitBreaker.getState());
+
+        Thread.sleep(60);
+        circuitBreaker.onStart();
+        circuitBreaker.onStart();
+        // no more probes
+        Assert.assertFalse(circuitBreaker.isCallPermitted());
+        circuitBreaker.onFinish(1, true);
+        Assert.assertEquals(State.HALF_OPEN, circuitBreaker.getState());
+        circuitBreaker.onFinish(1, true);
+        Assert.assertEquals(State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    public void testSlowCalls() {
+        CircuitBreakerPolicy policy = policy();
+        policy.setSlowCallMillis(100);
+        CircuitBreaker circuitBreaker = new CircuitBreaker(policy);
+        for (int i = 0; i < 3; i++) {
+            circuitBreaker.onStart();
+            circuitBreaker.onFinish(TimeUnit.MILLISECONDS.toNanos(200), true);
+        }
+        call(circuitBreaker, true);
+        Assert.assertEquals(State.OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    public void testConcurrentCalls() throws InterruptedException {
+        CircuitBreakerPolicy policy = policy();
+        policy.setWindowSize(20);
+        policy.setMinimumCalls(10);
+        policy.setFailureRatePercent(50);
+        policy.setOpenMillis(60000);
+        CircuitBreaker circuitBreaker = new CircuitBreaker(policy);
+        // each thread fails 1 of 20 calls, a window holds at most 9 failures
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < 50000; j++) {
+                    call(circuitBreaker, j % 20 != 0);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(State.CLOSED, circuitBreaker.getState());
+
+        // counts match slots of the window after racing
+        for (int i = 0; i < 20; i++) {
+            call(circuitBreaker, true);
+        }
+        Assert.assertEquals("CircuitBreaker [state=CLOSED, calls=20, failures=0, slowCalls=0]",
+                circuitBreaker.toString());
+        for (int i = 0; i < 10; i++) {
+            call(circuitBreaker, false);
+        }
+        Assert.assertEquals(State.OPEN, circuitBreaker.getState());
+    }
+
+    @Test
+    public void testBackend() {
+        Backend backend = new Backend(new ServiceInfo("127.0.0.1", 9090), 0, 0,
+                new CircuitBreaker(policy()));
+        for (int i = 0; i < 4; i++) {
+            backend.onFailure();
+        }
+        Assert.assertTrue(backend.isCircuitOpen());
+        Assert.assertTrue(backend.isEjected());
+        Assert.assertFalse(backend.isAvailable());
+    }
+}
@@ -0,0 +1,77 @@
+package com.wealoha.thrift.balance;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 
+ * @author javamonk
+ * @createTime 2026年10月19日 上午5:41:26
+ */
+public class TestConcurrencyLimit {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(50);
+
+    @Test
+    public void testAimd() {
+        ConcurrencyLimit limit = new AimdLimit(10, 1, 20, 0.5, 20);
+        // not grown while limit is not in use
+        limit.onSample(FAST, 2, false);
+        Assert.assertEquals(10, limit.getLimit());
+        for (int i = 0; i < 20; i++) {
+            limit.onSample(FAST, limit.getLimit(), false);
+        }
+        Assert.assertEquals(20, limit.getLimit());
+        limit.onSample(FAST, 20, true);
+        Assert.assertEquals(10, limit.getLimit());
+        limit.onSample(SLOW, 10, false);
+        Assert.assertEquals(5, limit.getLimit());
+    }
+
+    @Test
+    public void testVegas() {
+        ConcurrencyLimit limit = new VegasLimit(20, 1, 200, 1000);
+        for (int i = 0; i < 10; i++) {
+            limit.onSample(FAST, limit.getLimit(), false);
+        }
+        int grown = limit.getLimit();
+        Assert.assertTrue(grown > 20);
+        // rtt 10 times of no load one means most calls are queued
+        for (int i = 0; i < 10; i++) {
+            limit.onSample(SLOW, limit.getLimit(), false);
+        }
+        Assert.assertTrue(limit.getLimit() < grown);
+    }
+
+    @Test
+    public void testGradient() {
+        ConcurrencyLimit limit = new GradientLimit(20, 1, 200, 1.5, 600);
+        for (int i = 0; i < 20; i++) {
+            limit.onSample(FAST, limit.getLimit(), false);
+        }
+        int grown = limit.getLimit();
+        Assert.assertTrue(grown > 20);
+        for (int i = 0; i < 20; i++) {
+            limit.onSample(SLOW, limit.getLimit(), false);
+        }
+        Assert.assertTrue(limit.getLimit() < grown / 2);
+    }
+
+    @Test
+    public void testLimiter() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(new AimdLimit(2, 1, 20, 0.5, 20));
+        Assert.assertTrue(limiter.tryAcquire());
+        Assert.assertTrue(limiter.tryAcquire());
+        Assert.assertFalse(limiter.tryAcquire());
+        Assert.assertTrue(limiter.isLimited());
+        limiter.release();
+        Assert.assertEquals(1, limiter.getInflight());
+        limiter.onFinish(SLOW, true);
+        Assert.assertEquals(0, limiter.getInflight());
+        Assert.assertEquals(1, limiter.getLimit());
+    }
+}
@@ -0,0 +1,167 @@
+package com.wealoha.thrift.balance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.wealoha.thrift.ServiceInfo;
+
+/**
+ * 
+ * @author javamonk
+ * @createTime 2026年10月18日 下午10:41:09
+ */
+public class TestLoadBalancer {
+
+    private List<Backend> backends() {
+        return Arrays.asList( //
+                new Backend(new ServiceInfo("127.0.0.1", 9090), 2, 50), //
+                new Backend(new ServiceInfo("127.0.0.1", 9091), 2, 50), //
+                new Backend(new ServiceInfo("127.0.0.1", 9092), 2, 50));
+    }
+
+    @Test
+    public void testRoundRobin() {
+        List<Backend> backends = backends();
+        LoadBalancer loadBalancer = new RoundRobinLoadBalancer();
+        for (int i = 0; i < 6; i++) {
+            Assert.assertSame(backends.get(i % 3), loadBalancer.select(backends));
+        }
+    }
+
+    @Test
+    public void testLeastOutstanding() {
+        List<Backend> backends = backends();
+        backends.get(0).onStart();
+        backends.get(2).onStart();
+        LoadBalancer loadBalancer = new LeastOutstandingLoadBalancer();
+        for (int i = 0; i < 10; i++) {
+            Assert.assertSame(backends.get(1), loadBalancer.select(backends));
+        }
+    }
+
+    @Test
+    public void testPowerOfTwoChoices() {
+        List<Backend> backends = backends();
+        backends.get(0).onStart();
+        backends.get(0).onStart();
+        backends.get(1).onStart();
+        LoadBalancer loadBalancer = new PowerOfTwoChoicesLoadBalancer();
+        for (int i = 0; i < 100; i++) {
+            // the busiest one always loses
+            Assert.assertNotSame(backends.get(0), loadBalancer.select(backends));
+        }
+    }
+
+    @Test
+    public void testEwma() {
+        List<Backend> backends = backends().subList(0, 2);
+        backends.get(0).onStart();
+        backends.get(0).onFinish(100_000_000, true);
+        backends.get(1).onStart();
+        backends.get(1).onFinish(1_000_000, true);
+        LoadBalancer loadBalancer = new EwmaLoadBalancer();
+        for (int i = 0; i < 10; i++) {
+            Assert.assertSame(backends.get(1), loadBalancer.select(backends));
+        }
+    }
+
+    @Test
+    public void testWeightedRoundRobin() {
+        List<Backend> backends = Arrays.asList( //
+                new Backend(new ServiceInfo("127.0.0.1", 9090, 5), 2, 50), //
+                new Backend(new ServiceInfo("127.0.0.1", 9091), 2, 50), //
+                new Backend(new ServiceInfo("127.0.0.1", 9092), 2, 50));
+        LoadBalancer loadBalancer = new WeightedRoundRobinLoadBalancer();
+        int[] expected = { 0, 0, 1, 0, 2, 0, 0 };
+        for (int round = 0; round < 2; round++) {
+            for (int i : expected) {
+                Assert.assertSame(backends.get(i), loadBalancer.select(backends));
+            }
+        }
+    }
+
+    @Test
+    public void testWeightedRandom() {
+        LoadBalancer loadBalancer = new WeightedRandomLoadBalancer();
+        List<Backend> backends = Arrays.asList( //
+                new Backend(new ServiceInfo("127.0.0.1", 9090, 3), 2, 50), //
+                new Backend(new ServiceInfo("127.0.0.1", 9091), 2, 50));
+        int first = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (loadBalancer.select(backends) == backends.get(0)) {
+                first++;
+            }
+        }
+        Assert.assertEquals(7500, first, 300);
+
+        // prepared lists alternate with each other and filtered ones
+        List<Backend> local = loadBalancer.prepare(backends);
+        Assert.assertEquals(backends, local);
+        List<Backend> remote = loadBalancer.prepare(Arrays.asList( //
+                new Backend(new ServiceInfo("127.0.0.1", 9092), 2, 50), //
+                new Backend(new ServiceInfo("127.0.0.1", 9093, 4), 2, 50)));
+        List<Backend> filtered = Arrays.asList(backends.get(1));
+        first = 0;
+        int last = 0;
+        for (int i = 0; i < 10000; i++) {
+            Assert.assertSame(backends.get(1), loadBalancer.select(new ArrayList<>(filtered)));
+            if (loadBalancer.select(local) == local.get(0)) {
+                first++;
+            }
+            if (loadBalancer.select(remote) == remote.get(1)) {
+                last++;
+            }
+        }
+        Assert.assertEquals(7500, first, 300);
+        Assert.assertEquals(8000, last, 300);
+    }
+
+    @Test
+    public void testSlowStart() throws InterruptedException {
+        Backend old = new Backend(new ServiceInfo("127.0.0.1", 9090, 10), 2, 50);
+        Thread.sleep(200);
+        Backend added = new Backend(new ServiceInfo("127.0.0.1", 9091, 10), 2, 50);
+        Assert.assertEquals(10, old.getWeight(200), 0);
+        Assert.assertEquals(1, added.getWeight(200), 0.5);
+        Assert.assertTrue(added.isSlowStart(200));
+
+        LoadBalancer loadBalancer = new WeightedRoundRobinLoadBalancer(200);
+        List<Backend> backends = Arrays.asList(old, added);
+        int selected = 0;
+        for (int i = 0; i < 10; i++) {
+            if (loadBalancer.select(backends) == added) {
+                selected++;
+            }
+        }
+        Assert.assertTrue(selected <= 2);
+
+        Thread.sleep(200);
+        Assert.assertEquals(10, added.getWeight(200), 0);
+        Assert.assertFalse(added.isSlowStart(200));
+    }
+
+    @Test
+    public void testEjection() throws InterruptedException {
+        Backend backend = backends().get(0);
+        backend.onFailure();
+        Assert.assertTrue(backend.isAvailable());
+        backend.onFailure();
+        Assert.assertTrue(backend.isEjected());
+
+        // probe fails, ejected again
+        Thread.sleep(60);
+        Assert.assertTrue(backend.isAvailable());
+        backend.onFailure();
+        Assert.assertTrue(backend.isEjected());
+
+        // probe succeeds
+        Thread.sleep(60);
+        backend.onSuccess();
+        backend.onFailure();
+        Assert.assertTrue(backend.isAvailable());
+    }
+}
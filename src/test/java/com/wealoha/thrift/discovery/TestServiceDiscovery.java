@@ -0,0 +1,126 @@
+package com.wealoha.thrift.discovery;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.wealoha.thrift.ServiceInfo;
+
+/**
+ *
+ * @author javamonk
+ * @createTime 2026年10月19日 上午4:38:20
+ */
+public class TestServiceDiscovery {
+
+    @Test
+    public void testIncrementalChange() {
+        InMemoryServiceDiscovery discovery = new InMemoryServiceDiscovery();
+        discovery.register(new ServiceInfo("127.0.0.1", 1));
+        List<ServiceChange> changes = new ArrayList<>();
+        discovery.subscribe(changes::add);
+        Assert.assertEquals(1, changes.size());
+        Assert.assertEquals(1, changes.get(0).getAdded().size());
+
+        discovery.register(new ServiceInfo("127.0.0.1", 2));
+        discovery.register(new ServiceInfo("127.0.0.1", 2));
+        discovery.deregister(new ServiceInfo("127.0.0.1", 1));
+        Assert.assertEquals(3, changes.size());
+        Assert.assertEquals(Collections.singleton(new ServiceInfo("127.0.0.1", 1)), changes.get(2)
+                .getRemoved());
+        Assert.assertEquals(Collections.singletonList(new ServiceInfo("127.0.0.1", 2)),
+                discovery.getServices());
+
+        // new weight of the same backend
+        discovery.register(new ServiceInfo("127.0.0.1", 2, 4));
+        Assert.assertEquals(4, changes.size());
+        Assert.assertEquals(4, changes.get(3).getUpdated().iterator().next().getWeight());
+    }
+
+    @Test
+    public void testDebounce() throws Exception {
+        InMemoryServiceDiscovery discovery = new InMemoryServiceDiscovery();
+        List<List<ServiceInfo>> applied = new CopyOnWriteArrayList<>();
+        DebouncedServiceListener listener = new DebouncedServiceListener(applied::add, 100);
+        discovery.subscribe(listener);
+        // rolling restart of 100 backends
+        for (int i = 0; i < 100; i++) {
+            discovery.register(new ServiceInfo("127.0.0.1", 10000 + i));
+        }
+        for (int i = 0; i < 50; i++) {
+            discovery.deregister(new ServiceInfo("127.0.0.1", 10000 + i));
+        }
+        Thread.sleep(300);
+        Assert.assertEquals(1, applied.size());
+        Assert.assertEquals(50, applied.get(0).size());
+
+        // empty list is not applied
+        discovery.setServices(Collections.emptyList());
+        Thread.sleep(300);
+        Assert.assertEquals(1, applied.size());
+        listener.close();
+    }
+
+    @Test
+    public void testFile() throws Exception {
+        Path dir = Files.createTempDirectory("discovery");
+        Path file = dir.resolve("services");
+        Files.write(file, Arrays.asList("# echo", "127.0.0.1:9090", "bad line"),
+                StandardCharsets.UTF_8);
+        BlockingQueue<ServiceChange> changes = new LinkedBlockingQueue<>();
+        try (FileServiceDiscovery discovery = new FileServiceDiscovery(file)) {
+            Assert.assertEquals(Collections.singletonList(new ServiceInfo("127.0.0.1", 9090)),
+                    discovery.getServices());
+            discovery.subscribe(changes::add);
+            changes.take();
+
+            Files.write(file, Arrays.asList("127.0.0.1:9090", "localhost:9091"),
+                    StandardCharsets.UTF_8);
+            ServiceChange change = changes.poll(10, TimeUnit.SECONDS);
+            Assert.assertNotNull(change);
+            Assert.assertEquals(Collections.singleton(new ServiceInfo("localhost", 9091)), change
+                    .getAdded());
+        } finally {
+            Files.delete(file);
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    public void testDnsSrv() throws Exception {
+        AtomicReference<List<ServiceInfo>> records = new AtomicReference<>(Collections
+                .singletonList(new ServiceInfo("a.example.com", 9090)));
+        DnsSrvServiceDiscovery discovery = new DnsSrvServiceDiscovery("_thrift._tcp.example.com",
+                50, () -> {
+                    List<ServiceInfo> services = records.get();
+                    if (services == null) {
+                        throw new IllegalStateException("dns down");
+                    }
+                    return services;
+                });
+        Assert.assertEquals(records.get(), discovery.getServices());
+
+        // failure keeps last services
+        records.set(null);
+        Thread.sleep(150);
+        Assert.assertEquals(1, discovery.getServices().size());
+
+        records.set(Arrays.asList(new ServiceInfo("a.example.com", 9090), new ServiceInfo(
+                "b.example.com", 9090)));
+        Thread.sleep(150);
+        Assert.assertEquals(2, discovery.getServices().size());
+        discovery.close();
+    }
+}